@@ -0,0 +1,81 @@
+package com.developcollect.commonpay.autoconfig;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 访问地址生成基准测试
+ * 覆盖生成订单时用到的全部地址：通知地址、二维码地址和支付页面地址
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UrlGenerationBenchmark {
+
+    private static final String OUT_TRADE_NO = "BENCH20200801000001";
+
+    private final CommonPayProperties properties = new CommonPayProperties();
+
+
+    @Setup
+    public void setup() {
+        properties.setDomain("pay.example.com");
+        properties.setPort(443);
+        properties.setSsl(true);
+        properties.setContextPath("/app");
+    }
+
+
+    @Benchmark
+    public void precompiled(Blackhole blackhole) {
+        CommonPayUrls urls = properties.urls();
+        blackhole.consume(urls.getAliPayNotifyUrl());
+        blackhole.consume(urls.getWxPayNotifyUrl());
+        blackhole.consume(urls.getWxPayRefundNotifyUrl());
+        blackhole.consume(urls.resourceUrl("alipay", "", OUT_TRADE_NO, ".png"));
+        blackhole.consume(urls.resourceUrl("alipay", "", OUT_TRADE_NO, ".html"));
+        blackhole.consume(urls.resourceUrl("alipay", "wap_", OUT_TRADE_NO, ".html"));
+        blackhole.consume(urls.resourceUrl("wxpay", "", OUT_TRADE_NO, ".png"));
+    }
+
+    /**
+     * 预先拼接之前的实现，作为对照
+     */
+    @Benchmark
+    public void format(Blackhole blackhole) {
+        blackhole.consume(String.format("%s/cPay/alipay", formatPrefix()));
+        blackhole.consume(String.format("%s/cPay/wxpay", formatPrefix()));
+        blackhole.consume(String.format("%s/cPay/wxpay/refund", formatPrefix()));
+        blackhole.consume(String.format("%s/cPay/r/%s/%s.png", formatPrefix(), "alipay", OUT_TRADE_NO));
+        blackhole.consume(String.format("%s/cPay/r/%s/%s.html", formatPrefix(), "alipay", OUT_TRADE_NO));
+        blackhole.consume(String.format("%s/cPay/r/%s/wap_%s.html", formatPrefix(), "alipay", OUT_TRADE_NO));
+        blackhole.consume(String.format("%s/cPay/r/%s/%s.png", formatPrefix(), "wxpay", OUT_TRADE_NO));
+    }
+
+
+    private String formatPrefix() {
+        return String.format("%s://%s:%s%s",
+                properties.isSsl() ? "https" : "http",
+                properties.getDomain(),
+                properties.getPort(),
+                properties.getContextPath()
+        );
+    }
+}
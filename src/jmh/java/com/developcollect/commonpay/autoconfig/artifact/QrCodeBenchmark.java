@@ -0,0 +1,56 @@
+package com.developcollect.commonpay.autoconfig.artifact;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支付二维码生成基准测试
+ * 对比立即生成PNG图片和延迟生成时只记录内容的开销
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QrCodeBenchmark {
+
+    private static final String CONTENT = "weixin://wxpay/bizpayurl?pr=vjY8R4Dzz";
+
+    private final MemoryArtifactStore store = new MemoryArtifactStore(64 * 1024 * 1024, 60 * 60 * 1000L);
+
+    private int sequence;
+
+
+    @Benchmark
+    public byte[] png() {
+        return QrCodeArtifacts.png(CONTENT, 300, 300);
+    }
+
+    @Benchmark
+    public byte[] pending() {
+        return QrCodeArtifacts.pending(CONTENT, 300, 300);
+    }
+
+    @Benchmark
+    public byte[] renderPending() {
+        String outTradeNo = "BENCH" + (sequence++);
+        store.put("wxpay", outTradeNo + QrCodeArtifacts.CONTENT_SUFFIX, QrCodeArtifacts.pending(CONTENT, 300, 300));
+        byte[] png = QrCodeArtifacts.render(store, "wxpay", outTradeNo + QrCodeArtifacts.PNG_SUFFIX);
+        store.delete("wxpay", outTradeNo + QrCodeArtifacts.CONTENT_SUFFIX);
+        store.delete("wxpay", outTradeNo + QrCodeArtifacts.PNG_SUFFIX);
+        return png;
+    }
+}
@@ -0,0 +1,220 @@
+package com.developcollect.commonpay.autoconfig.benchmark;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.crypto.SecureUtil;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 基准测试用的通知报文
+ * 使用本地生成的密钥签名，字段与支付宝、微信的真实通知一致
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public final class BenchmarkPayloads {
+
+    /**
+     * 微信支付商户key
+     */
+    public static final String WX_PAY_KEY = "8934e7d15453e97507ef794cf7b0519d";
+
+    private static final KeyPair ALI_PAY_KEY_PAIR = generateKeyPair();
+
+    private BenchmarkPayloads() {
+    }
+
+
+    /**
+     * 支付宝公钥，Base64编码的X.509格式
+     */
+    public static String aliPayPublicKey() {
+        return Base64.encode(ALI_PAY_KEY_PAIR.getPublic().getEncoded());
+    }
+
+    /**
+     * 商户私钥，Base64编码的PKCS#8格式
+     */
+    public static String aliPayPrivateKey() {
+        return Base64.encode(ALI_PAY_KEY_PAIR.getPrivate().getEncoded());
+    }
+
+    /**
+     * 支付宝支付成功通知参数，使用RSA2签名
+     */
+    public static Map<String, String> aliPayNotifyParams(String outTradeNo) {
+        return aliPayNotifyParams(outTradeNo, ALI_PAY_KEY_PAIR.getPrivate());
+    }
+
+    /**
+     * 支付宝支付成功通知参数，使用指定私钥RSA2签名，如公钥证书对应的私钥
+     */
+    public static Map<String, String> aliPayNotifyParams(String outTradeNo, PrivateKey privateKey) {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("gmt_create", "2020-08-01 10:00:00");
+        params.put("charset", "UTF-8");
+        params.put("seller_email", "seller@example.com");
+        params.put("subject", "测试商品");
+        params.put("buyer_id", "2088102177846880");
+        params.put("invoice_amount", "0.01");
+        params.put("notify_id", "2020080100222100000046881415493410");
+        params.put("fund_bill_list", "[{\"amount\":\"0.01\",\"fundChannel\":\"ALIPAYACCOUNT\"}]");
+        params.put("notify_type", "trade_status_sync");
+        params.put("trade_status", "TRADE_SUCCESS");
+        params.put("receipt_amount", "0.01");
+        params.put("app_id", "2016101000652345");
+        params.put("buyer_pay_amount", "0.01");
+        params.put("seller_id", "2088102177477777");
+        params.put("gmt_payment", "2020-08-01 10:00:05");
+        params.put("notify_time", "2020-08-01 10:00:06");
+        params.put("version", "1.0");
+        params.put("out_trade_no", outTradeNo);
+        params.put("total_amount", "0.01");
+        params.put("trade_no", "2020080122001446881000" + Math.abs(outTradeNo.hashCode() % 100000));
+        params.put("auth_app_id", "2016101000652345");
+        params.put("buyer_logon_id", "abc***@example.com");
+        params.put("point_amount", "0.00");
+
+        List<String> keys = new ArrayList<>(params.keySet());
+        Collections.sort(keys);
+        StringBuilder content = new StringBuilder(512);
+        for (String key : keys) {
+            if (content.length() > 0) {
+                content.append('&');
+            }
+            content.append(key).append('=').append(params.get(key));
+        }
+        try {
+            Signature signature = Signature.getInstance("SHA256WithRSA");
+            signature.initSign(privateKey);
+            signature.update(content.toString().getBytes(StandardCharsets.UTF_8));
+            params.put("sign", Base64.encode(signature.sign()));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+        params.put("sign_type", "RSA2");
+        return params;
+    }
+
+    /**
+     * 微信支付成功通知参数，使用HMAC-SHA256签名
+     */
+    public static Map<String, String> wxPayNotifyParams(String outTradeNo) {
+        Map<String, String> params = new TreeMap<>();
+        params.put("appid", "wx2421b1c4370ec43b");
+        params.put("attach", "支付测试");
+        params.put("bank_type", "CFT");
+        params.put("fee_type", "CNY");
+        params.put("is_subscribe", "Y");
+        params.put("mch_id", "10000100");
+        params.put("nonce_str", "5d2b6c2a8db53831f7eda20af46e531c");
+        params.put("openid", "oUpF8uMEb4qRXf22hE3X68TekukE");
+        params.put("out_trade_no", outTradeNo);
+        params.put("result_code", "SUCCESS");
+        params.put("return_code", "SUCCESS");
+        params.put("sign_type", "HMAC-SHA256");
+        params.put("time_end", "20200801100005");
+        params.put("total_fee", "1");
+        params.put("trade_type", "NATIVE");
+        params.put("transaction_id", "1004400740201409030005092168");
+        params.put("sign", hmacSha256Sign(params));
+        return params;
+    }
+
+    /**
+     * 微信支付成功通知报文
+     */
+    public static String wxPayNotifyXml(String outTradeNo) {
+        return toXml("xml", wxPayNotifyParams(outTradeNo));
+    }
+
+    /**
+     * 微信退款结果通知报文，req_info使用商户key的MD5值进行AES加密
+     */
+    public static String wxRefundNotifyXml(String outRefundNo) {
+        Map<String, String> reqInfo = new TreeMap<>();
+        reqInfo.put("out_refund_no", outRefundNo);
+        reqInfo.put("out_trade_no", "T" + outRefundNo);
+        reqInfo.put("refund_account", "REFUND_SOURCE_RECHARGE_FUNDS");
+        reqInfo.put("refund_fee", "1");
+        reqInfo.put("refund_id", "50000408942018111907145868882");
+        reqInfo.put("refund_recv_accout", "支付用户零钱");
+        reqInfo.put("refund_request_source", "API");
+        reqInfo.put("refund_status", "SUCCESS");
+        reqInfo.put("settlement_refund_fee", "1");
+        reqInfo.put("settlement_total_fee", "1");
+        reqInfo.put("success_time", "2020-08-01 10:10:05");
+        reqInfo.put("total_fee", "1");
+        reqInfo.put("transaction_id", "4200000215201811190261405420");
+
+        Map<String, String> params = new TreeMap<>();
+        params.put("return_code", "SUCCESS");
+        params.put("appid", "wx2421b1c4370ec43b");
+        params.put("mch_id", "10000100");
+        params.put("nonce_str", "TeqClE3i0mvn3DrK");
+        params.put("req_info", encryptReqInfo(toXml("root", reqInfo)));
+        return toXml("xml", params);
+    }
+
+    /**
+     * 加密退款通知的req_info
+     */
+    public static String encryptReqInfo(String xml) {
+        String md5Key = SecureUtil.md5(WX_PAY_KEY).toLowerCase();
+        return Base64.encode(SecureUtil.aes(md5Key.getBytes()).encrypt(xml));
+    }
+
+
+    private static String hmacSha256Sign(Map<String, String> sortedParams) {
+        StringBuilder content = new StringBuilder(512);
+        for (Map.Entry<String, String> entry : sortedParams.entrySet()) {
+            content.append(entry.getKey()).append('=').append(entry.getValue()).append('&');
+        }
+        content.append("key=").append(WX_PAY_KEY);
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(WX_PAY_KEY.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            byte[] digest = mac.doFinal(content.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02X", b));
+            }
+            return hex.toString();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toXml(String rootTag, Map<String, String> params) {
+        StringBuilder xml = new StringBuilder(1024).append('<').append(rootTag).append('>');
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            xml.append('<').append(entry.getKey()).append("><![CDATA[")
+                    .append(entry.getValue())
+                    .append("]]></").append(entry.getKey()).append('>');
+        }
+        return xml.append("</").append(rootTag).append('>').toString();
+    }
+
+    private static KeyPair generateKeyPair() {
+        try {
+            KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+            generator.initialize(2048);
+            return generator.generateKeyPair();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.developcollect.commonpay.autoconfig.controller;
+
+import com.developcollect.commonpay.autoconfig.benchmark.BenchmarkPayloads;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通知端点基准测试
+ * 启动完整的自动配置(Servlet应用，随机端口)，用模拟请求直接调用通知端点，覆盖解析、验签、转换和广播
+ * 关闭重复通知过滤，保证每次调用都走完整流程
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NotifyEndpointBenchmark {
+
+    private ConfigurableApplicationContext context;
+
+    private CommonPayAliPayController aliPayController;
+
+    private CommonPayWxPayController wxPayController;
+
+    private Map<String, String> aliPayParams;
+
+    private byte[] wxPayBody;
+
+    private byte[] wxRefundBody;
+
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(BenchmarkApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .properties(
+                        "server.port=0",
+                        "develop-collect.pay.domain=pay.example.com",
+                        "develop-collect.pay.notify-dedup.enabled=false",
+                        "develop-collect.pay.artifact.janitor.enabled=false",
+                        "develop-collect.pay.alipay.appid=2016101000652345",
+                        "develop-collect.pay.alipay.private-key=" + BenchmarkPayloads.aliPayPrivateKey(),
+                        "develop-collect.pay.alipay.public-key=" + BenchmarkPayloads.aliPayPublicKey(),
+                        "develop-collect.pay.wxpay.appid=wx2421b1c4370ec43b",
+                        "develop-collect.pay.wxpay.mch-id=10000100",
+                        "develop-collect.pay.wxpay.key=" + BenchmarkPayloads.WX_PAY_KEY
+                )
+                .run();
+        aliPayController = context.getBean(CommonPayAliPayController.class);
+        wxPayController = context.getBean(CommonPayWxPayController.class);
+
+        aliPayParams = BenchmarkPayloads.aliPayNotifyParams("BENCH20200801000001");
+        wxPayBody = BenchmarkPayloads.wxPayNotifyXml("BENCH20200801000001").getBytes(StandardCharsets.UTF_8);
+        wxRefundBody = BenchmarkPayloads.wxRefundNotifyXml("RBENCH20200801000001").getBytes(StandardCharsets.UTF_8);
+
+        // 确认报文能通过验签，避免测到失败分支
+        check("success", aliPayController.alipayNotify(aliPayRequest()));
+        check("<xml><return_code><![CDATA[SUCCESS]]></return_code><return_msg><![CDATA[OK]]></return_msg></xml>", wxPayController.payNotify(xmlRequest(wxPayBody)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+
+    @Benchmark
+    public String aliPayNotify() {
+        return aliPayController.alipayNotify(aliPayRequest());
+    }
+
+    @Benchmark
+    public String wxPayNotify() {
+        return wxPayController.payNotify(xmlRequest(wxPayBody));
+    }
+
+    @Benchmark
+    public String wxRefundNotify() throws Exception {
+        return wxPayController.refundNotify(xmlRequest(wxRefundBody));
+    }
+
+
+    private MockHttpServletRequest aliPayRequest() {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/cPay/alipay");
+        request.addParameters(aliPayParams);
+        return request;
+    }
+
+    private MockHttpServletRequest xmlRequest(byte[] body) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/cPay/wxpay");
+        request.setContentType("text/xml");
+        request.setContent(body);
+        return request;
+    }
+
+    private static void check(String expected, String actual) {
+        if (!expected.equals(actual)) {
+            throw new IllegalStateException("unexpected notify response: " + actual);
+        }
+    }
+
+
+    @EnableAutoConfiguration
+    @Configuration
+    static class BenchmarkApplication {
+    }
+}
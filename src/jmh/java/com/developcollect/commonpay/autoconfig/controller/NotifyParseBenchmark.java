@@ -0,0 +1,120 @@
+package com.developcollect.commonpay.autoconfig.controller;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.XmlUtil;
+import cn.hutool.crypto.SecureUtil;
+import com.developcollect.commonpay.autoconfig.benchmark.BenchmarkPayloads;
+import com.developcollect.commonpay.autoconfig.verify.WxPayNotifyVerifier;
+import com.developcollect.commonpay.config.WxPayConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通知报文解析基准测试
+ * 包括表单参数、XML报文的解析和退款通知req_info的解密，
+ * XML报文以原来的DOM解析(XmlUtil.readXML + xmlToMap)作为基线
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NotifyParseBenchmark {
+
+    private final BaseController controller = new BaseController();
+
+    private final WxPayNotifyVerifier wxPayNotifyVerifier = new WxPayNotifyVerifier();
+
+    private WxPayConfig wxPayConfig;
+
+    private MockHttpServletRequest aliPayRequest;
+
+    private byte[] wxPayBody;
+
+    private String reqInfo;
+
+    private String reqInfoXml;
+
+
+    @Setup
+    public void setup() {
+        aliPayRequest = new MockHttpServletRequest("POST", "/cPay/alipay");
+        aliPayRequest.addParameters(BenchmarkPayloads.aliPayNotifyParams("BENCH20200801000001"));
+        wxPayBody = BenchmarkPayloads.wxPayNotifyXml("BENCH20200801000001").getBytes(StandardCharsets.UTF_8);
+
+        reqInfoXml = "<root><out_refund_no><![CDATA[RBENCH20200801000001]]></out_refund_no>"
+                + "<refund_status><![CDATA[SUCCESS]]></refund_status>"
+                + "<success_time><![CDATA[2020-08-01 10:10:05]]></success_time></root>";
+        reqInfo = BenchmarkPayloads.encryptReqInfo(reqInfoXml);
+        wxPayConfig = new WxPayConfig();
+        wxPayConfig.setKey(BenchmarkPayloads.WX_PAY_KEY);
+    }
+
+
+    @Benchmark
+    public Map<String, String> aliPayForm() {
+        return controller.getParams(aliPayRequest);
+    }
+
+    @Benchmark
+    public Map<String, String> wxPayXml() throws Exception {
+        return FlatXmlReader.read(new ByteArrayInputStream(wxPayBody), "xml");
+    }
+
+    /**
+     * 构建DOM后转换为Map，作为对照
+     */
+    @Benchmark
+    public Map<String, Object> wxPayXmlDom() {
+        return XmlUtil.xmlToMap(XmlUtil.readXML(new ByteArrayInputStream(wxPayBody)));
+    }
+
+    @Benchmark
+    public Map<String, String> wxRefundReqInfoXml() throws Exception {
+        return FlatXmlReader.read(new StringReader(reqInfoXml), "root");
+    }
+
+    /**
+     * 构建DOM后转换为Map，作为对照
+     */
+    @Benchmark
+    public Map<String, Object> wxRefundReqInfoXmlDom() {
+        return XmlUtil.xmlToMap(XmlUtil.parseXml(reqInfoXml));
+    }
+
+    /**
+     * 使用缓存的密钥和Cipher解密并直接流式解析
+     */
+    @Benchmark
+    public Map<String, String> wxRefundReqInfo() throws Exception {
+        return FlatXmlReader.read(wxPayNotifyVerifier.decryptReqInfo(wxPayConfig, reqInfo), "root");
+    }
+
+    /**
+     * 每次派生密钥、创建Cipher并解密成字符串，作为对照
+     */
+    @Benchmark
+    public String wxRefundReqInfoDecrypt() {
+        String md5Key = SecureUtil.md5(BenchmarkPayloads.WX_PAY_KEY).toLowerCase();
+        return SecureUtil.aes(md5Key.getBytes()).decryptStr(Base64.decode(reqInfo));
+    }
+}
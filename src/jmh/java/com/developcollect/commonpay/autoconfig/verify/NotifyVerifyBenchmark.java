@@ -0,0 +1,161 @@
+package com.developcollect.commonpay.autoconfig.verify;
+
+import cn.hutool.core.codec.Base64;
+import com.developcollect.commonpay.autoconfig.benchmark.BenchmarkPayloads;
+import com.developcollect.commonpay.config.AliPayConfig;
+import com.developcollect.commonpay.config.WxPayConfig;
+import com.developcollect.commonpay.pay.alipay.utils.AlipaySignature;
+import com.developcollect.commonpay.pay.wxpay.sdk.WXPayConstants;
+import com.developcollect.commonpay.pay.wxpay.sdk.WXPayUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 通知验签基准测试
+ * 以支付宝SDK的rsaCheckV1、rsaCertContentCheckV1和微信SDK的WXPayUtil.isSignatureValid作为基线，对比缓存公钥和池化Signature后的验签吞吐量。
+ * 公钥证书使用keytool生成的自签名证书
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NotifyVerifyBenchmark {
+
+    private static final String PASSWORD = "benchmark";
+
+    private final AliPayNotifyVerifier aliPayNotifyVerifier = new AliPayNotifyVerifier();
+
+    /**
+     * 验签器只缓存一个公钥，证书模式单独使用一个
+     */
+    private final AliPayNotifyVerifier aliPayCertNotifyVerifier = new AliPayNotifyVerifier();
+
+    private final WxPayNotifyVerifier wxPayNotifyVerifier = new WxPayNotifyVerifier();
+
+    private AliPayConfig aliPayConfig;
+
+    private AliPayConfig aliPayCertConfig;
+
+    private String aliPayCertContent;
+
+    private WxPayConfig wxPayConfig;
+
+    private Map<String, String> aliPayParams;
+
+    private Map<String, String> aliPayCertParams;
+
+    private Map<String, String> wxPayParams;
+
+
+    @Setup
+    public void setup() throws Exception {
+        aliPayConfig = new AliPayConfig();
+        aliPayConfig
+                .setPublicKey(BenchmarkPayloads.aliPayPublicKey())
+                .setCharset("UTF-8")
+                .setSignType("RSA2");
+        wxPayConfig = new WxPayConfig();
+        wxPayConfig
+                .setKey(BenchmarkPayloads.WX_PAY_KEY)
+                .setDebug(false);
+
+        aliPayParams = BenchmarkPayloads.aliPayNotifyParams("BENCH20200801000001");
+        wxPayParams = BenchmarkPayloads.wxPayNotifyParams("BENCH20200801000001");
+
+        KeyStore keyStore = generateCertificate();
+        aliPayCertContent = "-----BEGIN CERTIFICATE-----\n"
+                + Base64.encode(keyStore.getCertificate("alipay").getEncoded())
+                + "\n-----END CERTIFICATE-----\n";
+        aliPayCertConfig = new AliPayConfig();
+        aliPayCertConfig
+                .setAppCertContentSupplier(() -> aliPayCertContent)
+                .setAlipayCertContentSupplier(() -> aliPayCertContent)
+                .setAlipayRootCertContentSupplier(() -> aliPayCertContent)
+                .setCharset("UTF-8")
+                .setSignType("RSA2");
+        PrivateKey privateKey = (PrivateKey) keyStore.getKey("alipay", PASSWORD.toCharArray());
+        aliPayCertParams = BenchmarkPayloads.aliPayNotifyParams("BENCH20200801000001", privateKey);
+    }
+
+    /**
+     * 使用keytool生成自签名的支付宝公钥证书和对应的私钥
+     */
+    private static KeyStore generateCertificate() throws Exception {
+        File file = File.createTempFile("cpay-alipay", ".p12");
+        file.delete();
+        try {
+            Process keytool = new ProcessBuilder(
+                    new File(System.getProperty("java.home"), "bin/keytool").getPath(),
+                    "-genkeypair", "-alias", "alipay", "-keyalg", "RSA", "-keysize", "2048", "-validity", "1",
+                    "-dname", "CN=Alipay Benchmark", "-storetype", "PKCS12", "-keystore", file.getPath(),
+                    "-storepass", PASSWORD, "-keypass", PASSWORD
+            ).inheritIO().start();
+            if (keytool.waitFor() != 0) {
+                throw new IllegalStateException("keytool failed");
+            }
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                keyStore.load(in, PASSWORD.toCharArray());
+            }
+            return keyStore;
+        } finally {
+            file.delete();
+        }
+    }
+
+
+    @Benchmark
+    public boolean aliPayRsa2() throws Exception {
+        // 验签会移除sign和sign_type，每次使用副本
+        return aliPayNotifyVerifier.verify(aliPayConfig, new HashMap<>(aliPayParams));
+    }
+
+    @Benchmark
+    public boolean aliPayRsa2Sdk() throws Exception {
+        // 基线：每次都解析公钥并创建Signature
+        return AlipaySignature.rsaCheckV1(new HashMap<>(aliPayParams), aliPayConfig.getPublicKey(), "UTF-8", "RSA2");
+    }
+
+    @Benchmark
+    public boolean aliPayRsa2Cert() throws Exception {
+        return aliPayCertNotifyVerifier.verify(aliPayCertConfig, new HashMap<>(aliPayCertParams));
+    }
+
+    @Benchmark
+    public boolean aliPayRsa2CertSdk() throws Exception {
+        // 基线：每次都解析X.509证书
+        return AlipaySignature.rsaCertContentCheckV1(new HashMap<>(aliPayCertParams), aliPayCertContent, "UTF-8", "RSA2");
+    }
+
+    @Benchmark
+    public boolean wxPayHmacSha256() throws Exception {
+        return wxPayNotifyVerifier.verify(wxPayConfig, wxPayParams);
+    }
+
+    @Benchmark
+    public boolean wxPayHmacSha256Sdk() throws Exception {
+        return WXPayUtil.isSignatureValid(wxPayParams, BenchmarkPayloads.WX_PAY_KEY, WXPayConstants.SignType.HMACSHA256);
+    }
+}
@@ -1,21 +1,60 @@
 package com.developcollect.commonpay.autoconfig;
 
-import cn.hutool.core.io.FileUtil;
+import cn.hutool.core.io.IoUtil;
 import cn.hutool.core.util.ReflectUtil;
 import cn.hutool.core.util.StrUtil;
-import cn.hutool.extra.qrcode.QrCodeUtil;
+import cn.hutool.crypto.SecureUtil;
 import com.developcollect.commonpay.PayPlatform;
+import com.developcollect.commonpay.autoconfig.artifact.ArtifactCleaner;
+import com.developcollect.commonpay.autoconfig.artifact.ArtifactJanitor;
+import com.developcollect.commonpay.autoconfig.artifact.ArtifactKeyValueClient;
+import com.developcollect.commonpay.autoconfig.artifact.ArtifactStore;
+import com.developcollect.commonpay.autoconfig.artifact.FileArtifactStore;
+import com.developcollect.commonpay.autoconfig.artifact.KeyValueArtifactStore;
+import com.developcollect.commonpay.autoconfig.artifact.MemoryArtifactStore;
+import com.developcollect.commonpay.autoconfig.artifact.QrCodeArtifacts;
+import com.developcollect.commonpay.autoconfig.cluster.ClusterMembership;
+import com.developcollect.commonpay.autoconfig.cluster.ClusterPartitioner;
+import com.developcollect.commonpay.autoconfig.cluster.JdbcClusterMembership;
+import com.developcollect.commonpay.autoconfig.cluster.LocalClusterMembership;
+import com.developcollect.commonpay.autoconfig.event.OrderedEventDispatcher;
+import com.developcollect.commonpay.autoconfig.guard.GuardedPayFactory;
+import com.developcollect.commonpay.autoconfig.guard.PlatformCallGuard;
+import com.developcollect.commonpay.autoconfig.merchant.Merchant;
+import com.developcollect.commonpay.autoconfig.merchant.MerchantRegistry;
+import com.developcollect.commonpay.autoconfig.merchant.MerchantRoutingSupplier;
+import com.developcollect.commonpay.autoconfig.metrics.MicrometerNotifyMetrics;
+import com.developcollect.commonpay.autoconfig.metrics.NotifyMetrics;
+import com.developcollect.commonpay.autoconfig.notify.AsyncNotifyDispatcher;
+import com.developcollect.commonpay.autoconfig.notify.LocalNotifyDedupStore;
+import com.developcollect.commonpay.autoconfig.notify.NotifyDedupStore;
+import com.developcollect.commonpay.autoconfig.notify.NotifyDeduplicator;
+import com.developcollect.commonpay.autoconfig.notify.NotifyJournal;
+import com.developcollect.commonpay.autoconfig.query.ActiveQueryEngine;
+import com.developcollect.commonpay.autoconfig.query.PendingQuerySource;
+import com.developcollect.commonpay.autoconfig.query.QueryBackoff;
+import com.developcollect.commonpay.autoconfig.reload.CachedCertificateSupplier;
+import com.developcollect.commonpay.autoconfig.reload.PayConfigReloader;
+import com.developcollect.commonpay.autoconfig.reload.ReloadablePayConfigSupplier;
+import com.developcollect.commonpay.autoconfig.verify.AliPayNotifyVerifier;
+import com.developcollect.commonpay.autoconfig.verify.WxPayNotifyVerifier;
 import com.developcollect.commonpay.config.*;
 import com.developcollect.commonpay.notice.*;
 import com.developcollect.commonpay.pay.IPayDTO;
 import com.developcollect.commonpay.pay.IRefundDTO;
 import com.developcollect.commonpay.pay.PayResponse;
+import com.developcollect.commonpay.pay.RefundResponse;
 import com.developcollect.dcinfra.utils.LambdaUtil;
 import com.developcollect.dcinfra.utils.spring.SpringUtil;
 import lombok.RequiredArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
@@ -31,15 +70,25 @@ import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 import org.springframework.util.ResourceUtils;
 
+import javax.sql.DataSource;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.lang.management.ManagementFactory;
 import java.net.MalformedURLException;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.BiFunction;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 /**
  * 支付自动配置
@@ -50,7 +99,7 @@ import java.util.function.Supplier;
 @Slf4j
 @ComponentScan(basePackages = "com.developcollect.commonpay.autoconfig.controller")
 @EnableConfigurationProperties(CommonPayProperties.class)
-@Import({GlobalConfig.class, CommonPayWebMvcConfig.class, SpringUtil.class})
+@Import({GlobalConfig.class, CommonPayWebMvcConfig.class, CommonPayWebFluxConfig.class, SpringUtil.class})
 @Configuration
 @RequiredArgsConstructor
 public class CommonPayAutoConfig {
@@ -67,6 +116,293 @@ public class CommonPayAutoConfig {
         ReflectUtil.invoke(globalConfig, "init");
     }
 
+    /**
+     * 支付宝异步通知验签器
+     */
+    @ConditionalOnMissingBean
+    @Bean
+    AliPayNotifyVerifier aliPayNotifyVerifier() {
+        return new AliPayNotifyVerifier();
+    }
+
+    /**
+     * 微信异步通知验签器
+     */
+    @ConditionalOnMissingBean
+    @Bean
+    WxPayNotifyVerifier wxPayNotifyVerifier() {
+        return new WxPayNotifyVerifier();
+    }
+
+    /**
+     * 支付资源存储
+     * 键值存储需要容器中有{@link ArtifactKeyValueClient}，没有时启动失败
+     */
+    @ConditionalOnMissingBean
+    @Bean
+    ArtifactStore artifactStore(CommonPayProperties commonPayProperties, ObjectProvider<ArtifactKeyValueClient> artifactKeyValueClient) {
+        ArtifactProperties properties = commonPayProperties.getArtifact();
+        switch (properties.getStorage()) {
+            case MEMORY:
+                return new MemoryArtifactStore(properties.getMemoryMaxBytes(), properties.getTtl());
+            case KEY_VALUE:
+                ArtifactKeyValueClient client = artifactKeyValueClient.getIfAvailable();
+                if (client == null) {
+                    // 不退化为本地存储，避免多节点时资源只在生成的节点可访问
+                    throw new IllegalStateException("artifact.storage为key-value时需要注册ArtifactKeyValueClient的bean");
+                }
+                return new KeyValueArtifactStore(client, properties.getTtl());
+            case FILE:
+            default:
+                return new FileArtifactStore(new File(commonPayProperties.resolveArtifactFileDir()), properties.getShardLevels());
+        }
+    }
+
+    /**
+     * 支付资源异步清除器
+     * 支付成功后在后台批量清除订单的支付资源
+     */
+    @ConditionalOnMissingBean
+    @Bean
+    ArtifactCleaner artifactCleaner(CommonPayProperties commonPayProperties, ArtifactStore artifactStore) {
+        ArtifactProperties properties = commonPayProperties.getArtifact();
+        return new ArtifactCleaner(artifactStore, properties.getCleanQueueCapacity(), properties.getCleanBatchSize());
+    }
+
+    /**
+     * 支付、退款事件分发器
+     * 同一订单的事件按顺序分发，监听器不会并发执行
+     */
+    @ConditionalOnMissingBean
+    @Bean
+    OrderedEventDispatcher orderedEventDispatcher(CommonPayProperties commonPayProperties) {
+        EventProperties properties = commonPayProperties.getEvent();
+        return new OrderedEventDispatcher(
+                properties.getDispatch(),
+                properties.getThreads(),
+                properties.getQueueCapacity(),
+                properties.getOfferTimeout(),
+                properties.getShutdownTimeout()
+        );
+    }
+
+    /**
+     * 主动查询引擎
+     * 分批取出各{@link PendingQuerySource}中的未确认单据，每个单据按退避策略排期，按支付平台限制并发查询
+     */
+    @ConditionalOnProperty(prefix = "develop-collect.pay", name = "active-query.enabled", havingValue = "true")
+    @ConditionalOnMissingBean
+    @Bean
+    ActiveQueryEngine activeQueryEngine(
+            CommonPayProperties commonPayProperties,
+            ObjectProvider<PendingQuerySource<?>> pendingQuerySources,
+            ObjectProvider<ClusterPartitioner> clusterPartitioner) {
+        ActiveQueryProperties properties = commonPayProperties.getActiveQuery();
+        List<PendingQuerySource<?>> sources = pendingQuerySources.orderedStream().collect(Collectors.toList());
+        if (sources.isEmpty()) {
+            log.warn("已开启主动查询，但未找到PendingQuerySource");
+        }
+        Map<Integer, Integer> platformConcurrency = new HashMap<>(4);
+        properties.getPlatformConcurrency().forEach((name, concurrency) -> platformConcurrency.put(payPlatform(name), concurrency));
+        QueryBackoffProperties backoff = properties.getBackoff();
+        ActiveQueryEngine engine = new ActiveQueryEngine(
+                sources,
+                properties.getBatchSize(),
+                properties.getThreads(),
+                properties.getInterval(),
+                properties.getDiscoveryInterval(),
+                new QueryBackoff(backoff.getInitialDelay(), backoff.getMultiplier(), backoff.getMaxDelay(), backoff.getExpireAfter()),
+                platformConcurrency,
+                properties.getConcurrency()
+        );
+        clusterPartitioner.ifAvailable(engine::setPartitioner);
+        return engine;
+    }
+
+    /**
+     * 主动查询集群分区
+     * 集群成员优先使用容器中的{@link ClusterMembership}，其次在配置了表名时使用数据库，
+     * 都没有时启动失败，只有显式开启{@code allow-local-membership}时才使用只在当前进程有效的成员
+     */
+    @ConditionalOnProperty(prefix = "develop-collect.pay", name = {"active-query.enabled", "active-query.cluster.enabled"}, havingValue = "true")
+    @ConditionalOnMissingBean
+    @Bean
+    ClusterPartitioner clusterPartitioner(
+            CommonPayProperties commonPayProperties,
+            ObjectProvider<ClusterMembership> clusterMembership,
+            ObjectProvider<DataSource> dataSource) {
+        QueryClusterProperties properties = commonPayProperties.getActiveQuery().getCluster();
+        ClusterMembership membership = clusterMembership.getIfAvailable();
+        if (membership == null && StrUtil.isNotBlank(properties.getJdbcTable())) {
+            DataSource ds = dataSource.getIfUnique();
+            if (ds == null) {
+                throw new IllegalStateException("已配置active-query.cluster.jdbc-table，但未找到唯一的DataSource");
+            }
+            membership = new JdbcClusterMembership(ds, properties.getJdbcTable());
+        }
+        if (membership == null) {
+            if (!properties.isAllowLocalMembership()) {
+                // 各节点互相不可见时每个节点都认为自己是唯一节点，分区失效
+                throw new IllegalStateException("主动查询集群分区需要共享的集群成员，请配置active-query.cluster.jdbc-table或注册ClusterMembership的bean");
+            }
+            log.warn("主动查询集群成员只保存在当前进程，多个节点之间不会分区");
+            membership = new LocalClusterMembership();
+        }
+        String nodeId = StrUtil.isNotBlank(properties.getNodeId())
+                ? properties.getNodeId()
+                : ManagementFactory.getRuntimeMXBean().getName();
+        return new ClusterPartitioner(
+                membership,
+                nodeId,
+                properties.getHeartbeatInterval(),
+                properties.getLeaseTtl(),
+                properties.getVirtualNodes()
+        );
+    }
+
+    /**
+     * 支付平台接口调用保护
+     * 按支付平台和商户对Pay工厂创建的Pay对象的调用限流和熔断
+     */
+    @ConditionalOnProperty(prefix = "develop-collect.pay", name = "api-guard.enabled", havingValue = "true")
+    @ConditionalOnMissingBean
+    @Bean
+    PlatformCallGuard platformCallGuard(CommonPayProperties commonPayProperties) {
+        ApiGuardProperties properties = commonPayProperties.getApiGuard();
+        Map<Integer, Double> platformQps = new HashMap<>(4);
+        properties.getPlatformQps().forEach((name, qps) -> platformQps.put(payPlatform(name), qps));
+        return new PlatformCallGuard(
+                platformQps,
+                properties.getQps(),
+                properties.getBurst(),
+                properties.getMaxWait(),
+                properties.getFailureThreshold(),
+                properties.getOpenDuration(),
+                properties.getLocalMethods(),
+                properties.getThrottleCodes()
+        );
+    }
+
+    private static int payPlatform(String name) {
+        switch (name.toLowerCase()) {
+            case "alipay":
+                return PayPlatform.ALI_PAY;
+            case "wxpay":
+                return PayPlatform.WX_PAY;
+            default:
+                throw new IllegalArgumentException("unknown pay platform: " + name);
+        }
+    }
+
+    /**
+     * 过期支付资源文件清理器
+     * 只在文件存储时启用，只清理各支付平台的资源文件夹
+     */
+    @ConditionalOnExpression("${develop-collect.pay.artifact.janitor.enabled:true} && '${develop-collect.pay.artifact.storage:file}'.equalsIgnoreCase('file')")
+    @ConditionalOnMissingBean
+    @Bean
+    ArtifactJanitor artifactJanitor(CommonPayProperties commonPayProperties) {
+        ArtifactJanitorProperties properties = commonPayProperties.getArtifact().getJanitor();
+        String artifactFileDir = commonPayProperties.resolveArtifactFileDir();
+        return new ArtifactJanitor(
+                Arrays.asList(Paths.get(artifactFileDir, "alipay"), Paths.get(artifactFileDir, "wxpay")),
+                properties.getMaxAge(),
+                properties.getInterval(),
+                properties.getBatchSize()
+        );
+    }
+
+    /**
+     * 异步通知分发器
+     * 开启后通知验签通过即写入本地日志并应答，由后台线程广播
+     */
+    @ConditionalOnProperty(prefix = "develop-collect.pay", name = "async-notify.enabled", havingValue = "true")
+    @ConditionalOnMissingBean
+    @Bean
+    AsyncNotifyDispatcher asyncNotifyDispatcher(CommonPayProperties commonPayProperties, ObjectProvider<NotifyDeduplicator> notifyDeduplicator) {
+        AsyncNotifyProperties properties = commonPayProperties.getAsyncNotify();
+        String journalDir = StrUtil.isBlank(properties.getJournalDir())
+                ? String.format("%s/cPay/journal", SpringUtil.appHome())
+                : properties.getJournalDir();
+        NotifyJournal journal = new NotifyJournal(new File(journalDir), properties.isFsync(), properties.getCompactThreshold());
+        return new AsyncNotifyDispatcher(
+                journal,
+                properties.getWorkerThreads(),
+                properties.getQueueCapacity(),
+                properties.getRetryInitialDelay(),
+                properties.getRetryMaxDelay(),
+                properties.getMaxAttempts(),
+                notifyDeduplicator.getIfAvailable()
+        );
+    }
+
+    /**
+     * 重复通知过滤器
+     * 容器中有{@link NotifyDedupStore}时将其作为多节点共享的存储
+     */
+    @ConditionalOnProperty(prefix = "develop-collect.pay", name = "notify-dedup.enabled", havingValue = "true", matchIfMissing = true)
+    @ConditionalOnMissingBean
+    @Bean
+    NotifyDeduplicator notifyDeduplicator(CommonPayProperties commonPayProperties, ObjectProvider<NotifyDedupStore> notifyDedupStore) {
+        NotifyDedupProperties properties = commonPayProperties.getNotifyDedup();
+        return new NotifyDeduplicator(
+                new LocalNotifyDedupStore(properties.getMaxSize()),
+                notifyDedupStore.getIfAvailable(),
+                properties.getTtl(),
+                properties.getClaimTtl()
+        );
+    }
+
+    /**
+     * 异步通知指标记录器
+     * classpath中没有Micrometer时不记录
+     */
+    @ConditionalOnMissingBean
+    @Bean
+    NotifyMetrics noopNotifyMetrics() {
+        return NotifyMetrics.NOOP;
+    }
+
+
+    /**
+     * Micrometer指标配置
+     * 注意：只有在这个类中才能引用Micrometer的类
+     */
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    @Configuration
+    static class CommonPayMetricsConfig {
+
+        /**
+         * 异步通知指标记录器
+         * 同时注册重复通知过滤、临时文件目录、过期资源文件清理、主动查询和接口调用保护的指标，
+         * 临时文件目录的指标只在使用本地文件存储支付资源时注册
+         */
+        @ConditionalOnMissingBean
+        @Bean
+        NotifyMetrics notifyMetrics(
+                ObjectProvider<MeterRegistry> meterRegistry,
+                ObjectProvider<ArtifactStore> artifactStore,
+                ObjectProvider<NotifyDeduplicator> notifyDeduplicator,
+                ObjectProvider<ArtifactJanitor> artifactJanitor,
+                ObjectProvider<ActiveQueryEngine> activeQueryEngine,
+                ObjectProvider<PlatformCallGuard> platformCallGuard
+        ) {
+            MicrometerNotifyMetrics notifyMetrics = new MicrometerNotifyMetrics(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+            notifyDeduplicator.ifAvailable(notifyMetrics::bindDeduplicator);
+            artifactJanitor.ifAvailable(notifyMetrics::bindJanitor);
+            activeQueryEngine.ifAvailable(notifyMetrics::bindActiveQueryEngine);
+            platformCallGuard.ifAvailable(notifyMetrics::bindPlatformCallGuard);
+            ArtifactStore store = artifactStore.getIfAvailable();
+            if (store instanceof FileArtifactStore) {
+                // 内存和键值存储不写本地目录，注册了只会一直报告0
+                File root = ((FileArtifactStore) store).getRoot();
+                notifyMetrics.bindTempDirectory(NotifyMetrics.PLATFORM_ALI_PAY, new File(root, "alipay").toPath());
+                notifyMetrics.bindTempDirectory(NotifyMetrics.PLATFORM_WX_PAY, new File(root, "wxpay").toPath());
+            }
+            return notifyMetrics;
+        }
+    }
+
 
     /**
      * 默认配置器
@@ -82,6 +418,21 @@ public class CommonPayAutoConfig {
          */
         private final CommonPayProperties commonPayProperties;
 
+        /**
+         * 支付资源存储
+         */
+        private final ArtifactStore artifactStore;
+
+        /**
+         * 支付资源异步清除器
+         */
+        private final ArtifactCleaner artifactCleaner;
+
+        /**
+         * 支付、退款事件分发器
+         */
+        private final OrderedEventDispatcher orderedEventDispatcher;
+
         /**
          * 支付宝配置提供器
          */
@@ -122,6 +473,11 @@ public class CommonPayAutoConfig {
          */
         private IUnconfirmedRefundFetcher unconfirmedRefundFetcher;
 
+        /**
+         * 支付平台接口调用保护
+         */
+        private PlatformCallGuard platformCallGuard;
+
 
         // 注意自动注入是指定了bean的名称的
 
@@ -167,6 +523,11 @@ public class CommonPayAutoConfig {
             this.unconfirmedTransferFetcher = unconfirmedTransferFetcher;
         }
 
+        @Autowired(required = false)
+        public void setPlatformCallGuard(PlatformCallGuard platformCallGuard) {
+            this.platformCallGuard = platformCallGuard;
+        }
+
         @Override
         public void config(GlobalConfig globalConfig) {
             // 校验配置的值
@@ -180,9 +541,20 @@ public class CommonPayAutoConfig {
             // 设置主动查询通知间隔时间， 用于控制主动查询支付状态的频率
             globalConfig.setQueryNoticeDelay(commonPayProperties.getQueryNoticeDelay());
 
+            // 配置了多商户时按当前商户路由，未指定商户时使用默认配置
+            MerchantRegistry merchantRegistry = merchantRegistry();
+            if (!merchantRegistry.isEmpty()) {
+                payConfigSupplierMap.put(PayPlatform.ALI_PAY, new MerchantRoutingSupplier<>(aliPayConfigSupplier, merchantRegistry, Merchant::getAliPayConfig));
+                payConfigSupplierMap.put(PayPlatform.WX_PAY, new MerchantRoutingSupplier<>(wxPayConfigSupplier, merchantRegistry, Merchant::getWxPayConfig));
+                log.info("商户：{}，支付宝支付通知地址：{}/{商户id}，微信支付通知地址：{}/{商户id}",
+                        merchantRegistry.getMerchantIds(), commonPayProperties.urls().getAliPayNotifyUrl(), commonPayProperties.urls().getWxPayNotifyUrl());
+            }
+
             // 设置支付宝配置提供器
             if (aliPayConfigSupplier != null) {
-                payConfigSupplierMap.put(PayPlatform.ALI_PAY, aliPayConfigSupplier);
+                if (merchantRegistry.isEmpty()) {
+                    payConfigSupplierMap.put(PayPlatform.ALI_PAY, aliPayConfigSupplier);
+                }
                 try {
                     String aliPayNotifyUrlExample = aliPayConfigSupplier.get().getPayNotifyUrlGenerator().apply(ExamplePayDTO.getAliPayExamplePayDTO());
                     log.info("支付宝支付通知地址：{}", aliPayNotifyUrlExample);
@@ -195,7 +567,9 @@ public class CommonPayAutoConfig {
 
             // 设置微信配置提供器
             if (wxPayConfigSupplier != null) {
-                payConfigSupplierMap.put(PayPlatform.WX_PAY, wxPayConfigSupplier);
+                if (merchantRegistry.isEmpty()) {
+                    payConfigSupplierMap.put(PayPlatform.WX_PAY, wxPayConfigSupplier);
+                }
                 try {
                     String wxPayNotifyUrlExample = wxPayConfigSupplier.get().getPayNotifyUrlGenerator().apply(ExamplePayDTO.getWxPayExamplePayDTO());
                     log.info("微信支付通知地址：{}", wxPayNotifyUrlExample);
@@ -212,8 +586,19 @@ public class CommonPayAutoConfig {
             globalConfig.setRefundBroadcaster(refundBroadcaster);
 
             // 设置Pay工厂， 因为common-pay中有默认的工厂， 所以只有在payFactory不为null的时候才覆盖原有的工厂
-            if (payFactory != null) {
-                globalConfig.setPayFactory(payFactory);
+            // 开启接口调用保护时代理工厂，未提供工厂时代理common-pay的默认工厂
+            IPayFactory factory = payFactory;
+            if (platformCallGuard != null) {
+                if (factory == null) {
+                    factory = GlobalConfig.payFactory();
+                }
+                if (factory == null) {
+                    throw new IllegalStateException("开启api-guard.enabled时未找到Pay工厂，无法对支付平台接口调用限流和熔断");
+                }
+                factory = GuardedPayFactory.wrap(IPayFactory.class, factory, platformCallGuard);
+            }
+            if (factory != null) {
+                globalConfig.setPayFactory(factory);
             }
 
             // 设置未确认支付订单提取器
@@ -226,6 +611,7 @@ public class CommonPayAutoConfig {
 
         /**
          * 支付宝配置提供器
+         * 开启配置重新加载后，属性或证书内容变化时重新创建配置
          * 注意： 注入的各参数都有指定Bean名称
          * @param aliPayPcReturnUrlGenerator 支付宝PC页面支付完成跳转地址生成器
          * @param aliPayWapReturnUrlGenerator 支付宝WAP页面支付完成跳转地址生成器
@@ -247,56 +633,79 @@ public class CommonPayAutoConfig {
                 @Qualifier("aliPayTempFileClear") Consumer<PayResponse> aliPayTempFileClear,
                 @Nullable @Qualifier("alipayAppCertContentSupplier") Supplier<String> alipayAppCertContentSupplier,
                 @Nullable @Qualifier("alipayCertContentSupplier") Supplier<String> alipayCertContentSupplier,
-                @Nullable @Qualifier("alipayRootCertContentSupplier") Supplier<String> alipayRootCertContentSupplier
+                @Nullable @Qualifier("alipayRootCertContentSupplier") Supplier<String> alipayRootCertContentSupplier,
+                ObjectProvider<AliPayNotifyVerifier> aliPayNotifyVerifier
         ) {
-            AliPayProperties aliPayProperties = commonPayProperties.getAlipay();
-            if (StrUtil.isBlank(aliPayProperties.getAppid())) {
-                throw new IllegalArgumentException("alipay appid can not be blank");
-            }
-            if (StrUtil.isBlank(aliPayProperties.getPrivateKey())) {
-                throw new IllegalArgumentException("alipay private key can not be blank");
-            }
-            // 证书和密钥文件不能同时为空
-            if (alipayAppCertContentSupplier == null && alipayCertContentSupplier == null && alipayRootCertContentSupplier == null) {
-                if (StrUtil.isBlank(aliPayProperties.getPublicKey())) {
-                    throw new IllegalArgumentException("alipay public key can not be blank");
-                }
-            }
-
-
-            return new Supplier<AliPayConfig>() {
-
-                private AliPayConfig aliPayConfig;
-
-                {
-                    aliPayConfig = new AliPayConfig();
-                    aliPayConfig
-                            .setAppId(aliPayProperties.getAppid())
-                            .setPrivateKey(aliPayProperties.getPrivateKey())
-                            .setPublicKey(aliPayProperties.getPublicKey())
-                            .setAppCertContentSupplier(alipayAppCertContentSupplier)
-                            .setAlipayCertContentSupplier(alipayCertContentSupplier)
-                            .setAlipayRootCertContentSupplier(alipayRootCertContentSupplier)
-                            .setCharset(aliPayProperties.getCharset())
-                            .setSignType(aliPayProperties.getSignType())
-                            .setDebug(aliPayProperties.isUseSandbox())
-                            .setQrCodeWidth(aliPayProperties.getQrCodeWidth())
-                            .setQrCodeHeight(aliPayProperties.getQrCodeHeight())
-                            .setPcReturnUrlGenerator(aliPayPcReturnUrlGenerator)
-                            .setWapReturnUrlGenerator(aliPayWapReturnUrlGenerator)
-                            .setPayNotifyUrlGenerator(aliPayPayNotifyUrlGenerator)
-                            .setPayQrCodeAccessUrlGenerator(aliPayPayQrCodeAccessUrlGenerator)
-                            .setPcPayFormHtmlAccessUrlGenerator(aliPayPcPayFormHtmlAccessUrlGenerator)
-                            .setWapPayFormHtmlAccessUrlGenerator(aliPayWapPayFormHtmlAccessUrlGenerator)
-                            // 扩展配置
-                            .putExt("aliPayTempFileClear", aliPayTempFileClear);
-                }
-
-                @Override
-                public AliPayConfig get() {
-                    return aliPayConfig;
-                }
-            };
+            return new ReloadablePayConfigSupplier<>(
+                    "支付宝支付配置",
+                    () -> {
+                        AliPayProperties aliPayProperties = commonPayProperties.getAlipay();
+                        if (StrUtil.isBlank(aliPayProperties.getAppid())) {
+                            throw new IllegalArgumentException("alipay appid can not be blank");
+                        }
+                        if (StrUtil.isBlank(aliPayProperties.getPrivateKey())) {
+                            throw new IllegalArgumentException("alipay private key can not be blank");
+                        }
+                        // 没有注册证书提供器时使用证书路径
+                        Supplier<String> appCertContentSupplier = alipayCertContent(alipayAppCertContentSupplier, aliPayProperties.getAppCertLocation());
+                        Supplier<String> certContentSupplier = alipayCertContent(alipayCertContentSupplier, aliPayProperties.getAlipayCertLocation());
+                        Supplier<String> rootCertContentSupplier = alipayCertContent(alipayRootCertContentSupplier, aliPayProperties.getAlipayRootCertLocation());
+                        // 证书和密钥文件不能同时为空
+                        if (appCertContentSupplier == null && certContentSupplier == null && rootCertContentSupplier == null) {
+                            if (StrUtil.isBlank(aliPayProperties.getPublicKey())) {
+                                throw new IllegalArgumentException("alipay public key can not be blank");
+                            }
+                        }
+
+                        AliPayConfig aliPayConfig = new AliPayConfig();
+                        aliPayConfig
+                                .setAppId(aliPayProperties.getAppid())
+                                .setPrivateKey(aliPayProperties.getPrivateKey())
+                                .setPublicKey(aliPayProperties.getPublicKey())
+                                .setAppCertContentSupplier(appCertContentSupplier)
+                                .setAlipayCertContentSupplier(certContentSupplier)
+                                .setAlipayRootCertContentSupplier(rootCertContentSupplier)
+                                .setCharset(aliPayProperties.getCharset())
+                                .setSignType(aliPayProperties.getSignType())
+                                .setDebug(aliPayProperties.isUseSandbox())
+                                .setQrCodeWidth(aliPayProperties.getQrCodeWidth())
+                                .setQrCodeHeight(aliPayProperties.getQrCodeHeight())
+                                .setPcReturnUrlGenerator(aliPayPcReturnUrlGenerator)
+                                .setWapReturnUrlGenerator(aliPayWapReturnUrlGenerator)
+                                .setPayNotifyUrlGenerator(aliPayPayNotifyUrlGenerator)
+                                .setPayQrCodeAccessUrlGenerator(aliPayPayQrCodeAccessUrlGenerator)
+                                .setPcPayFormHtmlAccessUrlGenerator(aliPayPcPayFormHtmlAccessUrlGenerator)
+                                .setWapPayFormHtmlAccessUrlGenerator(aliPayWapPayFormHtmlAccessUrlGenerator)
+                                // 扩展配置
+                                .putExt("aliPayTempFileClear", aliPayTempFileClear);
+                        return aliPayConfig;
+                    },
+                    // 属性和证书内容都不变时不重新创建配置
+                    () -> {
+                        AliPayProperties aliPayProperties = commonPayProperties.getAlipay();
+                        return Arrays.asList(
+                                aliPayProperties.getAppid(),
+                                aliPayProperties.getPrivateKey(),
+                                aliPayProperties.getPublicKey(),
+                                aliPayProperties.getCharset(),
+                                aliPayProperties.getSignType(),
+                                aliPayProperties.isUseSandbox(),
+                                aliPayProperties.getQrCodeWidth(),
+                                aliPayProperties.getQrCodeHeight(),
+                                supplied(alipayCertContent(alipayAppCertContentSupplier, aliPayProperties.getAppCertLocation())),
+                                supplied(alipayCertContent(alipayCertContentSupplier, aliPayProperties.getAlipayCertLocation())),
+                                supplied(alipayCertContent(alipayRootCertContentSupplier, aliPayProperties.getAlipayRootCertLocation()))
+                        );
+                    },
+                    // 新配置生效后立即解析公钥，不在通知验签时解析
+                    config -> aliPayNotifyVerifier.ifAvailable(verifier -> {
+                        try {
+                            verifier.getPublicKey(config);
+                        } catch (Exception e) {
+                            log.warn("支付宝公钥解析失败", e);
+                        }
+                    })
+            );
         }
 
         /**
@@ -305,7 +714,7 @@ public class CommonPayAutoConfig {
         @ConditionalOnMissingBean(name = "aliPayPayNotifyUrlGenerator")
         @Bean
         Function<IPayDTO, String> aliPayPayNotifyUrlGenerator() {
-            return o -> String.format("%s/cPay/alipay", commonPayProperties.getUrlPrefix());
+            return o -> commonPayProperties.urls().getAliPayNotifyUrl();
         }
 
         /**
@@ -349,6 +758,7 @@ public class CommonPayAutoConfig {
 
         /**
          * 微信配置提供其
+         * 开启配置重新加载后，属性或证书内容变化时重新创建配置
          * @param wxPayPayNotifyUrlGenerator 微信支付结果异步通知地址生成器
          * @param wxPayPayQrCodeAccessUrlGenerator 微信支付二维码访问地址生成器
          * @param wxPayRefundNotifyUrlGenerator 微信退款结果异步通知地址生成器
@@ -364,42 +774,52 @@ public class CommonPayAutoConfig {
                 @Nullable @Qualifier("wxPayCertInputStreamSupplier") Supplier<InputStream> wxPayCertInputStreamSupplier,
                 @Qualifier("wxPayTempFileClear") Consumer<PayResponse> wxPayTempFileClear
         ) {
-            WxPayProperties wxPayProperties = commonPayProperties.getWxpay();
-            if (StrUtil.isBlank(wxPayProperties.getAppid())) {
-                throw new IllegalArgumentException("wxpay appid can not be blank");
-            }
-            if (StrUtil.isBlank(wxPayProperties.getMchId())) {
-                throw new IllegalArgumentException("wxpay mchid can not be blank");
-            }
-            if (StrUtil.isBlank(wxPayProperties.getKey())) {
-                throw new IllegalArgumentException("wxpay key can not be blank");
-            }
-
-            return new Supplier<WxPayConfig>() {
-                private WxPayConfig wxPayConfig;
-
-                {
-                    wxPayConfig = new WxPayConfig();
-                    wxPayConfig
-                            .setAppId(wxPayProperties.getAppid())
-                            .setMchId(wxPayProperties.getMchId())
-                            .setKey(wxPayProperties.getKey())
-                            .setCertInputStreamSupplier(wxPayCertInputStreamSupplier)
-                            .setDebug(wxPayProperties.isUseSandbox())
-                            .setQrCodeWidth(wxPayProperties.getQrCodeWidth())
-                            .setQrCodeHeight(wxPayProperties.getQrCodeHeight())
-                            .setPayNotifyUrlGenerator(wxPayPayNotifyUrlGenerator)
-                            .setRefundNotifyUrlGenerator(wxPayRefundNotifyUrlGenerator)
-                            .setPayQrCodeAccessUrlGenerator(wxPayPayQrCodeAccessUrlGenerator)
-                            // 扩展配置
-                            .putExt("wxPayTempFileClear", wxPayTempFileClear);
-                }
-
-                @Override
-                public WxPayConfig get() {
-                    return wxPayConfig;
-                }
-            };
+            return new ReloadablePayConfigSupplier<>(
+                    "微信支付配置",
+                    () -> {
+                        WxPayProperties wxPayProperties = commonPayProperties.getWxpay();
+                        if (StrUtil.isBlank(wxPayProperties.getAppid())) {
+                            throw new IllegalArgumentException("wxpay appid can not be blank");
+                        }
+                        if (StrUtil.isBlank(wxPayProperties.getMchId())) {
+                            throw new IllegalArgumentException("wxpay mchid can not be blank");
+                        }
+                        if (StrUtil.isBlank(wxPayProperties.getKey())) {
+                            throw new IllegalArgumentException("wxpay key can not be blank");
+                        }
+
+                        WxPayConfig wxPayConfig = new WxPayConfig();
+                        wxPayConfig
+                                .setAppId(wxPayProperties.getAppid())
+                                .setMchId(wxPayProperties.getMchId())
+                                .setKey(wxPayProperties.getKey())
+                                .setCertInputStreamSupplier(wxPayCertInputStreamSupplier)
+                                .setDebug(wxPayProperties.isUseSandbox())
+                                .setQrCodeWidth(wxPayProperties.getQrCodeWidth())
+                                .setQrCodeHeight(wxPayProperties.getQrCodeHeight())
+                                .setPayNotifyUrlGenerator(wxPayPayNotifyUrlGenerator)
+                                .setRefundNotifyUrlGenerator(wxPayRefundNotifyUrlGenerator)
+                                .setPayQrCodeAccessUrlGenerator(wxPayPayQrCodeAccessUrlGenerator)
+                                // 扩展配置
+                                .putExt("wxPayTempFileClear", wxPayTempFileClear);
+                        return wxPayConfig;
+                    },
+                    // 属性和证书内容都不变时不重新创建配置
+                    () -> {
+                        WxPayProperties wxPayProperties = commonPayProperties.getWxpay();
+                        return Arrays.asList(
+                                wxPayProperties.getAppid(),
+                                wxPayProperties.getMchId(),
+                                wxPayProperties.getKey(),
+                                wxPayProperties.getCertLocation(),
+                                wxPayProperties.isUseSandbox(),
+                                wxPayProperties.getQrCodeWidth(),
+                                wxPayProperties.getQrCodeHeight(),
+                                digest(wxPayCertInputStreamSupplier)
+                        );
+                    },
+                    null
+            );
         }
 
         /**
@@ -408,7 +828,7 @@ public class CommonPayAutoConfig {
         @ConditionalOnMissingBean(name = "wxPayPayNotifyUrlGenerator")
         @Bean
         Function<IPayDTO, String> wxPayPayNotifyUrlGenerator() {
-            return o -> String.format("%s/cPay/wxpay", commonPayProperties.getUrlPrefix());
+            return o -> commonPayProperties.urls().getWxPayNotifyUrl();
         }
 
         /**
@@ -426,18 +846,21 @@ public class CommonPayAutoConfig {
         @ConditionalOnMissingBean(name = "wxPayRefundNotifyUrlGenerator")
         @Bean
         BiFunction<IPayDTO, IRefundDTO, String> wxPayRefundNotifyUrlGenerator() {
-            return (payDTO, refundDTO) -> String.format("%s/cPay/wxpay/refund", commonPayProperties.getUrlPrefix());
+            return (payDTO, refundDTO) -> commonPayProperties.urls().getWxPayRefundNotifyUrl();
         }
 
         /**
          * 微信接口调用证书提供其
-         * 微信退款时需要证书
+         * 微信退款时需要证书，证书内容缓存在内存中，按wxpay.cert-refresh-interval定期重新读取
          */
         @ConditionalOnProperty(prefix = "develop-collect.pay", name = "wxpay.cert-location")
         @ConditionalOnMissingBean(name = "wxPayCertInputStreamSupplier")
         @Bean
         Supplier<InputStream> wxPayCertInputStreamSupplier() {
-            return () -> LambdaUtil.doThrow(() -> getResource(commonPayProperties.getWxpay().getCertLocation()).getInputStream());
+            return new CachedCertificateSupplier(
+                    () -> commonPayProperties.getWxpay().getCertLocation(),
+                    location -> LambdaUtil.doThrow(() -> getResource(location).getInputStream()),
+                    commonPayProperties.getWxpay().getCertRefreshInterval());
         }
 
         @ConditionalOnMissingBean(name = "wxPayTempFileClear")
@@ -448,16 +871,126 @@ public class CommonPayAutoConfig {
         // endregion
 
 
+        // region 多商户配置
+
+        /**
+         * 商户注册表
+         * 商户的支付配置和验签器在第一次使用时创建，通知地址为 /cPay/alipay/{商户id}、/cPay/wxpay/{商户id}、/cPay/wxpay/refund/{商户id}，
+         * 二维码、支付页面等使用默认的生成器
+         */
+        @Bean
+        MerchantRegistry merchantRegistry() {
+            List<MerchantProperties> merchants = commonPayProperties.getMerchants();
+            if (merchants.isEmpty()) {
+                return MerchantRegistry.EMPTY;
+            }
+            Map<String, MerchantProperties> merchantMap = new LinkedHashMap<>();
+            for (MerchantProperties merchant : merchants) {
+                if (StrUtil.isBlank(merchant.getId())) {
+                    throw new IllegalArgumentException("merchant id can not be blank");
+                }
+                if ("refund".equals(merchant.getId()) || merchant.getId().contains("/")) {
+                    throw new IllegalArgumentException("illegal merchant id: " + merchant.getId());
+                }
+                if (merchantMap.put(merchant.getId(), merchant) != null) {
+                    throw new IllegalArgumentException("duplicate merchant id: " + merchant.getId());
+                }
+                if (merchant.getAlipay() == null && merchant.getWxpay() == null) {
+                    throw new IllegalArgumentException("merchant [" + merchant.getId() + "] has no pay config");
+                }
+            }
+            return new MerchantRegistry(merchantMap.keySet(), id -> {
+                MerchantProperties merchant = merchantMap.get(id);
+                return new Merchant(
+                        id,
+                        merchant.getAlipay() == null ? null : merchantAliPayConfig(id, merchant.getAlipay()),
+                        merchant.getWxpay() == null ? null : merchantWxPayConfig(id, merchant.getWxpay())
+                );
+            });
+        }
+
+        private AliPayConfig merchantAliPayConfig(String merchantId, AliPayProperties aliPayProperties) {
+            if (StrUtil.isBlank(aliPayProperties.getAppid())) {
+                throw new IllegalArgumentException("alipay appid of merchant [" + merchantId + "] can not be blank");
+            }
+            if (StrUtil.isBlank(aliPayProperties.getPrivateKey())) {
+                throw new IllegalArgumentException("alipay private key of merchant [" + merchantId + "] can not be blank");
+            }
+            // 公钥证书模式需要同时配置三个证书，否则使用公钥
+            boolean cert = StrUtil.isNotBlank(aliPayProperties.getAppCertLocation())
+                    || StrUtil.isNotBlank(aliPayProperties.getAlipayCertLocation())
+                    || StrUtil.isNotBlank(aliPayProperties.getAlipayRootCertLocation());
+            if (cert) {
+                if (StrUtil.isBlank(aliPayProperties.getAppCertLocation())
+                        || StrUtil.isBlank(aliPayProperties.getAlipayCertLocation())
+                        || StrUtil.isBlank(aliPayProperties.getAlipayRootCertLocation())) {
+                    throw new IllegalArgumentException("alipay app cert, alipay cert and alipay root cert of merchant [" + merchantId + "] must be configured together");
+                }
+            } else if (StrUtil.isBlank(aliPayProperties.getPublicKey())) {
+                throw new IllegalArgumentException("alipay public key or certs of merchant [" + merchantId + "] can not be blank");
+            }
+            AliPayConfig aliPayConfig = new AliPayConfig();
+            aliPayConfig
+                    .setAppId(aliPayProperties.getAppid())
+                    .setPrivateKey(aliPayProperties.getPrivateKey())
+                    .setPublicKey(aliPayProperties.getPublicKey())
+                    .setAppCertContentSupplier(alipayCertContent(null, aliPayProperties.getAppCertLocation()))
+                    .setAlipayCertContentSupplier(alipayCertContent(null, aliPayProperties.getAlipayCertLocation()))
+                    .setAlipayRootCertContentSupplier(alipayCertContent(null, aliPayProperties.getAlipayRootCertLocation()))
+                    .setCharset(aliPayProperties.getCharset())
+                    .setSignType(aliPayProperties.getSignType())
+                    .setDebug(aliPayProperties.isUseSandbox())
+                    .setQrCodeWidth(aliPayProperties.getQrCodeWidth())
+                    .setQrCodeHeight(aliPayProperties.getQrCodeHeight())
+                    .setPayNotifyUrlGenerator(o -> commonPayProperties.urls().getAliPayNotifyUrl() + "/" + merchantId)
+                    .setPayQrCodeAccessUrlGenerator((payDTO, content) -> payQrCodeAccessUrl(PayPlatform.ALI_PAY, payDTO, content))
+                    .setPcPayFormHtmlAccessUrlGenerator((payDTO, html) -> pcPayFormHtmlAccessUrl(PayPlatform.ALI_PAY, payDTO, html))
+                    .setWapPayFormHtmlAccessUrlGenerator((payDTO, html) -> wapPayFormHtmlAccessUrl(PayPlatform.ALI_PAY, payDTO, html))
+                    // 扩展配置
+                    .putExt("aliPayTempFileClear", (Consumer<PayResponse>) this::clearTempFile);
+            return aliPayConfig;
+        }
+
+        private WxPayConfig merchantWxPayConfig(String merchantId, WxPayProperties wxPayProperties) {
+            if (StrUtil.isBlank(wxPayProperties.getAppid()) || StrUtil.isBlank(wxPayProperties.getMchId()) || StrUtil.isBlank(wxPayProperties.getKey())) {
+                throw new IllegalArgumentException("wxpay appid, mchid and key of merchant [" + merchantId + "] can not be blank");
+            }
+            String certLocation = wxPayProperties.getCertLocation();
+            WxPayConfig wxPayConfig = new WxPayConfig();
+            wxPayConfig
+                    .setAppId(wxPayProperties.getAppid())
+                    .setMchId(wxPayProperties.getMchId())
+                    .setKey(wxPayProperties.getKey())
+                    .setCertInputStreamSupplier(StrUtil.isBlank(certLocation)
+                            ? null
+                            : new CachedCertificateSupplier(
+                                    () -> certLocation,
+                                    location -> LambdaUtil.doThrow(() -> getResource(location).getInputStream()),
+                                    wxPayProperties.getCertRefreshInterval()))
+                    .setDebug(wxPayProperties.isUseSandbox())
+                    .setQrCodeWidth(wxPayProperties.getQrCodeWidth())
+                    .setQrCodeHeight(wxPayProperties.getQrCodeHeight())
+                    .setPayNotifyUrlGenerator(o -> commonPayProperties.urls().getWxPayNotifyUrl() + "/" + merchantId)
+                    .setRefundNotifyUrlGenerator((payDTO, refundDTO) -> commonPayProperties.urls().getWxPayRefundNotifyUrl() + "/" + merchantId)
+                    .setPayQrCodeAccessUrlGenerator((payDTO, content) -> payQrCodeAccessUrl(PayPlatform.WX_PAY, payDTO, content))
+                    // 扩展配置
+                    .putExt("wxPayTempFileClear", (Consumer<PayResponse>) this::clearTempFile);
+            return wxPayConfig;
+        }
+
+        // endregion
+
+
         /**
          * 支付结果广播器
          */
         @ConditionalOnMissingBean(value = IPayBroadcaster.class)
         @Bean
         IPayBroadcaster payBroadcaster() {
-            return payResponse -> {
-                SpringUtil.publishEvent(new PayEvent(payResponse));
-                return true;
-            };
+            return payResponse -> orderedEventDispatcher.dispatch(
+                    payResponse.getOutTradeNo(),
+                    () -> SpringUtil.publishEvent(new PayEvent(payResponse))
+            );
         }
 
         /**
@@ -466,44 +999,61 @@ public class CommonPayAutoConfig {
         @ConditionalOnMissingBean(value = IRefundBroadcaster.class)
         @Bean
         IRefundBroadcaster refundBroadcaster() {
-            return refundResponse -> {
-                SpringUtil.publishEvent(new RefundEvent(refundResponse));
-                return true;
-            };
+            return refundResponse -> orderedEventDispatcher.dispatch(
+                    refundOrderKey(refundResponse),
+                    () -> SpringUtil.publishEvent(new RefundEvent(refundResponse))
+            );
+        }
+
+        /**
+         * 支付配置重新加载器
+         * 只重新加载默认的支付宝、微信配置，自定义的配置提供器不受影响
+         */
+        @ConditionalOnProperty(prefix = "develop-collect.pay", name = "reload.enabled", havingValue = "true")
+        @Bean
+        PayConfigReloader payConfigReloader() {
+            List<ReloadablePayConfigSupplier<?>> suppliers = new ArrayList<>(2);
+            if (aliPayConfigSupplier instanceof ReloadablePayConfigSupplier) {
+                suppliers.add((ReloadablePayConfigSupplier<?>) aliPayConfigSupplier);
+            }
+            if (wxPayConfigSupplier instanceof ReloadablePayConfigSupplier) {
+                suppliers.add((ReloadablePayConfigSupplier<?>) wxPayConfigSupplier);
+            }
+            return new PayConfigReloader(suppliers, commonPayProperties.getReload().getInterval());
         }
 
 
         private String pcPayFormHtmlAccessUrl(int payPlatform, IPayDTO payDTO, String html) {
             String payPlatformName = payPlatformName(payPlatform);
-            File payHtmlFile = new File(String.format("%s/cPay/%s/%s.html", SpringUtil.appHome(), payPlatformName, payDTO.getOutTradeNo()));
-            FileUtil.writeString(html, payHtmlFile, StandardCharsets.UTF_8);
-            return String.format("%s/cPay/r/%s/%s.html", commonPayProperties.getUrlPrefix(), payPlatformName, payDTO.getOutTradeNo());
+            String outTradeNo = payDTO.getOutTradeNo();
+            artifactStore.put(payPlatformName, outTradeNo + ".html", html.getBytes(StandardCharsets.UTF_8));
+            return commonPayProperties.urls().resourceUrl(payPlatformName, "", outTradeNo, ".html");
         }
 
         private String wapPayFormHtmlAccessUrl(int payPlatform, IPayDTO payDTO, String html) {
             String payPlatformName = payPlatformName(payPlatform);
-            File payHtmlFile = new File(String.format("%s/cPay/%s/wap_%s.html", SpringUtil.appHome(), payPlatformName, payDTO.getOutTradeNo()));
-            FileUtil.writeString(html, payHtmlFile, StandardCharsets.UTF_8);
-            return String.format("%s/cPay/r/%s/wap_%s.html", commonPayProperties.getUrlPrefix(), payPlatformName, payDTO.getOutTradeNo());
+            String outTradeNo = payDTO.getOutTradeNo();
+            artifactStore.put(payPlatformName, "wap_" + outTradeNo + ".html", html.getBytes(StandardCharsets.UTF_8));
+            return commonPayProperties.urls().resourceUrl(payPlatformName, "wap_", outTradeNo, ".html");
         }
 
         private String payQrCodeAccessUrl(int payPlatform, IPayDTO payDTO, String content) {
             String payPlatformName = payPlatformName(payPlatform);
-            File qrCodeFile = FileUtil.touch(String.format("%s/cPay/%s/%s.png", SpringUtil.appHome(), payPlatformName, payDTO.getOutTradeNo()));
             AbstractPayConfig payConfig = GlobalConfig.getPayConfig(payPlatform);
             int qrCodeWidth = payConfig.getQrCodeWidth();
             int qrCodeHeight = payConfig.getQrCodeHeight();
-            QrCodeUtil.generate(content, qrCodeWidth, qrCodeHeight, qrCodeFile);
-            return String.format("%s/cPay/r/%s/%s.png", commonPayProperties.getUrlPrefix(), payPlatformName, payDTO.getOutTradeNo());
+            if (commonPayProperties.getArtifact().isLazyQrCode()) {
+                // 只记录二维码内容，第一次访问时再生成图片
+                artifactStore.put(payPlatformName, payDTO.getOutTradeNo() + QrCodeArtifacts.CONTENT_SUFFIX, QrCodeArtifacts.pending(content, qrCodeWidth, qrCodeHeight));
+            } else {
+                artifactStore.put(payPlatformName, payDTO.getOutTradeNo() + QrCodeArtifacts.PNG_SUFFIX, QrCodeArtifacts.png(content, qrCodeWidth, qrCodeHeight));
+            }
+            return commonPayProperties.urls().resourceUrl(payPlatformName, "", payDTO.getOutTradeNo(), QrCodeArtifacts.PNG_SUFFIX);
         }
 
         private void clearTempFile(PayResponse payResponse) {
             String payPlatformName = payPlatformName(payResponse.getPayPlatform());
-            String appHome = SpringUtil.appHome();
-            String outTradeNo = payResponse.getOutTradeNo();
-            FileUtil.del(String.format("%s/cPay/%s/%s.png", appHome, payPlatformName, outTradeNo));
-            FileUtil.del(String.format("%s/cPay/%s/%s.html", appHome, payPlatformName, outTradeNo));
-            FileUtil.del(String.format("%s/cPay/%s/wap_%s.html", appHome, payPlatformName, outTradeNo));
+            artifactCleaner.submit(payPlatformName, payResponse.getOutTradeNo());
         }
 
         private String payPlatformName(int payPlatform) {
@@ -536,6 +1086,55 @@ public class CommonPayAutoConfig {
             }
         }
 
+        /**
+         * 退款事件与支付事件按同一个商户订单号排序，原始参数中没有订单号时按退款单号排序
+         */
+        private static String refundOrderKey(RefundResponse refundResponse) {
+            Object rawObj = refundResponse.getRawObj();
+            if (rawObj instanceof Map) {
+                Object outTradeNo = ((Map<?, ?>) rawObj).get("out_trade_no");
+                if (outTradeNo != null) {
+                    return outTradeNo.toString();
+                }
+            }
+            return refundResponse.getOutRefundNo();
+        }
+
+        /**
+         * 支付宝证书内容提供器，优先使用容器中的提供器，其次按证书路径读取，都没有时返回null
+         * 按路径读取的证书内容只在创建配置时读取一次
+         */
+        private Supplier<String> alipayCertContent(Supplier<String> supplier, String location) {
+            if (supplier != null || StrUtil.isBlank(location)) {
+                return supplier;
+            }
+            String content;
+            try (InputStream in = getResource(location).getInputStream()) {
+                content = IoUtil.read(in, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                throw new IllegalArgumentException("读取支付宝证书失败: " + location, e);
+            }
+            return () -> content;
+        }
+
+        private static Object supplied(Supplier<?> supplier) {
+            return supplier == null ? null : supplier.get();
+        }
+
+        /**
+         * 证书内容的摘要，读取失败(如未配置证书)时返回null
+         */
+        private static String digest(Supplier<InputStream> supplier) {
+            if (supplier == null) {
+                return null;
+            }
+            try (InputStream in = supplier.get()) {
+                return SecureUtil.md5(in);
+            } catch (Exception e) {
+                return null;
+            }
+        }
+
         private Resource getResource(String resourceLocation) {
             if (ResourceUtils.isUrl(resourceLocation)) {
                 if (resourceLocation.startsWith(ResourceUtils.CLASSPATH_URL_PREFIX)) {
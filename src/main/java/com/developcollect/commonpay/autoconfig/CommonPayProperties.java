@@ -1,12 +1,23 @@
 package com.developcollect.commonpay.autoconfig;
 
+import com.developcollect.commonpay.autoconfig.artifact.ArtifactStorage;
+import com.developcollect.commonpay.autoconfig.event.EventDispatchMode;
+import com.developcollect.dcinfra.utils.spring.SpringUtil;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.boot.context.properties.NestedConfigurationProperty;
 import org.springframework.context.EnvironmentAware;
 import org.springframework.core.env.Environment;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -22,7 +33,9 @@ public class CommonPayProperties implements EnvironmentAware {
     @Override
     public void setEnvironment(Environment environment) {
         port = Optional.ofNullable(environment.getProperty("server.port", Integer.class)).orElse(8080);
-        contextPath = Optional.ofNullable(environment.getProperty("server.servlet.context-path")).orElse("");
+        // WebFlux应用没有context-path，使用base-path
+        contextPath = Optional.ofNullable(environment.getProperty("server.servlet.context-path"))
+                .orElseGet(() -> environment.getProperty("spring.webflux.base-path", ""));
     }
 
     /**
@@ -59,12 +72,69 @@ public class CommonPayProperties implements EnvironmentAware {
     @NestedConfigurationProperty
     private EndpointProperties resourceEndpoint = new EndpointProperties();
 
+    /**
+     * 支付资源(二维码、支付页面)存储设置
+     */
+    @NestedConfigurationProperty
+    private ArtifactProperties artifact = new ArtifactProperties();
+
+    /**
+     * 异步通知处理设置
+     */
+    @NestedConfigurationProperty
+    private AsyncNotifyProperties asyncNotify = new AsyncNotifyProperties();
+
+    /**
+     * 重复通知过滤设置
+     */
+    @NestedConfigurationProperty
+    private NotifyDedupProperties notifyDedup = new NotifyDedupProperties();
+
+    /**
+     * 主动查询设置
+     */
+    @NestedConfigurationProperty
+    private ActiveQueryProperties activeQuery = new ActiveQueryProperties();
+
+    /**
+     * 支付、退款事件分发设置
+     */
+    @NestedConfigurationProperty
+    private EventProperties event = new EventProperties();
+
+    /**
+     * WebFlux通知端点设置
+     */
+    @NestedConfigurationProperty
+    private ReactiveProperties reactive = new ReactiveProperties();
+
+    /**
+     * 支付配置重新加载设置
+     */
+    @NestedConfigurationProperty
+    private ReloadProperties reload = new ReloadProperties();
+
+    /**
+     * 支付平台接口调用限流和熔断设置
+     */
+    @NestedConfigurationProperty
+    private ApiGuardProperties apiGuard = new ApiGuardProperties();
+
     @NestedConfigurationProperty
     private AliPayProperties alipay = new AliPayProperties();
 
     @NestedConfigurationProperty
     private WxPayProperties wxpay = new WxPayProperties();
 
+    /**
+     * 多商户配置，每个商户使用独立的通知地址 /cPay/alipay/{id}、/cPay/wxpay/{id}
+     */
+    private List<MerchantProperties> merchants = new ArrayList<>();
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient volatile CommonPayUrls urls;
+
 
     public void setContextPath(String contextPath) {
         this.contextPath = cleanContextPath(contextPath);
@@ -79,13 +149,30 @@ public class CommonPayProperties implements EnvironmentAware {
     }
 
 
+    /**
+     * 支付资源文件夹，未配置时为项目目录下的cPay文件夹
+     */
+    public String resolveArtifactFileDir() {
+        if (StringUtils.hasText(artifact.getFileDir())) {
+            return artifact.getFileDir();
+        }
+        return String.format("%s/cPay", SpringUtil.appHome());
+    }
+
     public String getUrlPrefix() {
-        return String.format("%s://%s:%s%s",
-                this.isSsl() ? "https" : "http",
-                this.getDomain(),
-                this.getPort(),
-                this.getContextPath()
-        );
+        return urls().getPrefix();
+    }
+
+    /**
+     * 预先拼接好的访问地址，协议、域名、端口、上下文路径变化后重新生成
+     */
+    CommonPayUrls urls() {
+        CommonPayUrls current = urls;
+        if (current == null || !current.matches(ssl, domain, port, contextPath)) {
+            current = new CommonPayUrls(ssl, domain, port, contextPath);
+            urls = current;
+        }
+        return current;
     }
 
 }
@@ -129,6 +216,22 @@ class AliPayProperties {
      */
     private String signType = "RSA2";
 
+    /**
+     * 应用公钥证书路径，使用公钥证书模式时与支付宝公钥证书、支付宝根证书一起配置，支持classpath路径
+     * 容器中有名为alipayAppCertContentSupplier的bean时优先使用bean
+     */
+    private String appCertLocation;
+
+    /**
+     * 支付宝公钥证书路径，容器中有名为alipayCertContentSupplier的bean时优先使用bean
+     */
+    private String alipayCertLocation;
+
+    /**
+     * 支付宝根证书路径，容器中有名为alipayRootCertContentSupplier的bean时优先使用bean
+     */
+    private String alipayRootCertLocation;
+
     private int qrCodeWidth = 300;
 
     private int qrCodeHeight = 300;
@@ -172,12 +275,308 @@ class WxPayProperties {
      */
     private String certLocation;
 
+    /**
+     * 证书读取后缓存在内存中，超过该间隔后再次使用时重新读取，单位：ms，小于等于0时不刷新
+     */
+    private long certRefreshInterval = 10 * 60 * 1000L;
+
     private int qrCodeWidth = 300;
 
     private int qrCodeHeight = 300;
 
 }
 
+/**
+ * 主动查询属性
+ * 开启后由{@link com.developcollect.commonpay.autoconfig.query.ActiveQueryEngine}分批并发查询
+ * {@link com.developcollect.commonpay.autoconfig.query.PendingQuerySource}中的未确认单据
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Data
+class ActiveQueryProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * 全量取出单据的间隔，单位：ms，全量取出时移除已不在来源中的单据
+     */
+    private long interval = 600000;
+
+    /**
+     * 增量取出新单据的间隔，单位：ms
+     */
+    private long discoveryInterval = 5000;
+
+    /**
+     * 每批取出的单据数
+     */
+    private int batchSize = 500;
+
+    /**
+     * 查询线程数
+     */
+    private int threads = 16;
+
+    /**
+     * 每个支付平台默认的并发查询数
+     */
+    private int concurrency = 8;
+
+    /**
+     * 单独设置支付平台的并发查询数，key为支付平台名称(alipay、wxpay)
+     */
+    private Map<String, Integer> platformConcurrency = new HashMap<>();
+
+    /**
+     * 查询退避设置
+     */
+    @NestedConfigurationProperty
+    private QueryBackoffProperties backoff = new QueryBackoffProperties();
+
+    /**
+     * 集群分区设置
+     */
+    @NestedConfigurationProperty
+    private QueryClusterProperties cluster = new QueryClusterProperties();
+
+}
+
+/**
+ * 主动查询集群分区属性
+ * 开启后按一致性哈希把单据分配给各节点，每个单据只由一个节点查询
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Data
+class QueryClusterProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * 本节点id，为空时使用进程号@主机名
+     */
+    private String nodeId;
+
+    /**
+     * 续约间隔，单位：ms
+     */
+    private long heartbeatInterval = 10000;
+
+    /**
+     * 租约时长，单位：ms，节点超过该时间未续约时由其他节点接管
+     */
+    private long leaseTtl = 30000;
+
+    /**
+     * 每个节点的虚拟节点数
+     */
+    private int virtualNodes = 160;
+
+    /**
+     * 保存集群成员的表名，不为空且容器中有唯一的DataSource时使用数据库保存集群成员
+     */
+    private String jdbcTable;
+
+    /**
+     * 没有共享的集群成员时是否允许只在当前进程保存集群成员，用于单节点测试，为false时启动失败
+     */
+    private boolean allowLocalMembership = false;
+
+}
+
+/**
+ * 主动查询退避属性
+ * 默认在单据创建后5秒、10秒、20秒……查询，间隔最长30分钟，24小时后不再查询
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Data
+class QueryBackoffProperties {
+
+    /**
+     * 单据创建后第一次查询的延迟，单位：ms
+     */
+    private long initialDelay = 5000;
+
+    /**
+     * 每次未确认后间隔的倍数，1表示固定间隔
+     */
+    private double multiplier = 2;
+
+    /**
+     * 最大间隔，单位：ms
+     */
+    private long maxDelay = 30 * 60 * 1000L;
+
+    /**
+     * 单据创建后超过该时间不再查询，单位：ms，小于等于0时一直查询
+     */
+    private long expireAfter = 24 * 60 * 60 * 1000L;
+
+}
+
+/**
+ * 支付、退款事件分发属性
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Data
+class EventProperties {
+
+    /**
+     * 分发方式，默认在通知处理线程中同步发布
+     */
+    private EventDispatchMode dispatch = EventDispatchMode.SYNC;
+
+    /**
+     * 线程池的线程数，只对pool方式有效
+     */
+    private int threads = Runtime.getRuntime().availableProcessors() * 2;
+
+    /**
+     * 最多等待执行的事件数
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 已满时通知处理线程最多等待的时间，仍未腾出位置则应答失败，单位：ms
+     */
+    private long offerTimeout = 1000;
+
+    /**
+     * 停止时等待已提交事件执行完成的时间，单位：ms
+     */
+    private long shutdownTimeout = 30000;
+
+}
+
+/**
+ * WebFlux通知端点属性
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Data
+class ReactiveProperties {
+
+    /**
+     * 通知验签、广播和支付资源读取的线程数，这些操作不在事件循环线程中执行
+     */
+    private int workerThreads = Runtime.getRuntime().availableProcessors() * 10;
+
+    /**
+     * 线程都在忙时最多排队的任务数，超出后直接应答失败，由支付平台稍后重新推送
+     */
+    private int queueCapacity = 10000;
+
+}
+
+/**
+ * 支付配置重新加载属性
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Data
+class ReloadProperties {
+
+    /**
+     * 是否定时检查支付宝、微信的属性和证书，变化后自动重新加载配置
+     */
+    private boolean enabled = false;
+
+    /**
+     * 检查间隔，单位：ms
+     */
+    private long interval = 60 * 1000L;
+
+}
+
+/**
+ * 支付平台接口调用限流和熔断属性
+ * 限流和熔断按支付平台和商户分别计算
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Data
+class ApiGuardProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * 每个商户在每个支付平台的QPS
+     */
+    private double qps = 20;
+
+    /**
+     * 单独设置支付平台每个商户的QPS，key为支付平台名称(alipay、wxpay)
+     */
+    private Map<String, Double> platformQps = new HashMap<>();
+
+    /**
+     * 允许突发的调用数
+     */
+    private int burst = 20;
+
+    /**
+     * 超过QPS时最多等待的时间，单位：ms，仍超过时拒绝调用
+     */
+    private long maxWait = 500;
+
+    /**
+     * 打开熔断的连续失败次数
+     */
+    private int failureThreshold = 10;
+
+    /**
+     * 熔断打开后到放行试探调用的时间，单位：ms
+     */
+    private long openDuration = 30000;
+
+    /**
+     * 不经过限流和熔断的Pay方法名，支持*通配符，用于只在本地生成结果、不调用支付平台的方法(如生成支付页面表单或跳转地址)
+     */
+    private List<String> localMethods = new ArrayList<>(Arrays.asList("*Form", "*Url"));
+
+    /**
+     * 支付平台的限流错误码，调用异常信息中含有时计入熔断。网络异常总是计入，其他异常不计入
+     */
+    private List<String> throttleCodes = new ArrayList<>(Arrays.asList("FREQUENCY_LIMITED", "app-call-limited"));
+
+}
+
+/**
+ * 商户属性
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Data
+class MerchantProperties {
+
+    /**
+     * 商户id，用于通知地址和{@link com.developcollect.commonpay.autoconfig.merchant.MerchantContext}
+     */
+    private String id;
+
+    /**
+     * 支付宝配置，不使用支付宝时不配置
+     */
+    private AliPayProperties alipay;
+
+    /**
+     * 微信支付配置，不使用微信支付时不配置
+     */
+    private WxPayProperties wxpay;
+
+}
+
 /**
  * 端点配置属性
  * @author zak
@@ -188,4 +587,174 @@ class EndpointProperties {
 
     private boolean enabled = true;
 
-}
\ No newline at end of file
+}
+
+/**
+ * 异步通知处理属性
+ * 开启后验签通过的通知先写入本地日志并立即应答，再由后台线程广播
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Data
+class AsyncNotifyProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * 通知日志目录，默认为项目目录下的cPay/journal
+     */
+    private String journalDir;
+
+    /**
+     * 每条通知写入日志后是否强制刷盘
+     */
+    private boolean fsync = true;
+
+    /**
+     * 日志文件重写阈值，单位：byte，超过时重写文件只保留未处理完成的通知
+     */
+    private long compactThreshold = 16 * 1024 * 1024;
+
+    /**
+     * 处理线程数
+     */
+    private int workerThreads = 4;
+
+    /**
+     * 内存队列容量，队列满时通知只保留在日志中，稍后重新入队
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 首次重试间隔，单位：ms
+     */
+    private long retryInitialDelay = 1000;
+
+    /**
+     * 最大重试间隔，单位：ms
+     */
+    private long retryMaxDelay = 60000;
+
+    /**
+     * 最多处理次数，仍失败时移入日志目录下的死信文件notify.dead，不再重试
+     */
+    private int maxAttempts = 30;
+
+}
+
+/**
+ * 重复通知过滤属性
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Data
+class NotifyDedupProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 本地最多记录的已处理通知数
+     */
+    private int maxSize = 100000;
+
+    /**
+     * 已处理通知的保留时间，单位：ms
+     */
+    private long ttl = 24 * 60 * 60 * 1000L;
+
+    /**
+     * 处理中的通知的占用时间，单位：ms，节点在处理中途退出时超过该时间后其他节点可以重新处理
+     */
+    private long claimTtl = 60 * 1000L;
+
+}
+
+/**
+ * 支付资源存储属性
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Data
+class ArtifactProperties {
+
+    /**
+     * 存储方式，默认存放在本地文件
+     */
+    private ArtifactStorage storage = ArtifactStorage.FILE;
+
+    /**
+     * 文件存储的文件夹，默认为项目目录下的cPay文件夹
+     * 多节点部署时可配置为共享卷
+     */
+    private String fileDir;
+
+    /**
+     * 文件存储的目录分级数，按资源名称的哈希值分级，0表示不分级，最多4级
+     * 每级256个文件夹，资源文件较多时避免单个目录下文件过多
+     */
+    private int shardLevels = 2;
+
+    /**
+     * 是否延迟生成二维码
+     * 开启后创建订单时只记录二维码内容，第一次访问二维码时才生成图片
+     */
+    private boolean lazyQrCode = false;
+
+    /**
+     * 内存存储最多占用的字节数
+     */
+    private long memoryMaxBytes = 64 * 1024 * 1024;
+
+    /**
+     * 内存存储和键值存储中资源的存活时间，单位：ms
+     */
+    private long ttl = 2 * 60 * 60 * 1000L;
+
+    /**
+     * 最多等待异步清除的订单数，超出后不再清除，由过期资源清理兜底
+     */
+    private int cleanQueueCapacity = 10000;
+
+    /**
+     * 异步清除时每批清除的订单数
+     */
+    private int cleanBatchSize = 100;
+
+    /**
+     * 过期资源文件清理设置，只对文件存储有效
+     */
+    @NestedConfigurationProperty
+    private ArtifactJanitorProperties janitor = new ArtifactJanitorProperties();
+
+}
+
+/**
+ * 过期资源文件清理属性
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Data
+class ArtifactJanitorProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * 资源文件存活时间，单位：ms
+     */
+    private long maxAge = 24 * 60 * 60 * 1000L;
+
+    /**
+     * 清理间隔，单位：ms
+     */
+    private long interval = 60 * 60 * 1000L;
+
+    /**
+     * 每批删除的文件数，每批之间短暂停顿
+     */
+    private int batchSize = 1000;
+
+}
@@ -0,0 +1,95 @@
+package com.developcollect.commonpay.autoconfig;
+
+import java.util.Objects;
+
+/**
+ * 预先拼接好的访问地址
+ * 由协议、域名、端口、上下文路径一次性生成，生成订单时只需拼接订单号，
+ * 属性重新绑定后由{@link CommonPayProperties#urls()}重新生成
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+final class CommonPayUrls {
+
+    private final boolean ssl;
+
+    private final String domain;
+
+    private final int port;
+
+    private final String contextPath;
+
+    /**
+     * 如 https://example.com:443/app
+     */
+    private final String prefix;
+
+    private final String aliPayNotifyUrl;
+
+    private final String wxPayNotifyUrl;
+
+    private final String wxPayRefundNotifyUrl;
+
+    /**
+     * 如 https://example.com:443/app/cPay/r/
+     */
+    private final String resourcePrefix;
+
+
+    CommonPayUrls(boolean ssl, String domain, int port, String contextPath) {
+        this.ssl = ssl;
+        this.domain = domain;
+        this.port = port;
+        this.contextPath = contextPath;
+        this.prefix = (ssl ? "https" : "http") + "://" + domain + ":" + port + contextPath;
+        this.aliPayNotifyUrl = prefix + "/cPay/alipay";
+        this.wxPayNotifyUrl = prefix + "/cPay/wxpay";
+        this.wxPayRefundNotifyUrl = prefix + "/cPay/wxpay/refund";
+        this.resourcePrefix = prefix + "/cPay/r/";
+    }
+
+
+    boolean matches(boolean ssl, String domain, int port, String contextPath) {
+        return this.ssl == ssl
+                && this.port == port
+                && Objects.equals(this.domain, domain)
+                && Objects.equals(this.contextPath, contextPath);
+    }
+
+    String getPrefix() {
+        return prefix;
+    }
+
+    String getAliPayNotifyUrl() {
+        return aliPayNotifyUrl;
+    }
+
+    String getWxPayNotifyUrl() {
+        return wxPayNotifyUrl;
+    }
+
+    String getWxPayRefundNotifyUrl() {
+        return wxPayRefundNotifyUrl;
+    }
+
+    /**
+     * 支付资源访问地址，如 {prefix}/cPay/r/alipay/wap_{outTradeNo}.html
+     *
+     * @param platform   支付平台名称
+     * @param namePrefix 资源名称前缀，没有时传空字符串
+     * @param outTradeNo 商户订单号
+     * @param suffix     资源名称后缀
+     */
+    String resourceUrl(String platform, String namePrefix, String outTradeNo, String suffix) {
+        return new StringBuilder(resourcePrefix.length() + platform.length() + 1
+                + namePrefix.length() + outTradeNo.length() + suffix.length())
+                .append(resourcePrefix)
+                .append(platform)
+                .append('/')
+                .append(namePrefix)
+                .append(outTradeNo)
+                .append(suffix)
+                .toString();
+    }
+}
@@ -0,0 +1,94 @@
+package com.developcollect.commonpay.autoconfig;
+
+import com.developcollect.commonpay.autoconfig.artifact.ArtifactStore;
+import com.developcollect.commonpay.autoconfig.artifact.FileArtifactStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
+import org.springframework.web.reactive.config.ResourceHandlerRegistry;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import org.springframework.web.reactive.resource.PathResourceResolver;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+
+/**
+ * WebFlux配置
+ * 通知的验签、广播和支付资源的读取都可能阻塞，在独立的有界线程池中执行，不占用事件循环线程
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@Configuration
+public class CommonPayWebFluxConfig {
+
+    /**
+     * 通知处理线程池
+     * 线程数和排队数都有上限，超出时直接应答失败，由支付平台稍后重新推送
+     */
+    @ConditionalOnMissingBean(name = "commonPayScheduler")
+    @Bean(destroyMethod = "dispose")
+    Scheduler commonPayScheduler(CommonPayProperties commonPayProperties) {
+        ReactiveProperties properties = commonPayProperties.getReactive();
+        return Schedulers.newBoundedElastic(properties.getWorkerThreads(), properties.getQueueCapacity(), "cPay-notify", 60, true);
+    }
+
+
+    /**
+     * 静态资源映射
+     * 资源文件按目录分级存放，访问路径仍为 /cPay/r/{platform}/{name}
+     */
+    @ConditionalOnExpression("${develop-collect.pay.resource-endpoint.enabled:true} && '${develop-collect.pay.artifact.storage:file}'.equalsIgnoreCase('file')")
+    @Configuration
+    @RequiredArgsConstructor
+    static class CommonPayWebFluxResourceConfig implements WebFluxConfigurer {
+
+        private final CommonPayProperties commonPayProperties;
+
+        private final ArtifactStore artifactStore;
+
+        @Override
+        public void addResourceHandlers(ResourceHandlerRegistry registry) {
+            if (!(artifactStore instanceof FileArtifactStore)) {
+                String path = commonPayProperties.resolveArtifactFileDir();
+                registry.addResourceHandler("/cPay/r/wxpay/**").addResourceLocations("file:" + path + "/wxpay/");
+                registry.addResourceHandler("/cPay/r/alipay/**").addResourceLocations("file:" + path + "/alipay/");
+                return;
+            }
+            FileArtifactStore fileArtifactStore = (FileArtifactStore) artifactStore;
+            String path = fileArtifactStore.getRoot().getAbsolutePath();
+            // 资源文件随时会被删除，不缓存解析结果
+            registry.addResourceHandler("/cPay/r/wxpay/**").addResourceLocations("file:" + path + "/wxpay/")
+                    .resourceChain(false).addResolver(new ShardedResourceResolver(fileArtifactStore));
+            registry.addResourceHandler("/cPay/r/alipay/**").addResourceLocations("file:" + path + "/alipay/")
+                    .resourceChain(false).addResolver(new ShardedResourceResolver(fileArtifactStore));
+        }
+    }
+
+
+    /**
+     * 按分级目录查找资源文件，找不到且可能还有平铺文件时再查找分级之前平铺存放的文件
+     */
+    @RequiredArgsConstructor
+    static class ShardedResourceResolver extends PathResourceResolver {
+
+        private final FileArtifactStore artifactStore;
+
+        @Override
+        protected Mono<Resource> getResource(String resourcePath, Resource location) {
+            String relativePath = artifactStore.relativePath(resourcePath);
+            Mono<Resource> resource = super.getResource(relativePath, location);
+            if (relativePath.equals(resourcePath) || !artifactStore.mayHaveLegacyFiles()) {
+                return resource;
+            }
+            return resource.switchIfEmpty(Mono.defer(() -> super.getResource(resourcePath, location)));
+        }
+    }
+
+}
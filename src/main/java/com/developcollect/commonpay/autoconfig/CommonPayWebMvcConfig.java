@@ -1,29 +1,71 @@
 package com.developcollect.commonpay.autoconfig;
 
-import com.developcollect.dcinfra.utils.spring.SpringUtil;
+import com.developcollect.commonpay.autoconfig.artifact.ArtifactStore;
+import com.developcollect.commonpay.autoconfig.artifact.FileArtifactStore;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.Resource;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.springframework.web.servlet.resource.PathResourceResolver;
+
+import java.io.IOException;
 
 
 @Slf4j
-@ConditionalOnExpression("${develop-collect.pay.resource-endpoint.enabled:true}")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnExpression("${develop-collect.pay.resource-endpoint.enabled:true} && '${develop-collect.pay.artifact.storage:file}'.equalsIgnoreCase('file')")
 @Configuration
+@RequiredArgsConstructor
 public class CommonPayWebMvcConfig implements WebMvcConfigurer {
 
+    private final CommonPayProperties commonPayProperties;
+
+    private final ArtifactStore artifactStore;
 
 
     /**
      * 静态资源映射
+     * 资源文件按目录分级存放，访问路径仍为 /cPay/r/{platform}/{name}
      */
     @Override
     public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        String path = SpringUtil.appHome();
-        registry.addResourceHandler("/cPay/r/wxpay/**").addResourceLocations("file:" + path + "/cPay/wxpay/");
-        registry.addResourceHandler("/cPay/r/alipay/**").addResourceLocations("file:" + path + "/cPay/alipay/");
+        if (!(artifactStore instanceof FileArtifactStore)) {
+            String path = commonPayProperties.resolveArtifactFileDir();
+            registry.addResourceHandler("/cPay/r/wxpay/**").addResourceLocations("file:" + path + "/wxpay/");
+            registry.addResourceHandler("/cPay/r/alipay/**").addResourceLocations("file:" + path + "/alipay/");
+            return;
+        }
+        FileArtifactStore fileArtifactStore = (FileArtifactStore) artifactStore;
+        String path = fileArtifactStore.getRoot().getAbsolutePath();
+        // 资源文件随时会被删除，不缓存解析结果
+        registry.addResourceHandler("/cPay/r/wxpay/**").addResourceLocations("file:" + path + "/wxpay/")
+                .resourceChain(false).addResolver(new ShardedResourceResolver(fileArtifactStore));
+        registry.addResourceHandler("/cPay/r/alipay/**").addResourceLocations("file:" + path + "/alipay/")
+                .resourceChain(false).addResolver(new ShardedResourceResolver(fileArtifactStore));
     }
 
 
+    /**
+     * 按分级目录查找资源文件，找不到且可能还有平铺文件时再查找分级之前平铺存放的文件
+     */
+    @RequiredArgsConstructor
+    static class ShardedResourceResolver extends PathResourceResolver {
+
+        private final FileArtifactStore artifactStore;
+
+        @Override
+        protected Resource getResource(String resourcePath, Resource location) throws IOException {
+            String relativePath = artifactStore.relativePath(resourcePath);
+            Resource resource = super.getResource(relativePath, location);
+            if (resource == null && !relativePath.equals(resourcePath) && artifactStore.mayHaveLegacyFiles()) {
+                resource = super.getResource(resourcePath, location);
+            }
+            return resource;
+        }
+    }
+
 }
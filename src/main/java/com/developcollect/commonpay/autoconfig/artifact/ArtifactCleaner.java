@@ -0,0 +1,145 @@
+package com.developcollect.commonpay.autoconfig.artifact;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 支付资源异步清除器
+ * 订单支付成功后由后台线程批量删除该订单的二维码、支付页面，不占用通知处理线程。
+ * 同一订单在清除前重复提交只会清除一次；待清除的订单数达到上限时丢弃新的提交，
+ * 文件存储下遗留的资源由{@link ArtifactJanitor}兜底清理
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Slf4j
+public class ArtifactCleaner implements SmartLifecycle {
+
+    private final ArtifactStore artifactStore;
+
+    private final int capacity;
+
+    private final int batchSize;
+
+    /**
+     * 待清除的订单，元素为 {platform}/{outTradeNo}
+     */
+    private final Set<String> pending = new LinkedHashSet<>();
+
+    private Thread worker;
+
+    private volatile boolean running;
+
+
+    /**
+     * @param artifactStore 支付资源存储
+     * @param capacity      最多待清除的订单数
+     * @param batchSize     每批清除的订单数
+     */
+    public ArtifactCleaner(ArtifactStore artifactStore, int capacity, int batchSize) {
+        this.artifactStore = artifactStore;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+    }
+
+
+    /**
+     * 提交清除订单的支付资源
+     * 清除器未启动时同步清除
+     *
+     * @param platform   支付平台名称
+     * @param outTradeNo 商户订单号
+     */
+    public void submit(String platform, String outTradeNo) {
+        if (!running) {
+            clear(platform, outTradeNo);
+            return;
+        }
+        synchronized (pending) {
+            if (pending.size() >= capacity) {
+                log.debug("待清除的支付资源已达上限，放弃清除: {}/{}", platform, outTradeNo);
+                return;
+            }
+            if (pending.add(platform + '/' + outTradeNo)) {
+                pending.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * 同步清除订单的支付资源
+     *
+     * @param platform   支付平台名称
+     * @param outTradeNo 商户订单号
+     */
+    public void clear(String platform, String outTradeNo) {
+        artifactStore.delete(platform, outTradeNo + QrCodeArtifacts.PNG_SUFFIX);
+        artifactStore.delete(platform, outTradeNo + QrCodeArtifacts.CONTENT_SUFFIX);
+        artifactStore.delete(platform, outTradeNo + ".html");
+        artifactStore.delete(platform, "wap_" + outTradeNo + ".html");
+    }
+
+
+    @Override
+    public synchronized void start() {
+        running = true;
+        worker = new Thread(this::work, "cPay-artifact-cleaner");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        synchronized (pending) {
+            pending.notifyAll();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+
+    private void work() {
+        List<String> batch = new ArrayList<>(batchSize);
+        while (true) {
+            synchronized (pending) {
+                while (running && pending.isEmpty()) {
+                    try {
+                        pending.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (!running && pending.isEmpty()) {
+                    return;
+                }
+                Iterator<String> iterator = pending.iterator();
+                while (iterator.hasNext() && batch.size() < batchSize) {
+                    batch.add(iterator.next());
+                    iterator.remove();
+                }
+            }
+
+            // 停止后仍会清除完剩余的订单
+            for (String key : batch) {
+                int idx = key.indexOf('/');
+                try {
+                    clear(key.substring(0, idx), key.substring(idx + 1));
+                } catch (Exception e) {
+                    log.debug("清除支付资源失败: {}", key, e);
+                }
+            }
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.developcollect.commonpay.autoconfig.artifact;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 过期支付资源清理器
+ * 支付成功的订单在收到通知时会清除资源文件，但未支付的订单的资源文件会一直保留，
+ * 该清理器定时删除超过存活时间的资源文件。
+ * 使用目录流逐个遍历，不一次性列出整个目录，每删除一批文件后短暂停顿，避免长时间占用磁盘
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Slf4j
+public class ArtifactJanitor implements SmartLifecycle {
+
+    /**
+     * 每批删除后的停顿时间，单位：ms
+     */
+    private static final long BATCH_PAUSE = 10;
+
+    /**
+     * 需要清理的目录
+     */
+    private final List<Path> directories;
+
+    private final long maxAge;
+
+    private final long interval;
+
+    private final int batchSize;
+
+    private final AtomicLong reclaimedFiles = new AtomicLong();
+
+    private final AtomicLong reclaimedBytes = new AtomicLong();
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean running;
+
+
+    /**
+     * @param directories 需要清理的目录
+     * @param maxAge      资源文件存活时间，单位：ms
+     * @param interval    清理间隔，单位：ms
+     * @param batchSize   每批删除的文件数
+     */
+    public ArtifactJanitor(List<Path> directories, long maxAge, long interval, int batchSize) {
+        this.directories = directories;
+        this.maxAge = maxAge;
+        this.interval = interval;
+        this.batchSize = batchSize;
+    }
+
+
+    /**
+     * 清理一次，删除的文件数和字节数记录到日志并累加到统计中
+     */
+    public void sweep() {
+        long deadline = System.currentTimeMillis() - maxAge;
+        long[] reclaimed = new long[3];
+        for (Path directory : directories) {
+            if (Files.isDirectory(directory)) {
+                sweepDirectory(directory, deadline, reclaimed);
+            }
+        }
+        reclaimedFiles.addAndGet(reclaimed[0]);
+        reclaimedBytes.addAndGet(reclaimed[1]);
+        if (reclaimed[0] > 0) {
+            log.info("清理过期支付资源文件：{}个，{}字节", reclaimed[0], reclaimed[1]);
+        }
+    }
+
+    /**
+     * 累计删除的文件数
+     */
+    public long getReclaimedFiles() {
+        return reclaimedFiles.get();
+    }
+
+    /**
+     * 累计删除的字节数
+     */
+    public long getReclaimedBytes() {
+        return reclaimedBytes.get();
+    }
+
+
+    @Override
+    public synchronized void start() {
+        scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "cPay-artifact-janitor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::sweepQuietly, interval, interval, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+
+    private void sweepQuietly() {
+        try {
+            sweep();
+        } catch (Exception e) {
+            log.warn("清理过期支付资源文件失败", e);
+        }
+    }
+
+    /**
+     * 递归清理目录
+     *
+     * @param reclaimed [删除的文件数, 删除的字节数, 当前批次已删除的文件数]
+     */
+    private void sweepDirectory(Path directory, long deadline, long[] reclaimed) {
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+                BasicFileAttributes attributes;
+                try {
+                    attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                } catch (IOException e) {
+                    // 遍历过程中文件可能已被删除
+                    continue;
+                }
+                if (attributes.isDirectory()) {
+                    sweepDirectory(path, deadline, reclaimed);
+                    continue;
+                }
+                if (attributes.lastModifiedTime().toMillis() >= deadline) {
+                    continue;
+                }
+                if (Files.deleteIfExists(path)) {
+                    reclaimed[0]++;
+                    reclaimed[1] += attributes.size();
+                    if (++reclaimed[2] >= batchSize) {
+                        reclaimed[2] = 0;
+                        pause();
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.warn("清理目录失败: {}", directory, e);
+        }
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(BATCH_PAUSE);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
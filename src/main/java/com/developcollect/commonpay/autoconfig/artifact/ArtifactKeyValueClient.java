@@ -0,0 +1,37 @@
+package com.developcollect.commonpay.autoconfig.artifact;
+
+/**
+ * 键值存储客户端
+ * {@link KeyValueArtifactStore}通过该接口读写资源，可基于Redis等多节点共享的存储实现，
+ * 使任意节点都能访问其他节点生成的二维码和支付页面
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public interface ArtifactKeyValueClient {
+
+    /**
+     * 写入
+     *
+     * @param key   键
+     * @param value 值
+     * @param ttl   存活时间，单位：ms
+     */
+    void set(String key, byte[] value, long ttl);
+
+    /**
+     * 读取
+     *
+     * @param key 键
+     * @return 值，不存在或已过期时返回null
+     */
+    byte[] get(String key);
+
+    /**
+     * 删除
+     *
+     * @param key 键
+     */
+    void delete(String key);
+
+}
@@ -0,0 +1,28 @@
+package com.developcollect.commonpay.autoconfig.artifact;
+
+/**
+ * 支付资源存储方式
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public enum ArtifactStorage {
+
+    /**
+     * 存放在本地文件夹中，通过静态资源映射访问，
+     * 文件夹为多个节点共同挂载的共享卷时多个节点都能访问
+     */
+    FILE,
+
+    /**
+     * 存放在内存中，通过资源控制器访问
+     */
+    MEMORY,
+
+    /**
+     * 存放在{@link ArtifactKeyValueClient}中，通过资源控制器访问，
+     * 客户端基于Redis等共享存储实现时多个节点都能访问
+     */
+    KEY_VALUE
+
+}
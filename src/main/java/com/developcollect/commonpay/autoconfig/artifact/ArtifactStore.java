@@ -0,0 +1,38 @@
+package com.developcollect.commonpay.autoconfig.artifact;
+
+/**
+ * 支付资源存储
+ * 用于存放生成的支付二维码、支付页面等资源，资源通过 /cPay/r/{platform}/{name} 访问
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public interface ArtifactStore {
+
+    /**
+     * 保存资源
+     *
+     * @param platform 支付平台名称，如alipay、wxpay
+     * @param name     资源名称，如 {outTradeNo}.png
+     * @param content  资源内容
+     */
+    void put(String platform, String name, byte[] content);
+
+    /**
+     * 读取资源
+     *
+     * @param platform 支付平台名称
+     * @param name     资源名称
+     * @return 资源内容，不存在时返回null
+     */
+    byte[] get(String platform, String name);
+
+    /**
+     * 删除资源
+     *
+     * @param platform 支付平台名称
+     * @param name     资源名称
+     */
+    void delete(String platform, String name);
+
+}
@@ -0,0 +1,196 @@
+package com.developcollect.commonpay.autoconfig.artifact;
+
+import cn.hutool.core.io.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * 本地文件支付资源存储
+ * 资源存放在 {root}/{platform}/{shard}/{name}，shard 由资源名称中订单号的哈希值分成多级目录，
+ * 如两级时为 {root}/alipay/3f/a2/{outTradeNo}.png，同一订单的二维码、支付页面在同一目录下，避免单个目录下文件过多。
+ * 分级之前平铺存放在 {root}/{platform}/{name} 的资源仍可读取和删除，由过期资源清理器逐步清除，
+ * 定时检查确认平铺的文件已全部清除后不再查找平铺路径
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class FileArtifactStore implements ArtifactStore {
+
+    /**
+     * 最多分级数，每级使用哈希值的两个十六进制字符
+     */
+    public static final int MAX_SHARD_LEVELS = 4;
+
+    /**
+     * 资源名称中订单号之前的前缀，如 wap_{outTradeNo}.html
+     */
+    private static final String[] NAME_PREFIXES = {"wap_"};
+
+    /**
+     * 支付平台文件夹
+     */
+    private static final String[] PLATFORM_DIRS = {"alipay", "wxpay"};
+
+    /**
+     * 检查平铺文件是否已清除完的间隔，单位：ms
+     */
+    private static final long LEGACY_CHECK_INTERVAL = 60_000;
+
+    private final File root;
+
+    private final int shardLevels;
+
+    /**
+     * 是否可能还有分级之前平铺存放的文件，清除完后不会再产生
+     */
+    private volatile boolean legacyPresent;
+
+    private final AtomicLong nextLegacyCheck = new AtomicLong();
+
+    public FileArtifactStore(File root) {
+        this(root, 0);
+    }
+
+    /**
+     * @param root        存储根目录
+     * @param shardLevels 目录分级数，0表示不分级
+     */
+    public FileArtifactStore(File root, int shardLevels) {
+        if (shardLevels < 0 || shardLevels > MAX_SHARD_LEVELS) {
+            throw new IllegalArgumentException("shardLevels must be between 0 and " + MAX_SHARD_LEVELS);
+        }
+        this.root = root;
+        this.shardLevels = shardLevels;
+        this.legacyPresent = shardLevels > 0 && scanLegacyFiles();
+        this.nextLegacyCheck.set(System.currentTimeMillis() + LEGACY_CHECK_INTERVAL);
+    }
+
+    @Override
+    public void put(String platform, String name, byte[] content) {
+        FileUtil.writeBytes(content, file(platform, name));
+    }
+
+    @Override
+    public byte[] get(String platform, String name) {
+        File file = locate(platform, name);
+        return file != null ? FileUtil.readBytes(file) : null;
+    }
+
+    @Override
+    public void delete(String platform, String name) {
+        FileUtil.del(file(platform, name));
+        if (mayHaveLegacyFiles()) {
+            FileUtil.del(legacyFile(platform, name));
+        }
+    }
+
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * 查找已存在的资源文件，兼容分级之前平铺存放的文件
+     *
+     * @return 资源文件，不存在时返回null
+     */
+    public File locate(String platform, String name) {
+        File file = file(platform, name);
+        if (file.isFile()) {
+            return file;
+        }
+        if (mayHaveLegacyFiles()) {
+            File legacy = legacyFile(platform, name);
+            if (legacy.isFile()) {
+                return legacy;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 是否可能还有分级之前平铺存放的文件
+     * 为true时定时重新检查，检查到已全部清除后一直返回false
+     */
+    public boolean mayHaveLegacyFiles() {
+        if (!legacyPresent) {
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        long next = nextLegacyCheck.get();
+        if (now >= next && nextLegacyCheck.compareAndSet(next, now + LEGACY_CHECK_INTERVAL)) {
+            legacyPresent = scanLegacyFiles();
+        }
+        return legacyPresent;
+    }
+
+    /**
+     * 资源文件相对于支付平台文件夹的路径，如 3f/a2/{name}
+     * 按订单号计算分级目录，同一订单的资源在同一目录下
+     */
+    public String relativePath(String name) {
+        if (shardLevels == 0) {
+            return name;
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(orderKey(name).getBytes(StandardCharsets.UTF_8));
+        String hash = String.format("%08x", crc32.getValue());
+
+        StringBuilder path = new StringBuilder(shardLevels * 3 + name.length());
+        for (int i = 0; i < shardLevels; i++) {
+            path.append(hash, i * 2, i * 2 + 2).append('/');
+        }
+        return path.append(name).toString();
+    }
+
+    private File file(String platform, String name) {
+        return new File(new File(root, platform), relativePath(name));
+    }
+
+    private File legacyFile(String platform, String name) {
+        return new File(new File(root, platform), name);
+    }
+
+    /**
+     * 资源名称中的订单号，去掉前缀和扩展名
+     */
+    private static String orderKey(String name) {
+        int begin = 0;
+        for (String prefix : NAME_PREFIXES) {
+            if (name.startsWith(prefix)) {
+                begin = prefix.length();
+                break;
+            }
+        }
+        int end = name.lastIndexOf('.');
+        return end > begin ? name.substring(begin, end) : name.substring(begin);
+    }
+
+    /**
+     * 检查支付平台文件夹下是否直接存放着文件，找到一个即返回
+     * 只检查支付平台文件夹，根目录下的其他文件夹(如异步通知日志)不算在内
+     */
+    private boolean scanLegacyFiles() {
+        for (String platform : PLATFORM_DIRS) {
+            Path directory = new File(root, platform).toPath();
+            if (!Files.isDirectory(directory)) {
+                continue;
+            }
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, Files::isRegularFile)) {
+                if (files.iterator().hasNext()) {
+                    return true;
+                }
+            } catch (IOException e) {
+                // 无法确认时按仍有平铺文件处理
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,45 @@
+package com.developcollect.commonpay.autoconfig.artifact;
+
+/**
+ * 键值支付资源存储
+ * 资源以 cPay:r:{platform}:{name} 为键存放在{@link ArtifactKeyValueClient}中
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class KeyValueArtifactStore implements ArtifactStore {
+
+    private static final String KEY_PREFIX = "cPay:r:";
+
+    private final ArtifactKeyValueClient client;
+
+    private final long ttl;
+
+    /**
+     * @param client 键值存储客户端
+     * @param ttl    资源存活时间，单位：ms
+     */
+    public KeyValueArtifactStore(ArtifactKeyValueClient client, long ttl) {
+        this.client = client;
+        this.ttl = ttl;
+    }
+
+    @Override
+    public void put(String platform, String name, byte[] content) {
+        client.set(key(platform, name), content, ttl);
+    }
+
+    @Override
+    public byte[] get(String platform, String name) {
+        return client.get(key(platform, name));
+    }
+
+    @Override
+    public void delete(String platform, String name) {
+        client.delete(key(platform, name));
+    }
+
+    private String key(String platform, String name) {
+        return KEY_PREFIX + platform + ':' + name;
+    }
+}
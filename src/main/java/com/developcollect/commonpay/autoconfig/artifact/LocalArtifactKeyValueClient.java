@@ -0,0 +1,51 @@
+package com.developcollect.commonpay.autoconfig.artifact;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 本地键值存储客户端
+ * 只在当前进程内有效，用于测试或单节点部署时替代共享的键值存储，需要显式注册为bean。
+ * 过期的资源只在读取时移除，不限制总大小，生产环境使用{@code memory}存储方式
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class LocalArtifactKeyValueClient implements ArtifactKeyValueClient {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public void set(String key, byte[] value, long ttl) {
+        entries.put(key, new Entry(value, System.currentTimeMillis() + ttl));
+    }
+
+    @Override
+    public byte[] get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt < System.currentTimeMillis()) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.value;
+    }
+
+    @Override
+    public void delete(String key) {
+        entries.remove(key);
+    }
+
+
+    private static class Entry {
+        private final byte[] value;
+        private final long expireAt;
+
+        private Entry(byte[] value, long expireAt) {
+            this.value = value;
+            this.expireAt = expireAt;
+        }
+    }
+}
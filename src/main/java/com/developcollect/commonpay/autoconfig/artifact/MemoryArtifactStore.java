@@ -0,0 +1,134 @@
+package com.developcollect.commonpay.autoconfig.artifact;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 内存支付资源存储
+ * 总字节数有上限，超出时淘汰最久未访问的资源；资源超过存活时间后失效
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Slf4j
+public class MemoryArtifactStore implements ArtifactStore {
+
+    /**
+     * 过期资源的清理间隔，单位：ms
+     */
+    private static final long PURGE_INTERVAL = 60 * 1000L;
+
+    private final long maxBytes;
+
+    private final long ttl;
+
+    /**
+     * 按访问顺序排列，最久未访问的在最前面
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    private long totalBytes;
+
+    private long purgedAt;
+
+
+    /**
+     * @param maxBytes 最多占用的字节数
+     * @param ttl      资源存活时间，单位：ms
+     */
+    public MemoryArtifactStore(long maxBytes, long ttl) {
+        this.maxBytes = maxBytes;
+        this.ttl = ttl;
+    }
+
+
+    @Override
+    public synchronized void put(String platform, String name, byte[] content) {
+        if (content.length > maxBytes) {
+            log.warn("资源大小超出内存存储上限，不保存: {}/{}", platform, name);
+            // 旧的资源已被替换，不能继续返回
+            remove(key(platform, name));
+            return;
+        }
+        long now = System.currentTimeMillis();
+        Entry old = entries.put(key(platform, name), new Entry(content, now + ttl));
+        if (old != null) {
+            totalBytes -= old.content.length;
+        }
+        totalBytes += content.length;
+
+        if (now - purgedAt > PURGE_INTERVAL) {
+            purgeExpired(now);
+        }
+        evictUntilFit();
+    }
+
+    @Override
+    public synchronized byte[] get(String platform, String name) {
+        String key = key(platform, name);
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt < System.currentTimeMillis()) {
+            remove(key);
+            return null;
+        }
+        return entry.content;
+    }
+
+    @Override
+    public synchronized void delete(String platform, String name) {
+        remove(key(platform, name));
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            totalBytes -= entry.content.length;
+        }
+    }
+
+    private void purgeExpired(long now) {
+        purgedAt = now;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.expireAt < now) {
+                totalBytes -= entry.content.length;
+                iterator.remove();
+            }
+        }
+    }
+
+    private void evictUntilFit() {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext()) {
+            totalBytes -= iterator.next().getValue().content.length;
+            iterator.remove();
+        }
+    }
+
+    private String key(String platform, String name) {
+        return platform + '/' + name;
+    }
+
+
+    private static class Entry {
+        private final byte[] content;
+        private final long expireAt;
+
+        private Entry(byte[] content, long expireAt) {
+            this.content = content;
+            this.expireAt = expireAt;
+        }
+    }
+}
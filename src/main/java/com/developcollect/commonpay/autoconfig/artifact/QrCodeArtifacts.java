@@ -0,0 +1,77 @@
+package com.developcollect.commonpay.autoconfig.artifact;
+
+import cn.hutool.core.io.IORuntimeException;
+import cn.hutool.extra.qrcode.QrCodeUtil;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 支付二维码资源工具
+ * 延迟生成时只保存二维码内容(资源名为 {outTradeNo}.qr)，第一次访问 {outTradeNo}.png 时才生成图片
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public final class QrCodeArtifacts {
+
+    /**
+     * 延迟生成的二维码内容的资源名后缀
+     */
+    public static final String CONTENT_SUFFIX = ".qr";
+
+    public static final String PNG_SUFFIX = ".png";
+
+    private QrCodeArtifacts() {
+    }
+
+
+    /**
+     * 生成二维码PNG图片
+     */
+    public static byte[] png(String content, int width, int height) {
+        BufferedImage qrCode = QrCodeUtil.generate(content, width, height);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+        try {
+            ImageIO.write(qrCode, "png", out);
+        } catch (IOException e) {
+            throw new IORuntimeException(e);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 编码待生成的二维码，格式为 {width}x{height}\n{content}
+     */
+    public static byte[] pending(String content, int width, int height) {
+        return (width + "x" + height + "\n" + content).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 从存储中读取待生成的二维码并生成图片，生成后的图片写回存储
+     *
+     * @param store    资源存储
+     * @param platform 支付平台名称
+     * @param pngName  图片资源名称，如 {outTradeNo}.png
+     * @return 图片内容，没有待生成的二维码时返回null
+     */
+    public static byte[] render(ArtifactStore store, String platform, String pngName) {
+        String baseName = pngName.substring(0, pngName.length() - PNG_SUFFIX.length());
+        byte[] pending = store.get(platform, baseName + CONTENT_SUFFIX);
+        if (pending == null) {
+            return null;
+        }
+        String spec = new String(pending, StandardCharsets.UTF_8);
+        int lineEnd = spec.indexOf('\n');
+        int sizeSeparator = spec.indexOf('x');
+        int width = Integer.parseInt(spec.substring(0, sizeSeparator));
+        int height = Integer.parseInt(spec.substring(sizeSeparator + 1, lineEnd));
+
+        byte[] png = png(spec.substring(lineEnd + 1), width, height);
+        store.put(platform, pngName, png);
+        return png;
+    }
+}
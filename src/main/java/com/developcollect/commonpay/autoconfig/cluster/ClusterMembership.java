@@ -0,0 +1,35 @@
+package com.developcollect.commonpay.autoconfig.cluster;
+
+import java.util.Set;
+
+/**
+ * 集群成员
+ * 各节点定时续约，租约过期未续的节点视为已下线。
+ * 多节点部署时需要基于共享存储实现，如{@link JdbcClusterMembership}，也可基于Redis等实现后注册为bean
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public interface ClusterMembership {
+
+    /**
+     * 加入集群或续约
+     *
+     * @param nodeId 节点id
+     * @param ttl    租约时长，单位：ms
+     */
+    void heartbeat(String nodeId, long ttl) throws Exception;
+
+    /**
+     * 主动退出集群
+     *
+     * @param nodeId 节点id
+     */
+    void leave(String nodeId) throws Exception;
+
+    /**
+     * 租约未过期的节点
+     */
+    Set<String> getMembers() throws Exception;
+
+}
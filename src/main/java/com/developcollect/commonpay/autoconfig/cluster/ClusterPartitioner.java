@@ -0,0 +1,174 @@
+package com.developcollect.commonpay.autoconfig.cluster;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 集群分区
+ * 定时通过{@link ClusterMembership}续约并获取存活节点，按一致性哈希把key分配给节点，每个key只由一个节点处理。
+ * 节点加入或租约过期后重新分配，并通知监听器。
+ * 本节点续约失败超过租约时长时，其他节点已接管它的分区，此时本节点不再认领任何key
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Slf4j
+public class ClusterPartitioner implements SmartLifecycle {
+
+    private final ClusterMembership membership;
+
+    private final String nodeId;
+
+    private final long heartbeatInterval;
+
+    private final long leaseTtl;
+
+    private final int virtualNodes;
+
+    private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile Set<String> members = Collections.emptySet();
+
+    private volatile ConsistentHashRing ring;
+
+    private volatile long lastHeartbeat;
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean running;
+
+
+    /**
+     * @param membership        集群成员
+     * @param nodeId            本节点id
+     * @param heartbeatInterval 续约间隔，单位：ms
+     * @param leaseTtl          租约时长，单位：ms，需要是续约间隔的数倍
+     * @param virtualNodes      每个节点的虚拟节点数
+     */
+    public ClusterPartitioner(ClusterMembership membership, String nodeId, long heartbeatInterval, long leaseTtl, int virtualNodes) {
+        if (leaseTtl <= heartbeatInterval) {
+            throw new IllegalArgumentException("leaseTtl must be greater than heartbeatInterval");
+        }
+        this.membership = membership;
+        this.nodeId = nodeId;
+        this.heartbeatInterval = heartbeatInterval;
+        this.leaseTtl = leaseTtl;
+        this.virtualNodes = virtualNodes;
+        // 未取得成员前只有本节点，相当于不分区
+        this.ring = new ConsistentHashRing(Collections.singleton(nodeId), virtualNodes);
+    }
+
+
+    /**
+     * key是否由本节点处理
+     */
+    public boolean isLocal(String key) {
+        return nodeId.equals(ring.locate(key));
+    }
+
+    /**
+     * 添加分区变化的监听器，在续约线程中执行
+     */
+    public void addListener(Runnable listener) {
+        listeners.add(listener);
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 当前存活的节点
+     */
+    public Set<String> getMembers() {
+        return members;
+    }
+
+
+    /**
+     * 续约并刷新存活节点
+     */
+    public void refresh() {
+        long now = System.currentTimeMillis();
+        try {
+            membership.heartbeat(nodeId, leaseTtl);
+            lastHeartbeat = now;
+        } catch (Exception e) {
+            log.warn("集群节点[{}]续约失败", nodeId, e);
+        }
+        Set<String> current;
+        try {
+            current = new TreeSet<>(membership.getMembers());
+        } catch (Exception e) {
+            log.warn("获取集群节点失败，沿用上一次的分区", e);
+            return;
+        }
+        if (now - lastHeartbeat >= leaseTtl) {
+            // 租约已过期，其他节点已接管
+            current.remove(nodeId);
+        }
+        if (current.equals(members)) {
+            return;
+        }
+        log.info("集群节点变化：{} -> {}", members, current);
+        members = Collections.unmodifiableSet(current);
+        ring = new ConsistentHashRing(current, virtualNodes);
+        for (Runnable listener : listeners) {
+            try {
+                listener.run();
+            } catch (Exception e) {
+                log.error("集群分区变化的监听器执行失败", e);
+            }
+        }
+    }
+
+
+    @Override
+    public synchronized void start() {
+        scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "cPay-cluster-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        running = true;
+        // 先取得一次成员，避免启动后的第一次主动查询不分区
+        refresh();
+        scheduler.scheduleWithFixedDelay(this::refresh, heartbeatInterval, heartbeatInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        try {
+            // 主动退出，其他节点不必等租约过期即可接管
+            membership.leave(nodeId);
+        } catch (Exception e) {
+            log.warn("集群节点[{}]退出失败", nodeId, e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 先于主动查询启动，晚于主动查询停止
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 1;
+    }
+}
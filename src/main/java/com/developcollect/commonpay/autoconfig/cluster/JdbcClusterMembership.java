@@ -0,0 +1,105 @@
+package com.developcollect.commonpay.autoconfig.cluster;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 基于数据库的集群成员
+ * 表结构如下，表名可配置：
+ * <pre>
+ * CREATE TABLE cpay_cluster_member (
+ *     node_id   VARCHAR(128) NOT NULL PRIMARY KEY,
+ *     expire_at BIGINT       NOT NULL
+ * );
+ * </pre>
+ * 租约到期时间使用各节点的本地时间，节点间的时钟偏差需要远小于租约时长
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class JdbcClusterMembership implements ClusterMembership {
+
+    private final DataSource dataSource;
+
+    private final String updateSql;
+
+    private final String insertSql;
+
+    private final String deleteSql;
+
+    private final String selectSql;
+
+
+    /**
+     * @param dataSource 数据源
+     * @param table      表名
+     */
+    public JdbcClusterMembership(DataSource dataSource, String table) {
+        if (!table.matches("[A-Za-z0-9_.]+")) {
+            throw new IllegalArgumentException("illegal table name: " + table);
+        }
+        this.dataSource = dataSource;
+        this.updateSql = "UPDATE " + table + " SET expire_at = ? WHERE node_id = ?";
+        this.insertSql = "INSERT INTO " + table + " (node_id, expire_at) VALUES (?, ?)";
+        this.deleteSql = "DELETE FROM " + table + " WHERE node_id = ?";
+        this.selectSql = "SELECT node_id FROM " + table + " WHERE expire_at > ?";
+    }
+
+
+    @Override
+    public void heartbeat(String nodeId, long ttl) throws SQLException {
+        long expireAt = System.currentTimeMillis() + ttl;
+        try (Connection connection = dataSource.getConnection()) {
+            if (update(connection, nodeId, expireAt) > 0) {
+                return;
+            }
+            try (PreparedStatement statement = connection.prepareStatement(insertSql)) {
+                statement.setString(1, nodeId);
+                statement.setLong(2, expireAt);
+                statement.executeUpdate();
+            } catch (SQLException e) {
+                // 与其他进程同时插入了同一节点(重启等)，改为更新
+                if (update(connection, nodeId, expireAt) == 0) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private int update(Connection connection, String nodeId, long expireAt) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(updateSql)) {
+            statement.setLong(1, expireAt);
+            statement.setString(2, nodeId);
+            return statement.executeUpdate();
+        }
+    }
+
+    @Override
+    public void leave(String nodeId) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(deleteSql)) {
+            statement.setString(1, nodeId);
+            statement.executeUpdate();
+        }
+    }
+
+    @Override
+    public Set<String> getMembers() throws SQLException {
+        Set<String> members = new HashSet<>();
+        try (Connection connection = dataSource.getConnection();
+             PreparedStatement statement = connection.prepareStatement(selectSql)) {
+            statement.setLong(1, System.currentTimeMillis());
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    members.add(resultSet.getString(1));
+                }
+            }
+        }
+        return members;
+    }
+}
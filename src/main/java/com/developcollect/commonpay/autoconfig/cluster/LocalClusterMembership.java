@@ -0,0 +1,43 @@
+package com.developcollect.commonpay.autoconfig.cluster;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 只在当前进程有效的集群成员
+ * 单节点部署时使用，也可在测试中由多个{@link ClusterPartitioner}共用一个实例模拟多节点
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class LocalClusterMembership implements ClusterMembership {
+
+    /**
+     * 节点id与租约到期时间
+     */
+    private final Map<String, Long> leases = new ConcurrentHashMap<>();
+
+    @Override
+    public void heartbeat(String nodeId, long ttl) {
+        leases.put(nodeId, System.currentTimeMillis() + ttl);
+    }
+
+    @Override
+    public void leave(String nodeId) {
+        leases.remove(nodeId);
+    }
+
+    @Override
+    public Set<String> getMembers() {
+        long now = System.currentTimeMillis();
+        Set<String> members = new HashSet<>();
+        leases.forEach((nodeId, expireAt) -> {
+            if (expireAt > now) {
+                members.add(nodeId);
+            }
+        });
+        return members;
+    }
+}
@@ -0,0 +1,249 @@
+package com.developcollect.commonpay.autoconfig.controller;
+
+import cn.hutool.core.date.DateUtil;
+import com.developcollect.commonpay.PayPlatform;
+import com.developcollect.commonpay.autoconfig.merchant.Merchant;
+import com.developcollect.commonpay.autoconfig.merchant.MerchantContext;
+import com.developcollect.commonpay.autoconfig.merchant.MerchantRegistry;
+import com.developcollect.commonpay.autoconfig.metrics.NotifyMetrics;
+import com.developcollect.commonpay.autoconfig.notify.AsyncNotifyDispatcher;
+import com.developcollect.commonpay.autoconfig.notify.NotifyDeduplicator;
+import com.developcollect.commonpay.autoconfig.notify.NotifyType;
+import com.developcollect.commonpay.autoconfig.verify.AliPayNotifyVerifier;
+import com.developcollect.commonpay.config.AliPayConfig;
+import com.developcollect.commonpay.config.GlobalConfig;
+import com.developcollect.commonpay.pay.PayResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+/**
+ * 支付宝通知处理器
+ * 验签、过滤重复通知、广播，与接收通知的Web框架无关，由Servlet和WebFlux的控制器共用
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("${develop-collect.pay.notify-endpoint.enabled:true}")
+public class AliPayNotifyProcessor {
+
+    static final String SUCCESS_RET = "success";
+    static final String FAILURE_RET = "failure";
+
+    private final AliPayNotifyVerifier aliPayNotifyVerifier;
+
+    /**
+     * 异步通知分发器，未开启异步通知时为null
+     */
+    private final AsyncNotifyDispatcher asyncNotifyDispatcher;
+
+    /**
+     * 重复通知过滤器，未开启时为null
+     */
+    private final NotifyDeduplicator notifyDeduplicator;
+
+    private final NotifyMetrics notifyMetrics;
+
+    /**
+     * 商户注册表，未配置多商户时为空
+     */
+    private final MerchantRegistry merchantRegistry;
+
+    public AliPayNotifyProcessor(
+            AliPayNotifyVerifier aliPayNotifyVerifier,
+            NotifyMetrics notifyMetrics,
+            ObjectProvider<AsyncNotifyDispatcher> asyncNotifyDispatcherProvider,
+            ObjectProvider<NotifyDeduplicator> notifyDeduplicatorProvider,
+            ObjectProvider<MerchantRegistry> merchantRegistryProvider
+    ) {
+        this.aliPayNotifyVerifier = aliPayNotifyVerifier;
+        this.notifyMetrics = notifyMetrics;
+        this.merchantRegistry = merchantRegistryProvider.getIfAvailable(() -> MerchantRegistry.EMPTY);
+        this.asyncNotifyDispatcher = asyncNotifyDispatcherProvider.getIfAvailable();
+        this.notifyDeduplicator = notifyDeduplicatorProvider.getIfAvailable();
+        if (asyncNotifyDispatcher != null) {
+            asyncNotifyDispatcher.registerHandler(NotifyType.ALI_PAY, this::handleNotify);
+        }
+    }
+
+
+    /**
+     * 处理支付宝支付通知
+     *
+     * @param merchantId   商户id，使用默认配置时为null
+     * @param paramsReader 通知参数读取器
+     * @return 应答支付宝的内容
+     */
+    public String process(String merchantId, Callable<Map<String, String>> paramsReader) {
+        if (merchantId == null) {
+            return process((Merchant) null, paramsReader);
+        }
+        Merchant merchant = merchantRegistry.get(merchantId);
+        if (merchant == null || merchant.getAliPayConfig() == null) {
+            log.warn("支付宝支付结果异步通知的商户未配置: [{}]", merchantId);
+            return FAILURE_RET;
+        }
+        return MerchantContext.call(merchantId, () -> process(merchant, paramsReader));
+    }
+
+
+    /**
+     * @param merchant 商户，使用默认配置时为null
+     */
+    private String process(Merchant merchant, Callable<Map<String, String>> paramsReader) {
+        long start = System.nanoTime();
+        String outcome = NotifyMetrics.OUTCOME_FAILURE;
+        Map<String, String> params = null;
+        boolean claimed = false;
+        try {
+            params = paramsReader.call();
+            long parsed = System.nanoTime();
+            record(NotifyMetrics.STAGE_PARSE, NotifyMetrics.OUTCOME_SUCCESS, parsed - start);
+
+            // 签名验证
+            boolean verify = signVerify(merchant, params);
+            record(NotifyMetrics.STAGE_VERIFY, verify ? NotifyMetrics.OUTCOME_SUCCESS : NotifyMetrics.OUTCOME_FAILURE, System.nanoTime() - parsed);
+            if (!verify) {
+                return FAILURE_RET;
+            }
+
+            // 已处理过的重复通知直接应答，其他线程或节点正在处理的通知应答失败，由支付平台稍后重新推送
+            if (notifyDeduplicator != null) {
+                NotifyDeduplicator.Claim claim = notifyDeduplicator.claim(NotifyType.ALI_PAY, params);
+                if (claim != NotifyDeduplicator.Claim.CLAIMED) {
+                    outcome = NotifyMetrics.OUTCOME_DUPLICATE;
+                    return claim == NotifyDeduplicator.Claim.DUPLICATE ? SUCCESS_RET : FAILURE_RET;
+                }
+                claimed = true;
+            }
+
+            // 异步模式下通知写入日志后立即应答，商户id随通知一起记录
+            if (merchant != null) {
+                params.put(MerchantContext.NOTIFY_PARAM, merchant.getId());
+            }
+            boolean queued = asyncNotifyDispatcher != null && asyncNotifyDispatcher.submit(NotifyType.ALI_PAY, params);
+            if (queued || handleNotify(params)) {
+                if (claimed) {
+                    // 异步处理的通知由分发器在处理成功后记录为已处理，移入死信时释放
+                    if (!queued) {
+                        notifyDeduplicator.markProcessed(NotifyType.ALI_PAY, params);
+                    }
+                    claimed = false;
+                }
+                outcome = queued ? NotifyMetrics.OUTCOME_QUEUED : NotifyMetrics.OUTCOME_SUCCESS;
+                return SUCCESS_RET;
+            }
+        } catch (Exception e) {
+            outcome = NotifyMetrics.OUTCOME_ERROR;
+            log.error("支付宝支付结果异步通知处理失败", e);
+        } finally {
+            // 处理失败时释放，支付平台重新推送时再次处理
+            if (claimed) {
+                notifyDeduplicator.release(NotifyType.ALI_PAY, params);
+            }
+            record(NotifyMetrics.STAGE_TOTAL, outcome, System.nanoTime() - start);
+        }
+        return FAILURE_RET;
+    }
+
+
+    /**
+     * 处理已验签的支付通知
+     * 转换成支付结果对象并广播，广播成功后清除临时文件
+     *
+     * @param params 支付通知参数
+     * @return boolean 广播是否成功
+     */
+    private boolean handleNotify(Map<String, String> params) {
+        // 异步通知的参数与日志记录共用，只读取不修改
+        String merchantId = params.get(MerchantContext.NOTIFY_PARAM);
+        if (merchantId != null) {
+            if (!merchantId.equals(MerchantContext.current())) {
+                return MerchantContext.call(merchantId, () -> handleNotify(params));
+            }
+            Map<String, String> notifyParams = new HashMap<>(params);
+            notifyParams.remove(MerchantContext.NOTIFY_PARAM);
+            return handleNotify(notifyParams);
+        }
+
+        // 转换成支付结果对象
+        PayResponse payResponse = toPayResponse(params);
+
+        // 发送广播
+        long start = System.nanoTime();
+        boolean broadcast = GlobalConfig.payBroadcaster().broadcast(payResponse);
+        long broadcasted = System.nanoTime();
+        record(NotifyMetrics.STAGE_BROADCAST, broadcast ? NotifyMetrics.OUTCOME_SUCCESS : NotifyMetrics.OUTCOME_FAILURE, broadcasted - start);
+        if (!broadcast) {
+            return false;
+        }
+        try {
+            Consumer<PayResponse> aliPayTempFileClear = GlobalConfig
+                    .getPayConfig(PayPlatform.ALI_PAY)
+                    .getExt("aliPayTempFileClear");
+            if (aliPayTempFileClear != null) {
+                aliPayTempFileClear.accept(payResponse);
+                record(NotifyMetrics.STAGE_CLEAR_TEMP_FILE, NotifyMetrics.OUTCOME_SUCCESS, System.nanoTime() - broadcasted);
+            }
+        } catch (Exception e) {
+            record(NotifyMetrics.STAGE_CLEAR_TEMP_FILE, NotifyMetrics.OUTCOME_ERROR, System.nanoTime() - broadcasted);
+            log.debug("清除临时文件失败", e);
+        }
+        return true;
+    }
+
+    private void record(String stage, String outcome, long nanos) {
+        notifyMetrics.record(NotifyMetrics.PLATFORM_ALI_PAY, NotifyMetrics.TYPE_PAY, stage, outcome, nanos);
+    }
+
+
+    private PayResponse toPayResponse(Map<String, String> params) {
+        PayResponse payResponse = new PayResponse();
+        payResponse
+                .setSuccess(true)
+                .setRawObj((Serializable) params)
+                .setPayPlatform(PayPlatform.ALI_PAY)
+                .setTradeNo(params.get("trade_no"))
+                .setPayTime(DateUtil.parseLocalDateTime(params.get("notify_time")))
+                .setOutTradeNo(params.get("out_trade_no"));
+        return payResponse;
+    }
+
+
+    /**
+     * 签名验证
+     *
+     * @param merchant 商户，使用默认配置时为null
+     * @param params   支付通知参数
+     * @return boolean 校验是否通过
+     * @author zak
+     * @since 1.0.0
+     */
+    private boolean signVerify(Merchant merchant, Map<String, String> params) {
+        AliPayConfig payConfig = merchant == null ? GlobalConfig.getPayConfig(PayPlatform.ALI_PAY) : merchant.getAliPayConfig();
+        AliPayNotifyVerifier verifier = merchant == null ? aliPayNotifyVerifier : merchant.getAliPayNotifyVerifier();
+        boolean verify;
+        try {
+            // 公钥(证书)只在内容变化时解析，验签时直接使用缓存的PublicKey
+            verify = verifier.verify(payConfig, params);
+        } catch (Exception e) {
+            log.debug("支付宝支付结果异步通知验签异常", e);
+            verify = false;
+        }
+
+        if (!verify) {
+            log.warn("支付宝支付结果异步通知验签不通过: [{}]", params);
+        }
+
+        return verify;
+    }
+}
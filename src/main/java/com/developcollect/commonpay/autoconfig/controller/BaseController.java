@@ -1,10 +1,9 @@
 package com.developcollect.commonpay.autoconfig.controller;
 
-import cn.hutool.core.util.XmlUtil;
-import org.w3c.dom.Document;
-
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -25,25 +24,15 @@ class BaseController {
     }
 
     protected Map<String, String> getParamsFromXmlBody(HttpServletRequest request, String rootTag) throws IOException {
-        Document document = XmlUtil.readXML(request.getInputStream());
-        return toMap(document, rootTag);
+        return FlatXmlReader.read(request.getInputStream(), rootTag);
     }
 
     protected Map<String, String> getParamsFromXmlStr(String xmlStr, String rootTag) throws IOException {
-        Document document = XmlUtil.parseXml(xmlStr);
-        return toMap(document, rootTag);
+        return FlatXmlReader.read(new StringReader(xmlStr), rootTag);
     }
 
-    private Map<String, String> toMap(Document document, String rootTag) {
-        Map<String, Object> map = XmlUtil.xmlToMap(document);
-        if (rootTag != null) {
-            map = (Map<String, Object>) map.get(rootTag);
-        }
-        Map<String, String> params = new HashMap<>(24);
-        for (Map.Entry<String, Object> entry : map.entrySet()) {
-            params.put(entry.getKey(), String.valueOf(entry.getValue()));
-        }
-        return params;
+    protected Map<String, String> getParamsFromXmlStream(InputStream in, String rootTag) throws IOException {
+        return FlatXmlReader.read(in, rootTag);
     }
 
 }
@@ -0,0 +1,96 @@
+package com.developcollect.commonpay.autoconfig.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 支付宝通知接收控制器(WebFlux)
+ * 表单在事件循环线程中非阻塞读取，验签和广播在通知处理线程池中执行
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Slf4j
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ConditionalOnExpression("${develop-collect.pay.notify-endpoint.enabled:true}")
+@RequestMapping("/cPay")
+public class CommonPayReactiveAliPayController {
+
+    private final AliPayNotifyProcessor aliPayNotifyProcessor;
+
+    private final Scheduler scheduler;
+
+    public CommonPayReactiveAliPayController(
+            AliPayNotifyProcessor aliPayNotifyProcessor,
+            @Qualifier("commonPayScheduler") Scheduler scheduler
+    ) {
+        this.aliPayNotifyProcessor = aliPayNotifyProcessor;
+        this.scheduler = scheduler;
+    }
+
+
+    /**
+     * 支付宝支付通知
+     */
+    @PostMapping("/alipay")
+    public Mono<String> alipayNotify(ServerWebExchange exchange) {
+        return process(null, exchange);
+    }
+
+    /**
+     * 商户的支付宝支付通知
+     *
+     * @param merchantId 商户id
+     */
+    @PostMapping("/alipay/{merchantId}")
+    public Mono<String> alipayNotify(@PathVariable String merchantId, ServerWebExchange exchange) {
+        return process(merchantId, exchange);
+    }
+
+
+    private Mono<String> process(String merchantId, ServerWebExchange exchange) {
+        MultiValueMap<String, String> queryParams = exchange.getRequest().getQueryParams();
+        return exchange.getFormData()
+                .publishOn(scheduler)
+                .map(formData -> aliPayNotifyProcessor.process(merchantId, () -> getParams(queryParams, formData)))
+                .onErrorResume(e -> {
+                    // 线程池已满等情况，支付宝会稍后重新推送
+                    log.warn("支付宝支付结果异步通知未能处理: {}", e.toString());
+                    return Mono.just(AliPayNotifyProcessor.FAILURE_RET);
+                });
+    }
+
+    /**
+     * 与Servlet的getParameterMap一致，同名参数取第一个值，查询参数在前
+     */
+    private Map<String, String> getParams(MultiValueMap<String, String> queryParams, MultiValueMap<String, String> formData) {
+        Map<String, String> params = new HashMap<>(24);
+        putFirst(params, queryParams);
+        putFirst(params, formData);
+        return params;
+    }
+
+    private void putFirst(Map<String, String> params, MultiValueMap<String, String> values) {
+        for (Map.Entry<String, List<String>> entry : values.entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                params.putIfAbsent(entry.getKey(), entry.getValue().get(0));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.developcollect.commonpay.autoconfig.controller;
+
+import com.developcollect.commonpay.autoconfig.artifact.ArtifactStore;
+import com.developcollect.commonpay.autoconfig.artifact.QrCodeArtifacts;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+/**
+ * 支付资源访问控制器(WebFlux)
+ * 与{@link CommonPayResourceController}相同，资源的读取和二维码的生成在通知处理线程池中执行
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ConditionalOnExpression("${develop-collect.pay.resource-endpoint.enabled:true} && (!'${develop-collect.pay.artifact.storage:file}'.equalsIgnoreCase('file') || ${develop-collect.pay.artifact.lazy-qr-code:false})")
+@RequestMapping("/cPay/r")
+public class CommonPayReactiveResourceController {
+
+    private final ArtifactStore artifactStore;
+
+    private final Scheduler scheduler;
+
+    public CommonPayReactiveResourceController(
+            ArtifactStore artifactStore,
+            @Qualifier("commonPayScheduler") Scheduler scheduler
+    ) {
+        this.artifactStore = artifactStore;
+        this.scheduler = scheduler;
+    }
+
+
+    /**
+     * 支付资源
+     *
+     * @param platform 支付平台名称
+     * @param name     资源名称
+     */
+    @GetMapping("/{platform:alipay|wxpay}/{name:.+\\.(?:png|html)}")
+    public Mono<ResponseEntity<byte[]>> resource(@PathVariable String platform, @PathVariable String name) {
+        return Mono
+                .fromCallable(() -> {
+                    byte[] content = artifactStore.get(platform, name);
+                    if (content == null && name.endsWith(QrCodeArtifacts.PNG_SUFFIX)) {
+                        // 延迟生成的二维码在第一次访问时生成
+                        content = QrCodeArtifacts.render(artifactStore, platform, name);
+                    }
+                    return content;
+                })
+                .subscribeOn(scheduler)
+                .map(content -> ResponseEntity.ok()
+                        .contentType(CommonPayResourceController.contentType(name))
+                        .body(content))
+                .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+}
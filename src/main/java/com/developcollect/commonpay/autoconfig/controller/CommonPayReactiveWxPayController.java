@@ -0,0 +1,111 @@
+package com.developcollect.commonpay.autoconfig.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.core.io.buffer.PooledDataBuffer;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.BiFunction;
+
+/**
+ * 微信支付通知接收控制器(WebFlux)
+ * 报文在事件循环线程中非阻塞读取，解析、验签(解密)和广播在通知处理线程池中执行
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Slf4j
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+@ConditionalOnExpression("${develop-collect.pay.notify-endpoint.enabled:true}")
+@RequestMapping("/cPay")
+public class CommonPayReactiveWxPayController {
+
+    /**
+     * 通知报文的最大字节数，微信的通知报文只有几KB
+     */
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    private final WxPayNotifyProcessor wxPayNotifyProcessor;
+
+    private final Scheduler scheduler;
+
+    public CommonPayReactiveWxPayController(
+            WxPayNotifyProcessor wxPayNotifyProcessor,
+            @Qualifier("commonPayScheduler") Scheduler scheduler
+    ) {
+        this.wxPayNotifyProcessor = wxPayNotifyProcessor;
+        this.scheduler = scheduler;
+    }
+
+
+    /**
+     * 微信支付结果通知
+     */
+    @PostMapping("/wxpay")
+    public Mono<String> payNotify(ServerWebExchange exchange) {
+        return process(null, exchange, wxPayNotifyProcessor::processPay);
+    }
+
+    /**
+     * 商户的微信支付结果通知
+     *
+     * @param merchantId 商户id
+     */
+    @PostMapping("/wxpay/{merchantId}")
+    public Mono<String> payNotify(@PathVariable String merchantId, ServerWebExchange exchange) {
+        return process(merchantId, exchange, wxPayNotifyProcessor::processPay);
+    }
+
+    /**
+     * 微信退款结果通知
+     */
+    @PostMapping("/wxpay/refund")
+    public Mono<String> refundNotify(ServerWebExchange exchange) {
+        return process(null, exchange, wxPayNotifyProcessor::processRefund);
+    }
+
+    /**
+     * 商户的微信退款结果通知
+     *
+     * @param merchantId 商户id
+     */
+    @PostMapping("/wxpay/refund/{merchantId}")
+    public Mono<String> refundNotify(@PathVariable String merchantId, ServerWebExchange exchange) {
+        return process(merchantId, exchange, wxPayNotifyProcessor::processRefund);
+    }
+
+
+    private Mono<String> process(String merchantId, ServerWebExchange exchange,
+                                 BiFunction<String, Callable<Map<String, String>>, String> processor) {
+        return DataBufferUtils.join(exchange.getRequest().getBody(), MAX_BODY_BYTES)
+                .publishOn(scheduler)
+                .map(body -> {
+                    try {
+                        return processor.apply(merchantId, () -> FlatXmlReader.read(body.asInputStream(), "xml"));
+                    } finally {
+                        DataBufferUtils.release(body);
+                    }
+                })
+                // 取消或出错时释放还未处理的报文
+                .doOnDiscard(PooledDataBuffer.class, DataBufferUtils::release)
+                .defaultIfEmpty(WxPayNotifyProcessor.FAILURE_RET)
+                .onErrorResume(e -> {
+                    // 报文过大、线程池已满等情况，微信会稍后重新推送
+                    log.warn("微信异步通知未能处理: {}", e.toString());
+                    return Mono.just(WxPayNotifyProcessor.FAILURE_RET);
+                });
+    }
+
+}
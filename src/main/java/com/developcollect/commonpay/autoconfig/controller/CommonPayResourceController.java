@@ -0,0 +1,65 @@
+package com.developcollect.commonpay.autoconfig.controller;
+
+import com.developcollect.commonpay.autoconfig.artifact.ArtifactStore;
+import com.developcollect.commonpay.autoconfig.artifact.QrCodeArtifacts;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 支付资源访问控制器
+ * 资源不存放在本地文件或开启了延迟生成二维码时，由该控制器从{@link ArtifactStore}中读取支付二维码、支付页面
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@RestController
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+@ConditionalOnExpression("${develop-collect.pay.resource-endpoint.enabled:true} && (!'${develop-collect.pay.artifact.storage:file}'.equalsIgnoreCase('file') || ${develop-collect.pay.artifact.lazy-qr-code:false})")
+@RequestMapping("/cPay/r")
+@RequiredArgsConstructor
+public class CommonPayResourceController {
+
+    private final ArtifactStore artifactStore;
+
+    /**
+     * 支付资源
+     *
+     * @param platform 支付平台名称
+     * @param name     资源名称
+     * @author zak
+     * @since 2.2.0
+     */
+    @GetMapping("/{platform:alipay|wxpay}/{name:.+\\.(?:png|html)}")
+    public ResponseEntity<byte[]> resource(@PathVariable String platform, @PathVariable String name) {
+        byte[] content = artifactStore.get(platform, name);
+        if (content == null && name.endsWith(QrCodeArtifacts.PNG_SUFFIX)) {
+            // 延迟生成的二维码在第一次访问时生成
+            content = QrCodeArtifacts.render(artifactStore, platform, name);
+        }
+        if (content == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(contentType(name))
+                .body(content);
+    }
+
+    static MediaType contentType(String name) {
+        if (name.endsWith(".png")) {
+            return MediaType.IMAGE_PNG;
+        }
+        if (name.endsWith(".html")) {
+            return new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8);
+        }
+        return MediaType.APPLICATION_OCTET_STREAM;
+    }
+}
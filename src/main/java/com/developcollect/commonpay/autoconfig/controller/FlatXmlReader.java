@@ -0,0 +1,128 @@
+package com.developcollect.commonpay.autoconfig.controller;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 扁平XML读取器
+ * 基于StAX一次遍历将形如 &lt;xml&gt;&lt;a&gt;1&lt;/a&gt;&lt;b&gt;2&lt;/b&gt;&lt;/xml&gt; 的报文直接读成参数Map，
+ * 不构建DOM，也不经过中间Map。
+ * 禁止DTD和外部实体，防止XXE
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+final class FlatXmlReader {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXmlInputFactory();
+
+    private FlatXmlReader() {
+    }
+
+
+    /**
+     * 从输入流读取参数
+     *
+     * @param in      输入流，编码由XML声明决定，默认UTF-8
+     * @param rootTag 根节点名称，为null时不校验
+     * @return 根节点下各子节点名称与文本的Map
+     */
+    static Map<String, String> read(InputStream in, String rootTag) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+            return read(reader, rootTag);
+        } catch (XMLStreamException e) {
+            throw new IOException("xml parse error", e);
+        } finally {
+            close(reader);
+        }
+    }
+
+    /**
+     * 从字符流读取参数
+     *
+     * @param in      字符流
+     * @param rootTag 根节点名称，为null时不校验
+     * @return 根节点下各子节点名称与文本的Map
+     */
+    static Map<String, String> read(Reader in, String rootTag) throws IOException {
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(in);
+            return read(reader, rootTag);
+        } catch (XMLStreamException e) {
+            throw new IOException("xml parse error", e);
+        } finally {
+            close(reader);
+        }
+    }
+
+
+    private static Map<String, String> read(XMLStreamReader reader, String rootTag) throws XMLStreamException, IOException {
+        Map<String, String> params = new HashMap<>(32);
+        StringBuilder text = new StringBuilder(64);
+        String name = null;
+        int depth = 0;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case XMLStreamConstants.START_ELEMENT:
+                    depth++;
+                    if (depth == 1) {
+                        if (rootTag != null && !rootTag.equals(reader.getLocalName())) {
+                            throw new IOException("unexpected root tag: " + reader.getLocalName());
+                        }
+                    } else if (depth == 2) {
+                        name = reader.getLocalName();
+                        text.setLength(0);
+                    }
+                    break;
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (depth >= 2) {
+                        text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                    }
+                    break;
+                case XMLStreamConstants.END_ELEMENT:
+                    if (depth == 2) {
+                        params.put(name, text.toString());
+                    }
+                    depth--;
+                    break;
+                case XMLStreamConstants.DTD:
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    throw new IOException("DTD and entity reference are not allowed");
+                default:
+                    break;
+            }
+        }
+        return params;
+    }
+
+    private static XMLInputFactory createXmlInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return factory;
+    }
+
+    private static void close(XMLStreamReader reader) {
+        if (reader != null) {
+            try {
+                reader.close();
+            } catch (XMLStreamException ignored) {
+                // ignore
+            }
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package com.developcollect.commonpay.autoconfig.controller;
+
+import cn.hutool.core.date.DateUtil;
+import com.developcollect.commonpay.PayPlatform;
+import com.developcollect.commonpay.autoconfig.merchant.Merchant;
+import com.developcollect.commonpay.autoconfig.merchant.MerchantContext;
+import com.developcollect.commonpay.autoconfig.merchant.MerchantRegistry;
+import com.developcollect.commonpay.autoconfig.metrics.NotifyMetrics;
+import com.developcollect.commonpay.autoconfig.notify.AsyncNotifyDispatcher;
+import com.developcollect.commonpay.autoconfig.notify.NotifyDeduplicator;
+import com.developcollect.commonpay.autoconfig.notify.NotifyType;
+import com.developcollect.commonpay.autoconfig.verify.WxPayNotifyVerifier;
+import com.developcollect.commonpay.config.GlobalConfig;
+import com.developcollect.commonpay.config.WxPayConfig;
+import com.developcollect.commonpay.pay.PayResponse;
+import com.developcollect.commonpay.pay.RefundResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Component;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+/**
+ * 微信支付通知处理器
+ * 验签(退款通知为解密)、过滤重复通知、广播，与接收通知的Web框架无关，由Servlet和WebFlux的控制器共用
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Slf4j
+@Component
+@ConditionalOnExpression("${develop-collect.pay.notify-endpoint.enabled:true}")
+public class WxPayNotifyProcessor {
+
+    static final String SUCCESS_RET = "<xml><return_code><![CDATA[SUCCESS]]></return_code><return_msg><![CDATA[OK]]></return_msg></xml>";
+    static final String FAILURE_RET = "";
+
+    private final WxPayNotifyVerifier wxPayNotifyVerifier;
+
+    /**
+     * 异步通知分发器，未开启异步通知时为null
+     */
+    private final AsyncNotifyDispatcher asyncNotifyDispatcher;
+
+    /**
+     * 重复通知过滤器，未开启时为null
+     */
+    private final NotifyDeduplicator notifyDeduplicator;
+
+    private final NotifyMetrics notifyMetrics;
+
+    /**
+     * 商户注册表，未配置多商户时为空
+     */
+    private final MerchantRegistry merchantRegistry;
+
+    public WxPayNotifyProcessor(
+            WxPayNotifyVerifier wxPayNotifyVerifier,
+            NotifyMetrics notifyMetrics,
+            ObjectProvider<AsyncNotifyDispatcher> asyncNotifyDispatcherProvider,
+            ObjectProvider<NotifyDeduplicator> notifyDeduplicatorProvider,
+            ObjectProvider<MerchantRegistry> merchantRegistryProvider
+    ) {
+        this.wxPayNotifyVerifier = wxPayNotifyVerifier;
+        this.notifyMetrics = notifyMetrics;
+        this.merchantRegistry = merchantRegistryProvider.getIfAvailable(() -> MerchantRegistry.EMPTY);
+        this.asyncNotifyDispatcher = asyncNotifyDispatcherProvider.getIfAvailable();
+        this.notifyDeduplicator = notifyDeduplicatorProvider.getIfAvailable();
+        if (asyncNotifyDispatcher != null) {
+            asyncNotifyDispatcher.registerHandler(NotifyType.WX_PAY, this::handlePayNotify);
+            asyncNotifyDispatcher.registerHandler(NotifyType.WX_REFUND, this::handleRefundNotify);
+        }
+    }
+
+
+    /**
+     * 处理微信支付结果通知
+     *
+     * @param merchantId   商户id，使用默认配置时为null
+     * @param paramsReader 通知参数读取器
+     * @return 应答微信的内容
+     */
+    public String processPay(String merchantId, Callable<Map<String, String>> paramsReader) {
+        if (merchantId == null) {
+            return processPay((Merchant) null, paramsReader);
+        }
+        Merchant merchant = getMerchant(merchantId);
+        if (merchant == null) {
+            return FAILURE_RET;
+        }
+        return MerchantContext.call(merchantId, () -> processPay(merchant, paramsReader));
+    }
+
+    /**
+     * 处理微信退款结果通知
+     * https://pay.weixin.qq.com/wiki/doc/api/native.php?chapter=9_16&index=11
+     * 解密步骤如下：
+     * （1）对加密串A做base64解码，得到加密串B
+     * （2）对商户key做md5，得到32位小写key* ( key设置路径：微信商户平台(pay.weixin.qq.com)-->账户设置-->API安全-->密钥设置 )
+     * （3）用key*对加密串B做AES-256-ECB解密（PKCS7Padding）
+     *
+     * @param merchantId   商户id，使用默认配置时为null
+     * @param paramsReader 通知参数读取器
+     * @return 应答微信的内容
+     */
+    public String processRefund(String merchantId, Callable<Map<String, String>> paramsReader) {
+        if (merchantId == null) {
+            return processRefund((Merchant) null, paramsReader);
+        }
+        Merchant merchant = getMerchant(merchantId);
+        if (merchant == null) {
+            return FAILURE_RET;
+        }
+        return MerchantContext.call(merchantId, () -> processRefund(merchant, paramsReader));
+    }
+
+
+    /**
+     * @param merchant 商户，使用默认配置时为null
+     */
+    private String processPay(Merchant merchant, Callable<Map<String, String>> paramsReader) {
+        long start = System.nanoTime();
+        String outcome = NotifyMetrics.OUTCOME_FAILURE;
+        Map<String, String> params = null;
+        boolean claimed = false;
+        try {
+            params = paramsReader.call();
+            long parsed = System.nanoTime();
+            record(NotifyMetrics.TYPE_PAY, NotifyMetrics.STAGE_PARSE, NotifyMetrics.OUTCOME_SUCCESS, parsed - start);
+
+            // 签名验证
+            boolean verify = signVerify(merchant, params);
+            record(NotifyMetrics.TYPE_PAY, NotifyMetrics.STAGE_VERIFY, verify ? NotifyMetrics.OUTCOME_SUCCESS : NotifyMetrics.OUTCOME_FAILURE, System.nanoTime() - parsed);
+            if (!verify) {
+                return FAILURE_RET;
+            }
+
+            // 已处理过的重复通知直接应答，其他线程或节点正在处理的通知应答失败，由支付平台稍后重新推送
+            if (notifyDeduplicator != null) {
+                NotifyDeduplicator.Claim claim = notifyDeduplicator.claim(NotifyType.WX_PAY, params);
+                if (claim != NotifyDeduplicator.Claim.CLAIMED) {
+                    outcome = NotifyMetrics.OUTCOME_DUPLICATE;
+                    return claim == NotifyDeduplicator.Claim.DUPLICATE ? SUCCESS_RET : FAILURE_RET;
+                }
+                claimed = true;
+            }
+
+            // 异步模式下通知写入日志后立即应答，商户id随通知一起记录
+            if (merchant != null) {
+                params.put(MerchantContext.NOTIFY_PARAM, merchant.getId());
+            }
+            boolean queued = asyncNotifyDispatcher != null && asyncNotifyDispatcher.submit(NotifyType.WX_PAY, params);
+            if (queued || handlePayNotify(params)) {
+                if (claimed) {
+                    // 异步处理的通知由分发器在处理成功后记录为已处理，移入死信时释放
+                    if (!queued) {
+                        notifyDeduplicator.markProcessed(NotifyType.WX_PAY, params);
+                    }
+                    claimed = false;
+                }
+                outcome = queued ? NotifyMetrics.OUTCOME_QUEUED : NotifyMetrics.OUTCOME_SUCCESS;
+                return SUCCESS_RET;
+            }
+        } catch (Exception e) {
+            outcome = NotifyMetrics.OUTCOME_ERROR;
+            log.error("微信支付结果异步通知处理失败", e);
+        } finally {
+            // 处理失败时释放，支付平台重新推送时再次处理
+            if (claimed) {
+                notifyDeduplicator.release(NotifyType.WX_PAY, params);
+            }
+            record(NotifyMetrics.TYPE_PAY, NotifyMetrics.STAGE_TOTAL, outcome, System.nanoTime() - start);
+        }
+
+        return FAILURE_RET;
+    }
+
+
+    /**
+     * 处理已验签的支付通知
+     * 转换成支付结果对象并广播，广播成功后清除临时文件
+     *
+     * @param params 支付通知参数
+     * @return boolean 广播是否成功
+     */
+    private boolean handlePayNotify(Map<String, String> params) {
+        // 异步通知的参数与日志记录共用，只读取不修改
+        String merchantId = params.get(MerchantContext.NOTIFY_PARAM);
+        if (merchantId != null) {
+            if (!merchantId.equals(MerchantContext.current())) {
+                return MerchantContext.call(merchantId, () -> handlePayNotify(params));
+            }
+            Map<String, String> notifyParams = new HashMap<>(params);
+            notifyParams.remove(MerchantContext.NOTIFY_PARAM);
+            return handlePayNotify(notifyParams);
+        }
+
+        // 转换为支付结果对象
+        PayResponse payResponse = toPayResponse(params);
+
+        // 发送广播
+        long start = System.nanoTime();
+        boolean broadcast = GlobalConfig.payBroadcaster().broadcast(payResponse);
+        long broadcasted = System.nanoTime();
+        record(NotifyMetrics.TYPE_PAY, NotifyMetrics.STAGE_BROADCAST, broadcast ? NotifyMetrics.OUTCOME_SUCCESS : NotifyMetrics.OUTCOME_FAILURE, broadcasted - start);
+        if (!broadcast) {
+            return false;
+        }
+        try {
+            Consumer<PayResponse> wxPayTempFileClear = GlobalConfig
+                    .getPayConfig(PayPlatform.WX_PAY)
+                    .getExt("wxPayTempFileClear");
+            if (wxPayTempFileClear != null) {
+                wxPayTempFileClear.accept(payResponse);
+                record(NotifyMetrics.TYPE_PAY, NotifyMetrics.STAGE_CLEAR_TEMP_FILE, NotifyMetrics.OUTCOME_SUCCESS, System.nanoTime() - broadcasted);
+            }
+        } catch (Exception e) {
+            record(NotifyMetrics.TYPE_PAY, NotifyMetrics.STAGE_CLEAR_TEMP_FILE, NotifyMetrics.OUTCOME_ERROR, System.nanoTime() - broadcasted);
+            log.debug("清除临时文件失败", e);
+        }
+        return true;
+    }
+
+
+    private PayResponse toPayResponse(Map<String, String> params) {
+        PayResponse payResponse = new PayResponse();
+        payResponse
+                .setSuccess(true)
+                .setRawObj((Serializable) params)
+                .setPayPlatform(PayPlatform.WX_PAY)
+                .setPayTime(DateUtil.parseLocalDateTime(params.get("time_end"), "yyyyMMddHHmmss"))
+                .setTradeNo(params.get("transaction_id"))
+                .setOutTradeNo(params.get("out_trade_no"));
+        return payResponse;
+    }
+
+
+    /**
+     * @param merchant 商户，使用默认配置时为null
+     */
+    private String processRefund(Merchant merchant, Callable<Map<String, String>> paramsReader) {
+        long start = System.nanoTime();
+        String outcome = NotifyMetrics.OUTCOME_FAILURE;
+        Map<String, String> params = null;
+        boolean claimed = false;
+        try {
+            params = paramsReader.call();
+            long parsed = System.nanoTime();
+            record(NotifyMetrics.TYPE_REFUND, NotifyMetrics.STAGE_PARSE, NotifyMetrics.OUTCOME_SUCCESS, parsed - start);
+
+            WxPayConfig payConfig = merchant == null ? GlobalConfig.getPayConfig(PayPlatform.WX_PAY) : merchant.getWxPayConfig();
+            WxPayNotifyVerifier verifier = merchant == null ? wxPayNotifyVerifier : merchant.getWxPayNotifyVerifier();
+            String reqInfo = params.get("req_info");
+
+            // 解密结果直接交给流式解析，密钥和Cipher按商户key缓存
+            Map<String, String> reqInfoMap = FlatXmlReader.read(verifier.decryptReqInfo(payConfig, reqInfo), "root");
+
+            params.putAll(reqInfoMap);
+            record(NotifyMetrics.TYPE_REFUND, NotifyMetrics.STAGE_VERIFY, NotifyMetrics.OUTCOME_SUCCESS, System.nanoTime() - parsed);
+
+            // 已处理过的重复通知直接应答，其他线程或节点正在处理的通知应答失败，由支付平台稍后重新推送
+            if (notifyDeduplicator != null) {
+                NotifyDeduplicator.Claim claim = notifyDeduplicator.claim(NotifyType.WX_REFUND, params);
+                if (claim != NotifyDeduplicator.Claim.CLAIMED) {
+                    outcome = NotifyMetrics.OUTCOME_DUPLICATE;
+                    return claim == NotifyDeduplicator.Claim.DUPLICATE ? SUCCESS_RET : FAILURE_RET;
+                }
+                claimed = true;
+            }
+
+            // 异步模式下通知写入日志后立即应答，商户id随通知一起记录
+            if (merchant != null) {
+                params.put(MerchantContext.NOTIFY_PARAM, merchant.getId());
+            }
+            boolean queued = asyncNotifyDispatcher != null && asyncNotifyDispatcher.submit(NotifyType.WX_REFUND, params);
+            if (queued || handleRefundNotify(params)) {
+                if (claimed) {
+                    // 异步处理的通知由分发器在处理成功后记录为已处理，移入死信时释放
+                    if (!queued) {
+                        notifyDeduplicator.markProcessed(NotifyType.WX_REFUND, params);
+                    }
+                    claimed = false;
+                }
+                outcome = queued ? NotifyMetrics.OUTCOME_QUEUED : NotifyMetrics.OUTCOME_SUCCESS;
+                return SUCCESS_RET;
+            }
+        } catch (Exception e) {
+            outcome = NotifyMetrics.OUTCOME_ERROR;
+            log.error("微信退款结果异步通知处理失败", e);
+        } finally {
+            // 处理失败时释放，支付平台重新推送时再次处理
+            if (claimed) {
+                notifyDeduplicator.release(NotifyType.WX_REFUND, params);
+            }
+            record(NotifyMetrics.TYPE_REFUND, NotifyMetrics.STAGE_TOTAL, outcome, System.nanoTime() - start);
+        }
+
+        return FAILURE_RET;
+    }
+
+
+    /**
+     * 处理已解密的退款通知
+     *
+     * @param params 退款通知参数
+     * @return boolean 广播是否成功
+     */
+    private boolean handleRefundNotify(Map<String, String> params) {
+        // 异步通知的参数与日志记录共用，只读取不修改
+        String merchantId = params.get(MerchantContext.NOTIFY_PARAM);
+        if (merchantId != null) {
+            if (!merchantId.equals(MerchantContext.current())) {
+                return MerchantContext.call(merchantId, () -> handleRefundNotify(params));
+            }
+            Map<String, String> notifyParams = new HashMap<>(params);
+            notifyParams.remove(MerchantContext.NOTIFY_PARAM);
+            return handleRefundNotify(notifyParams);
+        }
+
+        // 转换为退款结果对象
+        RefundResponse refundResponse = toRefundResponse(params);
+
+        // 发送广播
+        long start = System.nanoTime();
+        boolean broadcast = GlobalConfig.refundBroadcaster().broadcast(refundResponse);
+        record(NotifyMetrics.TYPE_REFUND, NotifyMetrics.STAGE_BROADCAST, broadcast ? NotifyMetrics.OUTCOME_SUCCESS : NotifyMetrics.OUTCOME_FAILURE, System.nanoTime() - start);
+        return broadcast;
+    }
+
+    private Merchant getMerchant(String merchantId) {
+        Merchant merchant = merchantRegistry.get(merchantId);
+        if (merchant == null || merchant.getWxPayConfig() == null) {
+            log.warn("微信异步通知的商户未配置: [{}]", merchantId);
+            return null;
+        }
+        return merchant;
+    }
+
+    private void record(String type, String stage, String outcome, long nanos) {
+        notifyMetrics.record(NotifyMetrics.PLATFORM_WX_PAY, type, stage, outcome, nanos);
+    }
+
+
+    private RefundResponse toRefundResponse(Map<String, String> params) {
+        RefundResponse refundResponse = new RefundResponse();
+        refundResponse
+                .setRawObj((Serializable) params)
+                .setPayPlatform(PayPlatform.WX_PAY)
+                .setRefundNo(params.get("refund_id"))
+                .setOutRefundNo(params.get("out_refund_no"));
+        if ("SUCCESS".equals(params.get("refund_status"))) {
+            refundResponse.setStatus(RefundResponse.SUCCESS);
+            refundResponse.setRefundTime(DateUtil.parseLocalDateTime(params.get("success_time"), "yyyy-MM-dd HH:mm:ss"));
+        } else {
+            refundResponse.setStatus(RefundResponse.FAIL);
+        }
+        return refundResponse;
+    }
+
+
+    /**
+     * 签名校验
+     * https://pay.weixin.qq.com/wiki/doc/api/native.php?chapter=4_3
+     *
+     * @param merchant 商户，使用默认配置时为null
+     * @param params   支付通知参数
+     * @return 校验是否通过
+     * @author zak
+     * @since 1.0.0
+     */
+    private boolean signVerify(Merchant merchant, Map<String, String> params) {
+        WxPayConfig payConfig = merchant == null ? GlobalConfig.getPayConfig(PayPlatform.WX_PAY) : merchant.getWxPayConfig();
+        WxPayNotifyVerifier verifier = merchant == null ? wxPayNotifyVerifier : merchant.getWxPayNotifyVerifier();
+        boolean verify;
+
+        try {
+            // 签名规则与WXPayUtil.isSignatureValid一致，MD5/HMAC实例取自线程本地池
+            verify = verifier.verify(payConfig, params);
+        } catch (Exception e) {
+            verify = false;
+        }
+
+        if (!verify) {
+            log.warn("微信支付结果异步通知验签不通过: [{}]", params);
+        }
+
+        return verify;
+    }
+}
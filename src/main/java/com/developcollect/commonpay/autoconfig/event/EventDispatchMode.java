@@ -0,0 +1,26 @@
+package com.developcollect.commonpay.autoconfig.event;
+
+/**
+ * 支付、退款事件的分发方式
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public enum EventDispatchMode {
+
+    /**
+     * 在通知处理线程中同步发布，监听器抛出异常时广播失败
+     */
+    SYNC,
+
+    /**
+     * 在有界的线程池中发布
+     */
+    POOL,
+
+    /**
+     * 每个事件使用一个虚拟线程发布，需要JDK 21及以上，低版本JDK上退化为{@link #POOL}
+     */
+    VIRTUAL
+
+}
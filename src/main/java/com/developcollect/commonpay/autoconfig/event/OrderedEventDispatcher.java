@@ -0,0 +1,331 @@
+package com.developcollect.commonpay.autoconfig.event;
+
+import com.developcollect.commonpay.autoconfig.merchant.MerchantContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按订单有序的事件分发器
+ * 同一订单的事件按提交顺序依次执行，不同订单的事件并行执行，同一订单的监听器不会并发。
+ * 提交方等待监听器执行完成后才返回，监听器的异常原样抛出，与同步分发一样由通知端点应答失败，
+ * 支付平台稍后重新推送，监听器未执行成功的事件不会被确认或去重。
+ * 等待执行的事件数有上限，已满时提交方最多等待{@code offerTimeout}毫秒，仍未腾出位置则提交失败；
+ * 停止时超过{@code shutdownTimeout}仍未执行的事件同样以失败返回。
+ * 监听器在提交方的{@link MerchantContext}下执行，调用common-pay时使用的是通知所属商户的配置
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Slf4j
+public class OrderedEventDispatcher implements SmartLifecycle {
+
+    private final EventDispatchMode mode;
+
+    private final int threads;
+
+    private final long offerTimeout;
+
+    private final long shutdownTimeout;
+
+    /**
+     * 等待执行和执行中的事件数
+     */
+    private final Semaphore permits;
+
+    /**
+     * 有事件等待执行的订单
+     */
+    private final ConcurrentMap<String, Lane> lanes = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+
+    private volatile boolean running;
+
+
+    /**
+     * @param mode            分发方式
+     * @param threads         线程池的线程数，只对{@link EventDispatchMode#POOL}有效
+     * @param queueCapacity   最多等待执行的事件数
+     * @param offerTimeout    已满时提交方最多等待的时间，单位：ms
+     * @param shutdownTimeout 停止时等待已提交事件执行完成的时间，单位：ms
+     */
+    public OrderedEventDispatcher(EventDispatchMode mode, int threads, int queueCapacity, long offerTimeout, long shutdownTimeout) {
+        this.mode = mode;
+        this.threads = threads;
+        this.offerTimeout = offerTimeout;
+        this.shutdownTimeout = shutdownTimeout;
+        this.permits = new Semaphore(queueCapacity);
+    }
+
+
+    /**
+     * 分发事件，等待监听器执行完成后返回
+     *
+     * @param orderKey 订单号，为null时不保证顺序
+     * @param event    发布事件的操作
+     * @return 监听器是否已执行完成，未能提交或停止时未执行返回false，监听器的异常直接抛出
+     */
+    public boolean dispatch(String orderKey, Runnable event) {
+        if (mode == EventDispatchMode.SYNC || !running) {
+            event.run();
+            return true;
+        }
+        try {
+            if (!permits.tryAcquire(offerTimeout, TimeUnit.MILLISECONDS)) {
+                log.warn("待分发的支付事件已满，订单[{}]的事件分发失败", orderKey);
+                return false;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        Task task = new Task(MerchantContext.current(), event);
+        try {
+            if (orderKey == null) {
+                executor.execute(task);
+            } else {
+                enqueue(orderKey, task);
+            }
+        } catch (RejectedExecutionException e) {
+            // 正在停止
+            permits.release();
+            return false;
+        }
+        return task.await(orderKey);
+    }
+
+    private void enqueue(String orderKey, Task task) {
+        for (; ; ) {
+            Lane lane = lanes.computeIfAbsent(orderKey, Lane::new);
+            boolean schedule;
+            synchronized (lane) {
+                if (lane.retired) {
+                    // 该订单的事件刚好执行完，重新创建
+                    continue;
+                }
+                lane.tasks.add(task);
+                schedule = !lane.scheduled;
+                lane.scheduled = true;
+            }
+            if (schedule) {
+                try {
+                    executor.execute(lane);
+                } catch (RejectedExecutionException e) {
+                    synchronized (lane) {
+                        lane.tasks.remove(task);
+                        lane.scheduled = false;
+                    }
+                    throw e;
+                }
+            }
+            return;
+        }
+    }
+
+
+    @Override
+    public synchronized void start() {
+        if (mode == EventDispatchMode.SYNC) {
+            running = true;
+            return;
+        }
+        executor = mode == EventDispatchMode.VIRTUAL ? newVirtualThreadExecutor() : null;
+        if (executor == null) {
+            AtomicInteger counter = new AtomicInteger();
+            // 等待数已由permits限制，这里不再限制队列
+            executor = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "cPay-event-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        running = true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (executor == null) {
+            return;
+        }
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(shutdownTimeout, TimeUnit.MILLISECONDS)) {
+                return;
+            }
+            log.warn("停止时仍有支付事件未分发完成，以失败返回，由支付平台重新推送");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 未执行的事件通知提交方失败，不能当作已处理
+        for (Runnable runnable : executor.shutdownNow()) {
+            if (runnable instanceof Task) {
+                ((Task) runnable).cancel();
+            }
+        }
+        for (Lane lane : lanes.values()) {
+            lane.cancel();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+
+    /**
+     * JDK 21及以上时创建虚拟线程执行器，否则返回null
+     */
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            log.warn("当前JDK不支持虚拟线程，支付事件改为在线程池中分发");
+            return null;
+        }
+    }
+
+
+    /**
+     * 一个事件，提交方等待其执行完成
+     */
+    private final class Task implements Runnable {
+
+        /**
+         * 提交方的商户id，执行线程上没有提交方的{@link MerchantContext}
+         */
+        private final String merchantId;
+
+        private final Runnable event;
+
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+        /**
+         * 已开始执行或已取消，二者只会发生一个
+         */
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        private Task(String merchantId, Runnable event) {
+            this.merchantId = merchantId;
+            this.event = event;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                MerchantContext.run(merchantId, event);
+                done.complete(null);
+            } catch (Throwable e) {
+                done.completeExceptionally(e);
+            } finally {
+                permits.release();
+            }
+        }
+
+        /**
+         * 停止时未执行
+         */
+        private void cancel() {
+            if (claimed.compareAndSet(false, true)) {
+                done.cancel(false);
+                permits.release();
+            }
+        }
+
+        private boolean await(String orderKey) {
+            try {
+                done.get();
+                return true;
+            } catch (CancellationException e) {
+                return false;
+            } catch (InterruptedException e) {
+                // 监听器可能稍后执行，支付平台重新推送时由监听器保证幂等
+                Thread.currentThread().interrupt();
+                return false;
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException("订单[" + orderKey + "]的支付事件监听器执行失败", cause);
+            }
+        }
+    }
+
+
+    /**
+     * 一个订单的待执行事件，同一时间最多只有一个线程在执行
+     */
+    private final class Lane implements Runnable {
+
+        private final String orderKey;
+
+        private final Queue<Task> tasks = new ArrayDeque<>(2);
+
+        /**
+         * 是否已交给执行器
+         */
+        private boolean scheduled;
+
+        /**
+         * 事件已全部执行完并已从lanes中移除
+         */
+        private boolean retired;
+
+        private Lane(String orderKey) {
+            this.orderKey = orderKey;
+        }
+
+        /**
+         * 停止时取消未执行的事件
+         */
+        private void cancel() {
+            synchronized (this) {
+                Task task;
+                while ((task = tasks.poll()) != null) {
+                    task.cancel();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            for (; ; ) {
+                Task task;
+                synchronized (this) {
+                    task = tasks.poll();
+                    if (task == null) {
+                        scheduled = false;
+                        retired = true;
+                        lanes.remove(orderKey, this);
+                        return;
+                    }
+                }
+                task.run();
+            }
+        }
+    }
+}
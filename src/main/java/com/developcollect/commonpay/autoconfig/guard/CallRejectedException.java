@@ -0,0 +1,24 @@
+package com.developcollect.commonpay.autoconfig.guard;
+
+/**
+ * 调用支付平台接口前被限流或熔断拒绝，调用未发出
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class CallRejectedException extends RuntimeException {
+
+    private final boolean circuitOpen;
+
+    public CallRejectedException(String message, boolean circuitOpen) {
+        super(message);
+        this.circuitOpen = circuitOpen;
+    }
+
+    /**
+     * 是否因熔断被拒绝，否则为限流
+     */
+    public boolean isCircuitOpen() {
+        return circuitOpen;
+    }
+}
@@ -0,0 +1,75 @@
+package com.developcollect.commonpay.autoconfig.guard;
+
+/**
+ * 熔断器
+ * 连续失败达到阈值后打开，打开期间直接拒绝调用；打开超过{@code openDuration}后放行一次试探调用，
+ * 试探成功则关闭，失败则重新打开
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class CircuitBreaker {
+
+    private final int failureThreshold;
+
+    private final long openDuration;
+
+    private int consecutiveFailures;
+
+    /**
+     * 打开的时间，0表示关闭
+     */
+    private long openedAt;
+
+    private boolean trialInFlight;
+
+
+    /**
+     * @param failureThreshold 打开熔断的连续失败次数
+     * @param openDuration     打开后到放行试探调用的时间，单位：ms
+     */
+    public CircuitBreaker(int failureThreshold, long openDuration) {
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+    }
+
+
+    /**
+     * 是否放行本次调用，放行后需要调用{@link #onSuccess()}、{@link #onFailure()}或{@link #release()}
+     */
+    public synchronized boolean tryAcquire() {
+        if (openedAt == 0) {
+            return true;
+        }
+        if (trialInFlight || System.currentTimeMillis() - openedAt < openDuration) {
+            return false;
+        }
+        trialInFlight = true;
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        openedAt = 0;
+        trialInFlight = false;
+    }
+
+    public synchronized void onFailure() {
+        consecutiveFailures++;
+        if (trialInFlight || consecutiveFailures >= failureThreshold) {
+            openedAt = System.currentTimeMillis();
+        }
+        trialInFlight = false;
+    }
+
+    /**
+     * 放行后未实际发出调用，不影响熔断状态
+     */
+    public synchronized void release() {
+        trialInFlight = false;
+    }
+
+    public synchronized boolean isOpen() {
+        return openedAt != 0;
+    }
+}
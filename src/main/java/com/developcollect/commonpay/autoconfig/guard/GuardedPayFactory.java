@@ -0,0 +1,107 @@
+package com.developcollect.commonpay.autoconfig.guard;
+
+import com.developcollect.commonpay.autoconfig.merchant.MerchantContext;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+/**
+ * 带调用保护的Pay工厂
+ * 代理Pay工厂，工厂方法{@code createPay(int payPlatform)}创建的Pay对象再包一层代理，Pay对象的每次调用(下单、查询、退款等)
+ * 都经过{@link PlatformCallGuard}，按支付平台和{@link MerchantContext#current()}限流和熔断，
+ * {@link PlatformCallGuard#isGuarded(String)}为false的本地方法直接调用。
+ * 只能代理接口，工厂没有该方法或其返回类型不是接口时代理工厂失败
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public final class GuardedPayFactory {
+
+    /**
+     * 按支付平台创建Pay对象的工厂方法
+     */
+    static final String CREATE_PAY_METHOD = "createPay";
+
+    private GuardedPayFactory() {
+    }
+
+
+    /**
+     * 代理Pay工厂
+     *
+     * @param factoryType 工厂接口
+     * @param factory     原工厂
+     * @param guard       调用保护
+     * @return 代理后的工厂
+     * @throws IllegalStateException 工厂没有{@code createPay(int)}方法或其返回类型不是接口
+     */
+    @SuppressWarnings("unchecked")
+    public static <F> F wrap(Class<F> factoryType, F factory, PlatformCallGuard guard) {
+        Method createPay;
+        try {
+            createPay = factoryType.getMethod(CREATE_PAY_METHOD, int.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(factoryType.getName() + "没有" + CREATE_PAY_METHOD
+                    + "(int)方法，无法对其调用限流和熔断，请关闭api-guard.enabled", e);
+        }
+        Class<?> payType = createPay.getReturnType();
+        if (!payType.isInterface()) {
+            throw new IllegalStateException(factoryType.getName() + "#" + CREATE_PAY_METHOD
+                    + "的返回类型" + payType.getName() + "不是接口，无法对其调用限流和熔断，请关闭api-guard.enabled");
+        }
+        return (F) Proxy.newProxyInstance(
+                factoryType.getClassLoader(),
+                new Class<?>[]{factoryType},
+                (proxy, method, args) -> {
+                    Object result = invoke(factory, method, args);
+                    if (result == null || !method.equals(createPay)) {
+                        return result;
+                    }
+                    return Proxy.newProxyInstance(payType.getClassLoader(), new Class<?>[]{payType}, new GuardedPay(result, (Integer) args[0], guard));
+                }
+        );
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+
+    private static final class GuardedPay implements InvocationHandler {
+
+        private final Object pay;
+
+        private final int payPlatform;
+
+        private final PlatformCallGuard guard;
+
+        private GuardedPay(Object pay, int payPlatform, PlatformCallGuard guard) {
+            this.pay = pay;
+            this.payPlatform = payPlatform;
+            this.guard = guard;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (method.getDeclaringClass() == Object.class || !guard.isGuarded(method.getName())) {
+                return GuardedPayFactory.invoke(pay, method, args);
+            }
+            return guard.call(payPlatform, MerchantContext.current(), () -> {
+                try {
+                    return method.invoke(pay, args);
+                } catch (InvocationTargetException e) {
+                    Throwable target = e.getTargetException();
+                    if (target instanceof Exception) {
+                        throw (Exception) target;
+                    }
+                    throw (Error) target;
+                }
+            });
+        }
+    }
+}
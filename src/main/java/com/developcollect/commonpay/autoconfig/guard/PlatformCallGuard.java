@@ -0,0 +1,205 @@
+package com.developcollect.commonpay.autoconfig.guard;
+
+import org.springframework.util.PatternMatchUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 支付平台接口调用保护
+ * 按支付平台和商户分别限流和熔断，同一商户在支付平台的QPS限制是独立的。
+ * 令牌不足时最多等待{@code maxWait}毫秒，仍不足或熔断打开时抛出{@link CallRejectedException}，调用不会发出。
+ * 只有网络异常和支付平台的限流错误计入熔断，业务异常(参数错误、订单状态不符等)说明支付平台可用，不计入。
+ * 只在本地生成结果的方法(如生成支付页面表单)不经过限流和熔断
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class PlatformCallGuard {
+
+    private final Map<Integer, Double> platformQps;
+
+    private final double defaultQps;
+
+    private final int burst;
+
+    private final long maxWait;
+
+    private final int failureThreshold;
+
+    private final long openDuration;
+
+    /**
+     * 不经过限流和熔断的方法名，支持*通配符
+     */
+    private final String[] localMethods;
+
+    /**
+     * 支付平台的限流错误码，异常信息中含有时计入熔断
+     */
+    private final List<String> throttleCodes;
+
+    private final ConcurrentMap<String, Guard> guards = new ConcurrentHashMap<>();
+
+    private final LongAdder rateLimitedCount = new LongAdder();
+
+    private final LongAdder circuitRejectedCount = new LongAdder();
+
+    private final LongAdder queuedCount = new LongAdder();
+
+
+    /**
+     * @param platformQps      支付平台每个商户的QPS
+     * @param defaultQps       未单独配置的支付平台每个商户的QPS
+     * @param burst            允许突发的调用数
+     * @param maxWait          令牌不足时最多等待的时间，单位：ms
+     * @param failureThreshold 打开熔断的连续失败次数
+     * @param openDuration     熔断打开后到放行试探调用的时间，单位：ms
+     * @param localMethods     不经过限流和熔断的方法名，支持*通配符
+     * @param throttleCodes    支付平台的限流错误码
+     */
+    public PlatformCallGuard(Map<Integer, Double> platformQps, double defaultQps, int burst, long maxWait, int failureThreshold, long openDuration,
+                             Collection<String> localMethods, Collection<String> throttleCodes) {
+        this.platformQps = platformQps;
+        this.defaultQps = defaultQps;
+        this.burst = burst;
+        this.maxWait = maxWait;
+        this.failureThreshold = failureThreshold;
+        this.openDuration = openDuration;
+        this.localMethods = localMethods.toArray(new String[0]);
+        this.throttleCodes = new ArrayList<>(throttleCodes);
+    }
+
+
+    /**
+     * 方法是否需要经过限流和熔断
+     *
+     * @param methodName Pay对象的方法名
+     */
+    public boolean isGuarded(String methodName) {
+        return !PatternMatchUtils.simpleMatch(localMethods, methodName);
+    }
+
+
+    /**
+     * 在限流和熔断保护下调用支付平台接口
+     *
+     * @param payPlatform 支付平台
+     * @param merchantId  商户id，为null时表示默认商户
+     * @param call        调用
+     * @return 调用的返回值
+     * @throws CallRejectedException 被限流或熔断拒绝
+     */
+    public <T> T call(int payPlatform, String merchantId, Callable<T> call) throws Exception {
+        String key = merchantId == null ? String.valueOf(payPlatform) : payPlatform + ":" + merchantId;
+        Guard guard = guards.computeIfAbsent(key, k -> new Guard(payPlatform));
+        if (!guard.breaker.tryAcquire()) {
+            circuitRejectedCount.increment();
+            throw new CallRejectedException("支付平台[" + key + "]调用已熔断", true);
+        }
+
+        long waited;
+        try {
+            waited = guard.bucket.acquire(maxWait);
+        } catch (InterruptedException e) {
+            // 未发出调用，不计入熔断
+            guard.breaker.release();
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+        if (waited < 0) {
+            guard.breaker.release();
+            rateLimitedCount.increment();
+            throw new CallRejectedException("支付平台[" + key + "]调用超过限流", false);
+        }
+        if (waited > 0) {
+            queuedCount.increment();
+        }
+
+        try {
+            T result = call.call();
+            guard.breaker.onSuccess();
+            return result;
+        } catch (Exception e) {
+            if (isPlatformFailure(e)) {
+                guard.breaker.onFailure();
+            } else {
+                // 支付平台已正常响应
+                guard.breaker.onSuccess();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 是否为网络异常或支付平台的限流错误
+     */
+    private boolean isPlatformFailure(Throwable e) {
+        // 限制深度，避免循环的cause
+        Throwable cause = e;
+        for (int depth = 0; cause != null && depth < 16; depth++, cause = cause.getCause()) {
+            if (cause instanceof IOException) {
+                return true;
+            }
+            String message = cause.getMessage();
+            if (message == null) {
+                continue;
+            }
+            for (String code : throttleCodes) {
+                if (message.contains(code)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * 累计被限流拒绝的调用数
+     */
+    public long getRateLimitedCount() {
+        return rateLimitedCount.sum();
+    }
+
+    /**
+     * 累计被熔断拒绝的调用数
+     */
+    public long getCircuitRejectedCount() {
+        return circuitRejectedCount.sum();
+    }
+
+    /**
+     * 累计等待令牌后发出的调用数
+     */
+    public long getQueuedCount() {
+        return queuedCount.sum();
+    }
+
+    /**
+     * 熔断打开的支付平台和商户数
+     */
+    public long getOpenCircuitCount() {
+        return guards.values().stream().filter(guard -> guard.breaker.isOpen()).count();
+    }
+
+
+    private final class Guard {
+
+        private final TokenBucket bucket;
+
+        private final CircuitBreaker breaker;
+
+        private Guard(int payPlatform) {
+            this.bucket = new TokenBucket(platformQps.getOrDefault(payPlatform, defaultQps), burst);
+            this.breaker = new CircuitBreaker(failureThreshold, openDuration);
+        }
+    }
+}
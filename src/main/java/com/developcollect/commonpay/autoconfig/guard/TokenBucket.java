@@ -0,0 +1,76 @@
+package com.developcollect.commonpay.autoconfig.guard;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 令牌桶
+ * 令牌按固定速率生成，最多积攒{@code burst}个，空闲后允许短时突发。
+ * 令牌不足时预约下一个令牌并等待，预计等待超过上限时直接拒绝
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class TokenBucket {
+
+    private final long intervalNanos;
+
+    private final double burst;
+
+    private double storedPermits;
+
+    /**
+     * 下一个令牌可用的时间
+     */
+    private long nextFreeNanos;
+
+
+    /**
+     * @param permitsPerSecond 每秒生成的令牌数
+     * @param burst            最多积攒的令牌数
+     */
+    public TokenBucket(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be > 0");
+        }
+        this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+        this.burst = Math.max(1, burst);
+        this.storedPermits = this.burst;
+        this.nextFreeNanos = System.nanoTime();
+    }
+
+
+    /**
+     * 取得一个令牌
+     *
+     * @param maxWaitMillis 最多等待的时间，单位：ms
+     * @return 等待的时间，单位：ns，超过等待上限时返回-1且不消耗令牌
+     */
+    public long acquire(long maxWaitMillis) throws InterruptedException {
+        long waitNanos = reserve(TimeUnit.MILLISECONDS.toNanos(maxWaitMillis));
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+        return waitNanos;
+    }
+
+    private synchronized long reserve(long maxWaitNanos) {
+        long now = System.nanoTime();
+        if (now > nextFreeNanos) {
+            storedPermits = Math.min(burst, storedPermits + (double) (now - nextFreeNanos) / intervalNanos);
+            nextFreeNanos = now;
+        }
+        if (storedPermits >= 1) {
+            storedPermits -= 1;
+            return 0;
+        }
+        // 令牌不足时本次调用等到补足一个令牌，排队的调用依次顺延
+        long readyNanos = nextFreeNanos + (long) ((1 - storedPermits) * intervalNanos);
+        long waitNanos = readyNanos - now;
+        if (waitNanos > maxWaitNanos) {
+            return -1;
+        }
+        storedPermits = 0;
+        nextFreeNanos = readyNanos;
+        return waitNanos;
+    }
+}
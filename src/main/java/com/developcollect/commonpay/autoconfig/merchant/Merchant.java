@@ -0,0 +1,59 @@
+package com.developcollect.commonpay.autoconfig.merchant;
+
+import com.developcollect.commonpay.autoconfig.verify.AliPayNotifyVerifier;
+import com.developcollect.commonpay.autoconfig.verify.WxPayNotifyVerifier;
+import com.developcollect.commonpay.config.AliPayConfig;
+import com.developcollect.commonpay.config.WxPayConfig;
+
+/**
+ * 商户
+ * 每个商户持有自己的验签器，公钥、HMAC密钥等缓存不会因为多个商户交替使用而反复失效
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class Merchant {
+
+    private final String id;
+
+    private final AliPayConfig aliPayConfig;
+
+    private final WxPayConfig wxPayConfig;
+
+    private final AliPayNotifyVerifier aliPayNotifyVerifier = new AliPayNotifyVerifier();
+
+    private final WxPayNotifyVerifier wxPayNotifyVerifier = new WxPayNotifyVerifier();
+
+
+    /**
+     * @param id           商户id
+     * @param aliPayConfig 支付宝配置，未配置时为null
+     * @param wxPayConfig  微信支付配置，未配置时为null
+     */
+    public Merchant(String id, AliPayConfig aliPayConfig, WxPayConfig wxPayConfig) {
+        this.id = id;
+        this.aliPayConfig = aliPayConfig;
+        this.wxPayConfig = wxPayConfig;
+    }
+
+
+    public String getId() {
+        return id;
+    }
+
+    public AliPayConfig getAliPayConfig() {
+        return aliPayConfig;
+    }
+
+    public WxPayConfig getWxPayConfig() {
+        return wxPayConfig;
+    }
+
+    public AliPayNotifyVerifier getAliPayNotifyVerifier() {
+        return aliPayNotifyVerifier;
+    }
+
+    public WxPayNotifyVerifier getWxPayNotifyVerifier() {
+        return wxPayNotifyVerifier;
+    }
+}
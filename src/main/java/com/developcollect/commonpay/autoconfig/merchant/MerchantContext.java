@@ -0,0 +1,71 @@
+package com.developcollect.commonpay.autoconfig.merchant;
+
+import java.util.function.Supplier;
+
+/**
+ * 当前商户
+ * 在{@link #call(String, Supplier)}内调用common-pay的支付、退款等接口时，
+ * {@link MerchantRoutingSupplier}会返回该商户的支付配置；未指定商户时使用默认配置
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public final class MerchantContext {
+
+    /**
+     * 异步处理的通知中记录商户id的参数名
+     */
+    public static final String NOTIFY_PARAM = "_cpay_merchant_id";
+
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+
+    private MerchantContext() {
+    }
+
+
+    /**
+     * 当前商户id，未指定时返回null
+     */
+    public static String current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * 以指定商户的身份执行
+     *
+     * @param merchantId 商户id，为null时使用默认配置
+     * @param action     要执行的操作
+     * @return 操作的返回值
+     */
+    public static <T> T call(String merchantId, Supplier<T> action) {
+        String previous = CURRENT.get();
+        set(merchantId);
+        try {
+            return action.get();
+        } finally {
+            set(previous);
+        }
+    }
+
+    /**
+     * 以指定商户的身份执行
+     *
+     * @param merchantId 商户id，为null时使用默认配置
+     * @param action     要执行的操作
+     */
+    public static void run(String merchantId, Runnable action) {
+        call(merchantId, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+
+    private static void set(String merchantId) {
+        if (merchantId == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(merchantId);
+        }
+    }
+}
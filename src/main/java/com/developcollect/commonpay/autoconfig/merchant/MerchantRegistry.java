@@ -0,0 +1,72 @@
+package com.developcollect.commonpay.autoconfig.merchant;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * 商户注册表
+ * 商户在第一次使用时才创建支付配置和验签器，之后一直缓存
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class MerchantRegistry {
+
+    /**
+     * 没有配置任何商户的注册表
+     */
+    public static final MerchantRegistry EMPTY = new MerchantRegistry(Collections.emptySet(), id -> null);
+
+    private final Set<String> merchantIds;
+
+    private final Function<String, Merchant> merchantFactory;
+
+    private final ConcurrentMap<String, Merchant> merchants = new ConcurrentHashMap<>();
+
+
+    /**
+     * @param merchantIds     已配置的商户id
+     * @param merchantFactory 商户创建器
+     */
+    public MerchantRegistry(Set<String> merchantIds, Function<String, Merchant> merchantFactory) {
+        this.merchantIds = Collections.unmodifiableSet(new LinkedHashSet<>(merchantIds));
+        this.merchantFactory = merchantFactory;
+    }
+
+
+    /**
+     * 取得商户
+     *
+     * @param merchantId 商户id
+     * @return 商户，未配置该商户时返回null
+     */
+    public Merchant get(String merchantId) {
+        if (merchantId == null || !merchantIds.contains(merchantId)) {
+            return null;
+        }
+        return merchants.computeIfAbsent(merchantId, merchantFactory);
+    }
+
+    /**
+     * 取得商户，未配置该商户时抛出异常
+     */
+    public Merchant require(String merchantId) {
+        Merchant merchant = get(merchantId);
+        if (merchant == null) {
+            throw new IllegalArgumentException("merchant not found: " + merchantId);
+        }
+        return merchant;
+    }
+
+    public Set<String> getMerchantIds() {
+        return merchantIds;
+    }
+
+    public boolean isEmpty() {
+        return merchantIds.isEmpty();
+    }
+}
@@ -0,0 +1,51 @@
+package com.developcollect.commonpay.autoconfig.merchant;
+
+import com.developcollect.commonpay.config.AbstractPayConfig;
+
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 按当前商户路由的支付配置提供器
+ * 注册到GlobalConfig后，common-pay取支付配置时会按{@link MerchantContext#current()}返回对应商户的配置
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class MerchantRoutingSupplier<T extends AbstractPayConfig> implements Supplier<T> {
+
+    private final Supplier<T> defaultSupplier;
+
+    private final MerchantRegistry merchantRegistry;
+
+    private final Function<Merchant, T> configGetter;
+
+
+    /**
+     * @param defaultSupplier  未指定商户时使用的配置提供器，可以为null
+     * @param merchantRegistry 商户注册表
+     * @param configGetter     从商户中取得对应支付平台的配置
+     */
+    public MerchantRoutingSupplier(Supplier<T> defaultSupplier, MerchantRegistry merchantRegistry, Function<Merchant, T> configGetter) {
+        this.defaultSupplier = defaultSupplier;
+        this.merchantRegistry = merchantRegistry;
+        this.configGetter = configGetter;
+    }
+
+
+    @Override
+    public T get() {
+        String merchantId = MerchantContext.current();
+        if (merchantId == null) {
+            if (defaultSupplier == null) {
+                throw new IllegalStateException("未指定商户，且没有默认的支付配置");
+            }
+            return defaultSupplier.get();
+        }
+        T config = configGetter.apply(merchantRegistry.require(merchantId));
+        if (config == null) {
+            throw new IllegalStateException("商户[" + merchantId + "]未配置该支付平台");
+        }
+        return config;
+    }
+}
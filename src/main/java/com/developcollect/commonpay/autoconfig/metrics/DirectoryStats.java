@@ -0,0 +1,79 @@
+package com.developcollect.commonpay.autoconfig.metrics;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * 目录统计
+ * 统计结果缓存一段时间，避免每次采集指标都遍历目录
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Slf4j
+class DirectoryStats {
+
+    private static final long REFRESH_INTERVAL = 60 * 1000L;
+
+    private final Path directory;
+
+    private long fileCount;
+
+    private long totalBytes;
+
+    private long refreshedAt;
+
+    DirectoryStats(Path directory) {
+        this.directory = directory;
+    }
+
+    synchronized double getFileCount() {
+        refreshIfExpired();
+        return fileCount;
+    }
+
+    synchronized double getTotalBytes() {
+        refreshIfExpired();
+        return totalBytes;
+    }
+
+    private void refreshIfExpired() {
+        long now = System.currentTimeMillis();
+        if (now - refreshedAt < REFRESH_INTERVAL) {
+            return;
+        }
+        refreshedAt = now;
+        if (!Files.isDirectory(directory)) {
+            fileCount = 0;
+            totalBytes = 0;
+            return;
+        }
+        long[] counter = new long[2];
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    counter[0]++;
+                    counter[1] += attrs.size();
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                    // 统计过程中文件可能被删除
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+            fileCount = counter[0];
+            totalBytes = counter[1];
+        } catch (IOException e) {
+            log.debug("统计目录大小失败: {}", directory, e);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.developcollect.commonpay.autoconfig.metrics;
+
+import com.developcollect.commonpay.autoconfig.artifact.ArtifactJanitor;
+import com.developcollect.commonpay.autoconfig.guard.PlatformCallGuard;
+import com.developcollect.commonpay.autoconfig.notify.NotifyDeduplicator;
+import com.developcollect.commonpay.autoconfig.query.ActiveQueryEngine;
+import com.developcollect.commonpay.autoconfig.query.PendingQuerySource;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.nio.file.Path;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于Micrometer的异步通知指标记录器
+ * <ul>
+ *     <li>cpay.notify：各阶段耗时，标签为platform、type、stage、outcome</li>
+ *     <li>cpay.notify.dedup：重复通知过滤命中/未命中次数</li>
+ *     <li>cpay.temp.files、cpay.temp.bytes：临时文件目录中的文件数和字节数</li>
+ *     <li>cpay.temp.reclaimed.files、cpay.temp.reclaimed.bytes：过期资源文件清理累计删除的文件数和字节数</li>
+ *     <li>cpay.query.sweep.duration：主动查询上一次全量取出单据的耗时</li>
+ *     <li>cpay.query.backlog：主动查询各来源未确认且未过期的单据数，标签为source</li>
+ *     <li>cpay.query.scheduled：主动查询等待查询的单据数</li>
+ *     <li>cpay.query.calls：主动查询累计查询支付平台的次数</li>
+ *     <li>cpay.query.result：主动查询累计确认/失败的次数</li>
+ *     <li>cpay.api.rejected：支付平台接口调用被限流/熔断拒绝的次数，标签为reason</li>
+ *     <li>cpay.api.queued：支付平台接口调用等待令牌后发出的次数</li>
+ *     <li>cpay.api.circuit.open：熔断打开的支付平台和商户数</li>
+ * </ul>
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class MicrometerNotifyMetrics implements NotifyMetrics {
+
+    private final MeterRegistry registry;
+
+    /**
+     * 已注册的耗时指标，key为各标签值拼接，避免每次记录都重新注册
+     */
+    private final ConcurrentMap<String, Timer> timers = new ConcurrentHashMap<>();
+
+    public MicrometerNotifyMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public void record(String platform, String type, String stage, String outcome, long nanos) {
+        String key = platform + '|' + type + '|' + stage + '|' + outcome;
+        Timer timer = timers.get(key);
+        if (timer == null) {
+            timer = timers.computeIfAbsent(key, k -> Timer.builder("cpay.notify")
+                    .tag("platform", platform)
+                    .tag("type", type)
+                    .tag("stage", stage)
+                    .tag("outcome", outcome)
+                    .register(registry));
+        }
+        timer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 注册重复通知过滤器的命中指标
+     */
+    public void bindDeduplicator(NotifyDeduplicator deduplicator) {
+        FunctionCounter.builder("cpay.notify.dedup", deduplicator, NotifyDeduplicator::getHitCount)
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("cpay.notify.dedup", deduplicator, NotifyDeduplicator::getMissCount)
+                .tag("result", "miss")
+                .register(registry);
+        Gauge.builder("cpay.notify.dedup.size", deduplicator, NotifyDeduplicator::getLocalSize)
+                .register(registry);
+    }
+
+    /**
+     * 注册临时文件目录大小指标
+     *
+     * @param platform  支付平台
+     * @param directory 临时文件目录
+     */
+    public void bindTempDirectory(String platform, Path directory) {
+        // 统计对象只被指标引用，Gauge默认弱引用，需要强引用否则GC后变为NaN
+        DirectoryStats stats = new DirectoryStats(directory);
+        Gauge.builder("cpay.temp.files", stats, DirectoryStats::getFileCount)
+                .tag("platform", platform)
+                .strongReference(true)
+                .register(registry);
+        Gauge.builder("cpay.temp.bytes", stats, DirectoryStats::getTotalBytes)
+                .tag("platform", platform)
+                .baseUnit("bytes")
+                .strongReference(true)
+                .register(registry);
+    }
+
+    /**
+     * 注册过期资源文件清理指标
+     */
+    public void bindJanitor(ArtifactJanitor janitor) {
+        FunctionCounter.builder("cpay.temp.reclaimed.files", janitor, ArtifactJanitor::getReclaimedFiles)
+                .register(registry);
+        FunctionCounter.builder("cpay.temp.reclaimed.bytes", janitor, ArtifactJanitor::getReclaimedBytes)
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    /**
+     * 注册主动查询指标
+     */
+    public void bindActiveQueryEngine(ActiveQueryEngine engine) {
+        Gauge.builder("cpay.query.sweep.duration", engine, ActiveQueryEngine::getLastSweepMillis)
+                .baseUnit("milliseconds")
+                .register(registry);
+        for (PendingQuerySource<?> source : engine.getSources()) {
+            String name = source.getName();
+            Gauge.builder("cpay.query.backlog", engine, e -> e.getBacklog(name))
+                    .tag("source", name)
+                    .register(registry);
+        }
+        Gauge.builder("cpay.query.scheduled", engine, ActiveQueryEngine::getScheduledCount)
+                .register(registry);
+        FunctionCounter.builder("cpay.query.calls", engine, ActiveQueryEngine::getQueriedCount)
+                .register(registry);
+        FunctionCounter.builder("cpay.query.result", engine, ActiveQueryEngine::getConfirmedCount)
+                .tag("result", "confirmed")
+                .register(registry);
+        FunctionCounter.builder("cpay.query.result", engine, ActiveQueryEngine::getFailedCount)
+                .tag("result", "failed")
+                .register(registry);
+    }
+
+    /**
+     * 注册支付平台接口调用保护的指标
+     */
+    public void bindPlatformCallGuard(PlatformCallGuard guard) {
+        FunctionCounter.builder("cpay.api.rejected", guard, PlatformCallGuard::getRateLimitedCount)
+                .tag("reason", "rate")
+                .register(registry);
+        FunctionCounter.builder("cpay.api.rejected", guard, PlatformCallGuard::getCircuitRejectedCount)
+                .tag("reason", "circuit")
+                .register(registry);
+        FunctionCounter.builder("cpay.api.queued", guard, PlatformCallGuard::getQueuedCount)
+                .register(registry);
+        Gauge.builder("cpay.api.circuit.open", guard, PlatformCallGuard::getOpenCircuitCount)
+                .register(registry);
+    }
+}
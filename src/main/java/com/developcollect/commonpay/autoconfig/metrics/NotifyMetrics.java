@@ -0,0 +1,66 @@
+package com.developcollect.commonpay.autoconfig.metrics;
+
+/**
+ * 异步通知指标记录器
+ * classpath中存在Micrometer时由{@link MicrometerNotifyMetrics}实现，否则不记录
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public interface NotifyMetrics {
+
+    String PLATFORM_ALI_PAY = "alipay";
+    String PLATFORM_WX_PAY = "wxpay";
+
+    String TYPE_PAY = "pay";
+    String TYPE_REFUND = "refund";
+
+    /**
+     * 整个通知请求
+     */
+    String STAGE_TOTAL = "total";
+    /**
+     * 参数解析
+     */
+    String STAGE_PARSE = "parse";
+    /**
+     * 验签或解密
+     */
+    String STAGE_VERIFY = "verify";
+    /**
+     * 结果广播
+     */
+    String STAGE_BROADCAST = "broadcast";
+    /**
+     * 临时文件清除
+     */
+    String STAGE_CLEAR_TEMP_FILE = "clear_temp_file";
+
+    String OUTCOME_SUCCESS = "success";
+    String OUTCOME_FAILURE = "failure";
+    String OUTCOME_ERROR = "error";
+    /**
+     * 重复通知，直接应答
+     */
+    String OUTCOME_DUPLICATE = "duplicate";
+    /**
+     * 已写入异步通知日志，稍后处理
+     */
+    String OUTCOME_QUEUED = "queued";
+
+    NotifyMetrics NOOP = (platform, type, stage, outcome, nanos) -> {
+    };
+
+
+    /**
+     * 记录一个阶段的耗时
+     *
+     * @param platform 支付平台
+     * @param type     通知类型，支付或退款
+     * @param stage    阶段
+     * @param outcome  结果
+     * @param nanos    耗时，单位：ns
+     */
+    void record(String platform, String type, String stage, String outcome, long nanos);
+
+}
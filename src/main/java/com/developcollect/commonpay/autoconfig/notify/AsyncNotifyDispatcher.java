@@ -0,0 +1,276 @@
+package com.developcollect.commonpay.autoconfig.notify;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步通知分发器
+ * 验签通过的通知先写入{@link NotifyJournal}，随即向支付平台返回成功，
+ * 再由有界的工作线程从队列中取出通知交给{@link NotifyHandler}处理。
+ * 处理失败的通知按指数退避重试，超过最大次数后移入死信文件不再重试，进程重启后未处理完成的通知会被重新投递。
+ * 开启重复通知过滤时，通知在处理成功后才记录为已处理，移入死信文件时释放占用，支付平台重新推送时可以再次处理
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Slf4j
+public class AsyncNotifyDispatcher implements SmartLifecycle {
+
+    private final NotifyJournal journal;
+
+    private final int workerThreads;
+
+    private final long retryInitialDelay;
+
+    private final long retryMaxDelay;
+
+    private final int maxAttempts;
+
+    /**
+     * 重复通知过滤器，未开启时为null
+     */
+    private final NotifyDeduplicator notifyDeduplicator;
+
+    /**
+     * 待处理队列，队列满时通知只保留在日志中，由定时巡检重新入队
+     */
+    private final BlockingQueue<NotifyRecord> queue;
+
+    /**
+     * 未处理完成的通知，包括已入队、处理中和等待重试的
+     */
+    private final Map<Long, NotifyRecord> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 已入队、处理中或等待重试的通知id
+     */
+    private final Map<Long, Boolean> inFlight = new ConcurrentHashMap<>();
+
+    private final Map<NotifyType, NotifyHandler> handlers = new EnumMap<>(NotifyType.class);
+
+    private ScheduledExecutorService scheduler;
+
+    private Thread[] workers;
+
+    private volatile boolean running;
+
+
+    /**
+     * @param journal            通知日志
+     * @param workerThreads      处理线程数
+     * @param queueCapacity      内存队列容量
+     * @param retryInitialDelay  首次重试间隔，单位：ms
+     * @param retryMaxDelay      最大重试间隔，单位：ms
+     * @param maxAttempts        最多处理次数，超过后移入死信文件
+     * @param notifyDeduplicator 重复通知过滤器，可为null
+     */
+    public AsyncNotifyDispatcher(NotifyJournal journal, int workerThreads, int queueCapacity, long retryInitialDelay, long retryMaxDelay, int maxAttempts,
+                                 NotifyDeduplicator notifyDeduplicator) {
+        this.journal = journal;
+        this.workerThreads = workerThreads;
+        this.retryInitialDelay = retryInitialDelay;
+        this.retryMaxDelay = retryMaxDelay;
+        this.maxAttempts = maxAttempts;
+        this.notifyDeduplicator = notifyDeduplicator;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+
+    /**
+     * 注册通知处理器
+     * 需要在容器启动完成前注册，启动后才开始投递日志中遗留的通知
+     */
+    public synchronized void registerHandler(NotifyType type, NotifyHandler handler) {
+        handlers.put(type, handler);
+    }
+
+    /**
+     * 提交一条已验签的通知
+     *
+     * @param type   通知类型
+     * @param params 通知参数
+     * @return 是否已持久化，返回false时调用方应同步处理
+     */
+    public boolean submit(NotifyType type, Map<String, String> params) {
+        if (!running) {
+            return false;
+        }
+        NotifyRecord record;
+        try {
+            record = journal.append(type, params);
+        } catch (IOException e) {
+            log.error("异步通知写入日志失败", e);
+            return false;
+        }
+        pending.put(record.getId(), record);
+        enqueue(record);
+        return true;
+    }
+
+
+    @Override
+    public synchronized void start() {
+        List<NotifyRecord> replay;
+        try {
+            replay = journal.open();
+        } catch (IOException e) {
+            throw new IllegalStateException("打开异步通知日志失败", e);
+        }
+
+        scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "cPay-notify-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        workers = new Thread[workerThreads];
+        running = true;
+        for (int i = 0; i < workerThreads; i++) {
+            workers[i] = new Thread(this::work, "cPay-notify-" + (i + 1));
+            workers[i].setDaemon(true);
+            workers[i].start();
+        }
+
+        if (!replay.isEmpty()) {
+            log.info("重新投递未处理完成的异步通知：{}条", replay.size());
+        }
+        for (NotifyRecord record : replay) {
+            pending.put(record.getId(), record);
+            enqueue(record);
+        }
+        // 定时将因队列已满而未入队的通知重新入队
+        scheduler.scheduleWithFixedDelay(this::requeue, retryInitialDelay, retryInitialDelay, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (workers != null) {
+            for (Thread worker : workers) {
+                worker.interrupt();
+            }
+        }
+        // 未处理完成的通知仍在日志中，下次启动时重新投递
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.warn("关闭异步通知日志失败", e);
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 尽量晚启动、尽量早停止，保证处理器都已注册
+     */
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE - 100;
+    }
+
+
+    private void enqueue(NotifyRecord record) {
+        if (inFlight.putIfAbsent(record.getId(), Boolean.TRUE) != null) {
+            return;
+        }
+        if (!queue.offer(record)) {
+            inFlight.remove(record.getId());
+        }
+    }
+
+    private void requeue() {
+        for (NotifyRecord record : pending.values()) {
+            if (!inFlight.containsKey(record.getId())) {
+                enqueue(record);
+            }
+        }
+    }
+
+    private void work() {
+        while (running) {
+            NotifyRecord record;
+            try {
+                record = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            process(record);
+        }
+    }
+
+    private void process(NotifyRecord record) {
+        NotifyHandler handler;
+        synchronized (this) {
+            handler = handlers.get(record.getType());
+        }
+
+        boolean success = false;
+        if (handler == null) {
+            log.warn("未找到异步通知处理器：{}", record.getType());
+        } else {
+            try {
+                success = handler.handle(record.getParams());
+            } catch (Exception e) {
+                log.error("异步通知处理失败：{}", record.getType(), e);
+            }
+        }
+
+        if (success) {
+            try {
+                journal.ack(record.getId());
+            } catch (IOException e) {
+                // 确认写入失败时重启后会被再次投递，由广播器保证幂等
+                log.warn("异步通知确认写入失败：{}", record.getId(), e);
+            }
+            if (notifyDeduplicator != null) {
+                notifyDeduplicator.markProcessed(record.getType(), record.getParams());
+            }
+            pending.remove(record.getId());
+            inFlight.remove(record.getId());
+            return;
+        }
+
+        int attempts = record.incrementAttempts();
+        if (attempts >= maxAttempts) {
+            log.error("异步通知处理{}次仍失败，移入死信文件不再重试：{} {}", attempts, record.getType(), record.getParams());
+            try {
+                journal.deadLetter(record);
+                if (notifyDeduplicator != null) {
+                    notifyDeduplicator.release(record.getType(), record.getParams());
+                }
+                pending.remove(record.getId());
+                inFlight.remove(record.getId());
+                return;
+            } catch (IOException e) {
+                // 写入失败时仍留在日志中，继续按最大间隔重试
+                log.warn("异步通知写入死信文件失败：{}", record.getId(), e);
+            }
+        }
+        long delay = Math.min(retryMaxDelay, retryInitialDelay << Math.min(attempts - 1, 20));
+        log.warn("异步通知处理失败，{}ms后第{}次重试：{}", delay, attempts, record.getId());
+        if (running) {
+            // 等待重试期间仍视为处理中，避免被定时巡检重复入队
+            scheduler.schedule(() -> {
+                inFlight.remove(record.getId());
+                enqueue(record);
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+    }
+}
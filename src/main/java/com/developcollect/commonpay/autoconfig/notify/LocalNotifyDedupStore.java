@@ -0,0 +1,85 @@
+package com.developcollect.commonpay.autoconfig.notify;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 本地已处理通知存储
+ * 容量有界，超出容量时淘汰最早记录的通知，过期的记录在访问时移除
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class LocalNotifyDedupStore implements NotifyDedupStore {
+
+    /**
+     * 通知标识与记录
+     */
+    private final Map<String, Entry> entries;
+
+    public LocalNotifyDedupStore(int maxSize) {
+        this.entries = new LinkedHashMap<String, Entry>(Math.min(maxSize, 1024), 0.75f) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    @Override
+    public synchronized boolean claim(String key, long ttl) {
+        if (get(key) != null) {
+            return false;
+        }
+        entries.put(key, new Entry(System.currentTimeMillis() + ttl, false));
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isProcessed(String key) {
+        Entry entry = get(key);
+        return entry != null && entry.processed;
+    }
+
+    @Override
+    public synchronized void save(String key, long ttl) {
+        // 先移除再放入，保证重新记录的通知排在最后
+        entries.remove(key);
+        entries.put(key, new Entry(System.currentTimeMillis() + ttl, true));
+    }
+
+    @Override
+    public synchronized void release(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.processed) {
+            entries.remove(key);
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expireAt < System.currentTimeMillis()) {
+            entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+
+    private static class Entry {
+        private final long expireAt;
+        private final boolean processed;
+
+        private Entry(long expireAt, boolean processed) {
+            this.expireAt = expireAt;
+            this.processed = processed;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.developcollect.commonpay.autoconfig.notify;
+
+/**
+ * 已处理通知存储
+ * 用于在多个节点之间共享已处理通知的标识，可基于Redis等实现。
+ * 容器中存在该类型的bean时会作为共享存储接入{@link NotifyDeduplicator}。
+ * 通知先被占用再处理，同一通知同时只有一个线程或节点处理；处理成功后记录为已处理，失败后释放占用
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public interface NotifyDedupStore {
+
+    /**
+     * 占用通知
+     * 标识不存在时记录为处理中并返回true，已存在(处理中或已处理)时返回false。
+     * 必须原子执行，如Redis的{@code SET key PROCESSING NX PX ttl}
+     *
+     * @param key 通知标识
+     * @param ttl 占用的保留时间，单位：ms，节点在处理中途退出时超过该时间后可以重新处理
+     * @return 是否占用成功
+     */
+    boolean claim(String key, long ttl);
+
+    /**
+     * 通知是否已处理完成，处理中的通知返回false
+     *
+     * @param key 通知标识
+     * @return 是否已处理
+     */
+    boolean isProcessed(String key);
+
+    /**
+     * 记录通知已处理
+     *
+     * @param key 通知标识
+     * @param ttl 保留时间，单位：ms
+     */
+    void save(String key, long ttl);
+
+    /**
+     * 释放处理失败的通知的占用，支付平台重新推送时可以再次处理
+     *
+     * @param key 通知标识
+     */
+    void release(String key);
+
+}
@@ -0,0 +1,203 @@
+package com.developcollect.commonpay.autoconfig.notify;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 重复通知过滤器
+ * 支付平台在收到成功应答前会多次推送同一通知，已处理过的通知直接应答成功，不再广播。
+ * 处理前先在本地存储、再在共享存储中占用通知，同一通知同时只有一个线程或节点处理，
+ * 其他线程或节点收到正在处理的通知时应答失败，由支付平台稍后重新推送
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Slf4j
+public class NotifyDeduplicator {
+
+    private final LocalNotifyDedupStore localStore;
+
+    /**
+     * 共享存储，可为null
+     */
+    private final NotifyDedupStore sharedStore;
+
+    /**
+     * 已处理通知的保留时间，单位：ms
+     */
+    private final long ttl;
+
+    /**
+     * 处理中的通知的占用时间，单位：ms
+     */
+    private final long claimTtl;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+
+    /**
+     * @param localStore  本地存储
+     * @param sharedStore 共享存储，可为null
+     * @param ttl         已处理通知的保留时间，单位：ms
+     * @param claimTtl    处理中的通知的占用时间，单位：ms
+     */
+    public NotifyDeduplicator(LocalNotifyDedupStore localStore, NotifyDedupStore sharedStore, long ttl, long claimTtl) {
+        this.localStore = localStore;
+        this.sharedStore = sharedStore;
+        this.ttl = ttl;
+        this.claimTtl = claimTtl;
+    }
+
+
+    /**
+     * 占用通知，占用成功后必须调用{@link #markProcessed}或{@link #release}
+     *
+     * @param type   通知类型
+     * @param params 通知参数
+     * @return 占用结果，缺少去重字段的通知总是占用成功
+     */
+    public Claim claim(NotifyType type, Map<String, String> params) {
+        String key = key(type, params);
+        if (key == null) {
+            return Claim.CLAIMED;
+        }
+        if (!localStore.claim(key, claimTtl)) {
+            hits.increment();
+            return localStore.isProcessed(key) ? Claim.DUPLICATE : Claim.PROCESSING;
+        }
+        if (sharedStore != null) {
+            try {
+                if (!sharedStore.claim(key, claimTtl)) {
+                    hits.increment();
+                    if (sharedStore.isProcessed(key)) {
+                        localStore.save(key, ttl);
+                        return Claim.DUPLICATE;
+                    }
+                    localStore.release(key);
+                    return Claim.PROCESSING;
+                }
+            } catch (Exception e) {
+                // 共享存储不可用时只按本地存储去重
+                log.warn("占用共享通知存储失败", e);
+            }
+        }
+        misses.increment();
+        return Claim.CLAIMED;
+    }
+
+    /**
+     * 记录通知已处理
+     *
+     * @param type   通知类型
+     * @param params 通知参数
+     */
+    public void markProcessed(NotifyType type, Map<String, String> params) {
+        String key = key(type, params);
+        if (key == null) {
+            return;
+        }
+        localStore.save(key, ttl);
+        if (sharedStore != null) {
+            try {
+                sharedStore.save(key, ttl);
+            } catch (Exception e) {
+                log.warn("写入共享通知存储失败", e);
+            }
+        }
+    }
+
+    /**
+     * 释放处理失败的通知，支付平台重新推送时再次处理
+     *
+     * @param type   通知类型
+     * @param params 通知参数
+     */
+    public void release(NotifyType type, Map<String, String> params) {
+        String key = key(type, params);
+        if (key == null) {
+            return;
+        }
+        localStore.release(key);
+        if (sharedStore != null) {
+            try {
+                sharedStore.release(key);
+            } catch (Exception e) {
+                log.warn("释放共享通知存储失败", e);
+            }
+        }
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public int getLocalSize() {
+        return localStore.size();
+    }
+
+
+    /**
+     * 生成通知标识
+     * 支付宝同一笔交易会推送不同交易状态的通知，所以标识中包含交易状态；
+     * 微信退款通知以商户退款单号和退款状态区分
+     *
+     * @return 通知标识，缺少必要字段时返回null，不参与去重
+     */
+    static String key(NotifyType type, Map<String, String> params) {
+        String outTradeNo = params.get("out_trade_no");
+        if (outTradeNo == null) {
+            return null;
+        }
+        switch (type) {
+            case ALI_PAY:
+                return join(type, outTradeNo, params.get("trade_no"), params.get("trade_status"));
+            case WX_PAY:
+                return join(type, outTradeNo, params.get("transaction_id"));
+            case WX_REFUND:
+                String outRefundNo = params.get("out_refund_no");
+                if (outRefundNo == null) {
+                    return null;
+                }
+                return join(type, outTradeNo, params.get("transaction_id"), outRefundNo, params.get("refund_status"));
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * 占用结果
+     */
+    public enum Claim {
+
+        /**
+         * 占用成功，需要处理
+         */
+        CLAIMED,
+
+        /**
+         * 已处理过，直接应答成功
+         */
+        DUPLICATE,
+
+        /**
+         * 其他线程或节点正在处理，应答失败由支付平台稍后重新推送
+         */
+        PROCESSING
+    }
+
+    private static String join(NotifyType type, String... parts) {
+        StringBuilder sb = new StringBuilder(96).append(type.name());
+        for (String part : parts) {
+            sb.append(':').append(part == null ? "" : part);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,23 @@
+package com.developcollect.commonpay.autoconfig.notify;
+
+import java.util.Map;
+
+/**
+ * 异步通知处理器
+ * 对已验签的通知参数进行转换和广播
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@FunctionalInterface
+public interface NotifyHandler {
+
+    /**
+     * 处理通知
+     *
+     * @param params 已验签的通知参数
+     * @return 是否处理成功，处理失败的通知会被重试
+     */
+    boolean handle(Map<String, String> params);
+
+}
@@ -0,0 +1,276 @@
+package com.developcollect.commonpay.autoconfig.notify;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 异步通知日志
+ * 只追加写的文本文件，每条通知写入一行 N记录，处理完成后追加一行 A记录。
+ * 重启时没有A记录的通知即为未处理完成的通知，会被重新投递。
+ * 文件超过阈值大小时重写文件，只保留未处理完成的通知。
+ * 多次处理仍失败的通知移入死信文件(notify.dead，格式相同)，不再重试，需要人工处理
+ * <pre>
+ * N	id	type	k1=v1&amp;k2=v2
+ * A	id
+ * </pre>
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Slf4j
+public class NotifyJournal implements Closeable {
+
+    private static final String JOURNAL_FILE_NAME = "notify.journal";
+    private static final String DEAD_LETTER_FILE_NAME = "notify.dead";
+    private static final String NEW = "N";
+    private static final String ACK = "A";
+    private static final char SEPARATOR = '\t';
+
+    private final Path journalFile;
+
+    private final Path deadLetterFile;
+
+    /**
+     * 每次追加后是否强制刷盘
+     */
+    private final boolean fsync;
+
+    /**
+     * 截断阈值，单位：byte
+     */
+    private final long compactThreshold;
+
+    private FileChannel channel;
+
+    private long nextId = 1;
+
+    /**
+     * 未处理完成的通知，重写文件时只保留这些
+     */
+    private final Map<Long, NotifyRecord> pending = new LinkedHashMap<>();
+
+    /**
+     * 上一次重写后的文件大小
+     */
+    private long compactedSize;
+
+
+    public NotifyJournal(File directory, boolean fsync, long compactThreshold) {
+        this.journalFile = directory.toPath().resolve(JOURNAL_FILE_NAME);
+        this.deadLetterFile = directory.toPath().resolve(DEAD_LETTER_FILE_NAME);
+        this.fsync = fsync;
+        this.compactThreshold = compactThreshold;
+    }
+
+
+    /**
+     * 打开日志，返回上次未处理完成的通知
+     * 打开时会重写日志文件，只保留未处理完成的通知
+     *
+     * @return 未处理完成的通知
+     */
+    public synchronized List<NotifyRecord> open() throws IOException {
+        Files.createDirectories(journalFile.getParent());
+        List<NotifyRecord> replay = replay();
+        pending.clear();
+        for (NotifyRecord record : replay) {
+            pending.put(record.getId(), record);
+        }
+        rewrite();
+        return replay;
+    }
+
+    /**
+     * 追加一条通知
+     *
+     * @param type   通知类型
+     * @param params 通知参数
+     * @return 追加的记录
+     */
+    public synchronized NotifyRecord append(NotifyType type, Map<String, String> params) throws IOException {
+        ensureOpen();
+        NotifyRecord record = new NotifyRecord(nextId++, type, params);
+        write(newLine(record));
+        pending.put(record.getId(), record);
+        return record;
+    }
+
+    /**
+     * 确认一条通知已处理完成
+     *
+     * @param id 通知id
+     */
+    public synchronized void ack(long id) throws IOException {
+        ensureOpen();
+        write(ACK + SEPARATOR + id + "\n");
+        pending.remove(id);
+        // 未处理完成的通知本身很大时，避免每次确认都重写
+        if (channel.size() > Math.max(compactThreshold, compactedSize * 2)) {
+            rewrite();
+        }
+    }
+
+    /**
+     * 将通知移入死信文件并确认，不再重试
+     *
+     * @param record 通知
+     */
+    public synchronized void deadLetter(NotifyRecord record) throws IOException {
+        ensureOpen();
+        try (FileChannel deadLetter = FileChannel.open(deadLetterFile,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            writeFully(deadLetter, newLine(record));
+            // 先落盘死信再确认，避免两边都丢失
+            deadLetter.force(false);
+        }
+        ack(record.getId());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+
+    /**
+     * 重写日志文件，只保留未处理完成的通知
+     * 新文件落盘后再替换原文件，替换失败时继续追加到原文件
+     */
+    private void rewrite() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        try {
+            Path tmp = journalFile.resolveSibling(JOURNAL_FILE_NAME + ".tmp");
+            try (FileChannel out = FileChannel.open(tmp,
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                for (NotifyRecord record : pending.values()) {
+                    writeFully(out, newLine(record));
+                }
+                // 未落盘就替换时，崩溃后可能只剩下不完整的新文件
+                out.force(true);
+            }
+            Files.move(tmp, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            forceDirectory();
+        } finally {
+            channel = FileChannel.open(journalFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            compactedSize = channel.size();
+        }
+    }
+
+    /**
+     * 目录落盘，保证替换文件后的目录项不丢失
+     * 部分平台(如Windows)不支持打开目录，忽略
+     */
+    private void forceDirectory() {
+        try (FileChannel directory = FileChannel.open(journalFile.getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            log.debug("通知日志目录落盘失败: {}", journalFile.getParent(), e);
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel == null) {
+            throw new IOException("notify journal is not open");
+        }
+    }
+
+    private void write(String line) throws IOException {
+        writeFully(channel, line);
+        if (fsync) {
+            channel.force(false);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, String content) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(content.getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private List<NotifyRecord> replay() throws IOException {
+        Map<Long, NotifyRecord> records = new LinkedHashMap<>();
+        if (Files.exists(journalFile)) {
+            try (BufferedReader reader = Files.newBufferedReader(journalFile, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        replayLine(line, records);
+                    } catch (RuntimeException e) {
+                        // 进程崩溃时最后一行可能不完整
+                        log.warn("跳过无法解析的通知日志: [{}]", line);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(records.values());
+    }
+
+    private void replayLine(String line, Map<Long, NotifyRecord> records) throws UnsupportedEncodingException {
+        String[] parts = line.split(String.valueOf(SEPARATOR), -1);
+        long id = Long.parseLong(parts[1]);
+        nextId = Math.max(nextId, id + 1);
+        if (NEW.equals(parts[0])) {
+            records.put(id, new NotifyRecord(id, NotifyType.valueOf(parts[2]), decode(parts[3])));
+        } else if (ACK.equals(parts[0])) {
+            records.remove(id);
+        }
+    }
+
+    private String newLine(NotifyRecord record) throws UnsupportedEncodingException {
+        return NEW + SEPARATOR + record.getId() + SEPARATOR + record.getType().name() + SEPARATOR + encode(record.getParams()) + "\n";
+    }
+
+    private String encode(Map<String, String> params) throws UnsupportedEncodingException {
+        StringBuilder sb = new StringBuilder(512);
+        for (Map.Entry<String, String> entry : params.entrySet()) {
+            if (entry.getValue() == null) {
+                continue;
+            }
+            if (sb.length() > 0) {
+                sb.append('&');
+            }
+            sb.append(URLEncoder.encode(entry.getKey(), "UTF-8"))
+                    .append('=')
+                    .append(URLEncoder.encode(entry.getValue(), "UTF-8"));
+        }
+        return sb.toString();
+    }
+
+    private Map<String, String> decode(String payload) throws UnsupportedEncodingException {
+        Map<String, String> params = new HashMap<>(32);
+        if (payload.isEmpty()) {
+            return params;
+        }
+        for (String pair : payload.split("&")) {
+            int idx = pair.indexOf('=');
+            params.put(URLDecoder.decode(pair.substring(0, idx), "UTF-8"), URLDecoder.decode(pair.substring(idx + 1), "UTF-8"));
+        }
+        return params;
+    }
+}
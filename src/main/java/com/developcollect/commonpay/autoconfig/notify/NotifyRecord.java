@@ -0,0 +1,41 @@
+package com.developcollect.commonpay.autoconfig.notify;
+
+import lombok.Getter;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 日志中的一条异步通知
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Getter
+public class NotifyRecord {
+
+    private final long id;
+
+    private final NotifyType type;
+
+    /**
+     * 通知参数，只读副本，重试、重写日志和移入死信时使用的都是提交时的参数
+     */
+    private final Map<String, String> params;
+
+    /**
+     * 已尝试处理的次数，只在内存中记录
+     */
+    private int attempts;
+
+    NotifyRecord(long id, NotifyType type, Map<String, String> params) {
+        this.id = id;
+        this.type = type;
+        this.params = Collections.unmodifiableMap(new HashMap<>(params));
+    }
+
+    int incrementAttempts() {
+        return ++attempts;
+    }
+}
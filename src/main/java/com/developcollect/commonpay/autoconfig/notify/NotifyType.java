@@ -0,0 +1,26 @@
+package com.developcollect.commonpay.autoconfig.notify;
+
+/**
+ * 异步通知类型
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public enum NotifyType {
+
+    /**
+     * 支付宝支付结果通知
+     */
+    ALI_PAY,
+
+    /**
+     * 微信支付结果通知
+     */
+    WX_PAY,
+
+    /**
+     * 微信退款结果通知
+     */
+    WX_REFUND
+
+}
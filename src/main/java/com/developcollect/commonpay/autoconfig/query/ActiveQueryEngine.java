@@ -0,0 +1,539 @@
+package com.developcollect.commonpay.autoconfig.query;
+
+import com.developcollect.commonpay.autoconfig.cluster.ClusterPartitioner;
+import com.developcollect.commonpay.autoconfig.guard.CallRejectedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 主动查询引擎
+ * 定时从各{@link PendingQuerySource}中按游标分批取出未确认的单据，每个单据按{@link QueryBackoff}计算自己的下次查询时间，
+ * 放入按时间排序的延迟队列，到期后在线程池中并发查询支付平台，未确认时按退避策略重新排期。
+ * <ul>
+ *     <li>增量取出：每隔{@code discoveryInterval}从上一次的最大游标开始取出新单据</li>
+ *     <li>全量取出：每隔{@code interval}取出全部未确认单据，移除已不在来源中的单据(如已通过异步通知确认)</li>
+ * </ul>
+ * 每个支付平台的并发查询数有上限，达到上限时到期的单据在该支付平台的等待队列中排队，有查询完成时依次发出，
+ * 不影响其他支付平台的单据。
+ * 设置了{@link ClusterPartitioner}时只查询分配给本节点的单据，集群节点变化后立即全量取出一次，接管其他节点的单据
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Slf4j
+public class ActiveQueryEngine implements SmartLifecycle {
+
+    private final List<SourceState<?>> states = new ArrayList<>();
+
+    private final int batchSize;
+
+    private final int threads;
+
+    private final long interval;
+
+    private final long discoveryInterval;
+
+    private final QueryBackoff backoff;
+
+    /**
+     * 支付平台的并发查询数
+     */
+    private final Map<Integer, Integer> platformConcurrency;
+
+    private final int defaultConcurrency;
+
+    private final Map<Integer, PlatformState> platforms = new ConcurrentHashMap<>();
+
+    /**
+     * 按下次查询时间排序的单据
+     */
+    private final DelayQueue<Entry<?>> queue = new DelayQueue<>();
+
+    private final AtomicLong lastSweepMillis = new AtomicLong();
+
+    private final AtomicLong queriedCount = new AtomicLong();
+
+    private final AtomicLong confirmedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private final Object sweepLock = new Object();
+
+    /**
+     * 全量取出的次数，单据的generation小于该值时说明上一次全量取出时已不在来源中
+     */
+    private long generation;
+
+    private long lastFullSweep;
+
+    /**
+     * 分区变化后，下一次取出改为全量取出
+     */
+    private volatile boolean rebalanced;
+
+    private volatile ClusterPartitioner partitioner;
+
+    private volatile ScheduledExecutorService scheduler;
+
+    private ExecutorService executor;
+
+    private Thread dispatcher;
+
+    private volatile boolean running;
+
+
+    /**
+     * @param sources             单据来源
+     * @param batchSize           每批取出的单据数
+     * @param threads             查询线程数
+     * @param interval            全量取出的间隔，单位：ms
+     * @param discoveryInterval   增量取出的间隔，单位：ms
+     * @param backoff             查询退避策略
+     * @param platformConcurrency 支付平台的并发查询数
+     * @param defaultConcurrency  未单独配置的支付平台的并发查询数
+     */
+    public ActiveQueryEngine(List<PendingQuerySource<?>> sources, int batchSize, int threads, long interval, long discoveryInterval,
+                             QueryBackoff backoff, Map<Integer, Integer> platformConcurrency, int defaultConcurrency) {
+        this.batchSize = batchSize;
+        this.threads = threads;
+        this.interval = interval;
+        this.discoveryInterval = discoveryInterval;
+        this.backoff = backoff;
+        this.platformConcurrency = platformConcurrency;
+        this.defaultConcurrency = defaultConcurrency;
+        for (PendingQuerySource<?> source : sources) {
+            states.add(new SourceState<>(source));
+        }
+    }
+
+
+    /**
+     * 立即取出一次单据，距上一次全量取出超过{@code interval}时全量取出，否则增量取出
+     */
+    public void sweep() {
+        synchronized (sweepLock) {
+            long start = System.currentTimeMillis();
+            boolean full = rebalanced || start - lastFullSweep >= interval;
+            if (full) {
+                rebalanced = false;
+                generation++;
+                lastFullSweep = start;
+            }
+            for (SourceState<?> state : states) {
+                if (!running) {
+                    return;
+                }
+                try {
+                    sweep(state, full);
+                } catch (Exception e) {
+                    log.error("主动查询[{}]取出单据失败", state.source.getName(), e);
+                }
+            }
+            if (full) {
+                lastSweepMillis.set(System.currentTimeMillis() - start);
+                log.debug("主动查询全量取出完成，耗时{}ms，待查询单据：{}", lastSweepMillis.get(), queue.size());
+            }
+        }
+    }
+
+    private <T> void sweep(SourceState<T> state, boolean full) {
+        PendingQuerySource<T> source = state.source;
+        String cursor = full ? null : state.lastCursor;
+        boolean fetched = false;
+        while (running) {
+            List<T> batch = source.fetch(cursor, batchSize);
+            if (batch == null || batch.isEmpty()) {
+                break;
+            }
+            long now = System.currentTimeMillis();
+            for (T item : batch) {
+                track(state, item, now);
+            }
+            cursor = source.cursor(batch.get(batch.size() - 1));
+            fetched = true;
+            if (batch.size() < batchSize) {
+                break;
+            }
+        }
+        if (fetched) {
+            state.lastCursor = cursor;
+        }
+        if (full && running) {
+            // 已不在来源中的单据已确认，不再查询
+            state.entries.values().removeIf(entry -> entry.generation < generation);
+        }
+    }
+
+    private <T> void track(SourceState<T> state, T item, long now) {
+        String key = state.source.cursor(item);
+        if (!isLocal(state.source, item)) {
+            state.entries.remove(key);
+            return;
+        }
+        Entry<T> entry = state.entries.get(key);
+        if (entry != null) {
+            entry.item = item;
+            entry.generation = generation;
+            return;
+        }
+        long createTime = state.source.createTime(item);
+        entry = new Entry<>(state, key, item, createTime > 0 ? createTime : now, generation);
+        state.entries.put(key, entry);
+        if (backoff.isExpired(now - entry.baseTime)) {
+            entry.expired = true;
+            return;
+        }
+        entry.due = Math.max(now, entry.baseTime + backoff.firstDelay());
+        queue.add(entry);
+    }
+
+
+    private <T> boolean isLocal(PendingQuerySource<T> source, T item) {
+        ClusterPartitioner partitioner = this.partitioner;
+        return partitioner == null || partitioner.isLocal(source.partitionKey(item));
+    }
+
+    /**
+     * 集群分区变化后移除已不属于本节点的单据，并立即全量取出一次
+     */
+    private void rebalance() {
+        for (SourceState<?> state : states) {
+            rebalance(state);
+        }
+        rebalanced = true;
+        ScheduledExecutorService scheduler = this.scheduler;
+        if (running && scheduler != null) {
+            try {
+                scheduler.execute(this::sweep);
+            } catch (RejectedExecutionException e) {
+                // 正在停止
+            }
+        }
+    }
+
+    private <T> void rebalance(SourceState<T> state) {
+        state.entries.values().removeIf(entry -> !isLocal(state.source, entry.item));
+    }
+
+
+    private void dispatch() {
+        while (running) {
+            Entry<?> entry;
+            try {
+                entry = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (entry.state.entries.get(entry.key) != entry) {
+                // 已被移除
+                continue;
+            }
+            submit(entry);
+        }
+    }
+
+    private <T> void submit(Entry<T> entry) {
+        PlatformState platform = platforms.computeIfAbsent(
+                entry.state.source.payPlatform(entry.item),
+                payPlatform -> new PlatformState(platformConcurrency.getOrDefault(payPlatform, defaultConcurrency))
+        );
+        if (platform.permits.tryAcquire()) {
+            execute(platform, entry);
+            return;
+        }
+        // 达到并发上限时在该支付平台的等待队列中排队，不阻塞其他支付平台的单据
+        platform.waiting.add(entry);
+        // 入队前可能已有查询完成
+        drain(platform);
+    }
+
+    /**
+     * 有空闲的并发数时依次发出等待队列中的单据
+     */
+    private void drain(PlatformState platform) {
+        while (running && !platform.waiting.isEmpty() && platform.permits.tryAcquire()) {
+            Entry<?> entry = platform.waiting.poll();
+            if (entry == null) {
+                platform.permits.release();
+                return;
+            }
+            execute(platform, entry);
+        }
+    }
+
+    private <T> void execute(PlatformState platform, Entry<T> entry) {
+        try {
+            executor.execute(() -> {
+                try {
+                    if (entry.state.entries.get(entry.key) == entry) {
+                        query(entry);
+                    }
+                } finally {
+                    platform.permits.release();
+                    drain(platform);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 正在停止
+            platform.permits.release();
+        }
+    }
+
+    private <T> void query(Entry<T> entry) {
+        SourceState<T> state = entry.state;
+        boolean confirmed = false;
+        try {
+            confirmed = state.source.query(entry.item);
+        } catch (CallRejectedException e) {
+            // 被限流或熔断，调用未发出，稍后重试且不计入查询次数
+            long now = System.currentTimeMillis();
+            if (backoff.isExpired(now - entry.baseTime)) {
+                entry.expired = true;
+                log.debug("主动查询[{}]单据[{}]已过期，共查询{}次", state.source.getName(), entry.key, entry.attempts);
+                return;
+            }
+            entry.due = now + backoff.firstDelay();
+            if (running && state.entries.get(entry.key) == entry) {
+                queue.add(entry);
+            }
+            return;
+        } catch (Exception e) {
+            failedCount.incrementAndGet();
+            log.warn("主动查询[{}]单据[{}]失败", state.source.getName(), entry.key, e);
+        }
+        queriedCount.incrementAndGet();
+        if (confirmed) {
+            confirmedCount.incrementAndGet();
+            state.entries.remove(entry.key, entry);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        entry.attempts++;
+        if (backoff.isExpired(now - entry.baseTime)) {
+            // 仍保留在entries中，避免再次取出时重新排期
+            entry.expired = true;
+            log.debug("主动查询[{}]单据[{}]已过期，共查询{}次", state.source.getName(), entry.key, entry.attempts);
+            return;
+        }
+        entry.due = now + backoff.nextDelay(entry.attempts);
+        if (running && state.entries.get(entry.key) == entry) {
+            queue.add(entry);
+        }
+    }
+
+
+    /**
+     * 设置集群分区，只查询分配给本节点的单据
+     */
+    public void setPartitioner(ClusterPartitioner partitioner) {
+        this.partitioner = partitioner;
+        partitioner.addListener(this::rebalance);
+    }
+
+
+    /**
+     * 上一次全量取出的耗时，单位：ms
+     */
+    public long getLastSweepMillis() {
+        return lastSweepMillis.get();
+    }
+
+    /**
+     * 来源中未确认且未过期的单据数
+     */
+    public long getBacklog(String sourceName) {
+        for (SourceState<?> state : states) {
+            if (state.source.getName().equals(sourceName)) {
+                return state.entries.values().stream().filter(entry -> !entry.expired).count();
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 等待查询的单据数
+     */
+    public long getScheduledCount() {
+        long count = queue.size();
+        for (PlatformState platform : platforms.values()) {
+            count += platform.waiting.size();
+        }
+        return count;
+    }
+
+    /**
+     * 累计查询次数
+     */
+    public long getQueriedCount() {
+        return queriedCount.get();
+    }
+
+    /**
+     * 累计查询到已确认的单据数
+     */
+    public long getConfirmedCount() {
+        return confirmedCount.get();
+    }
+
+    /**
+     * 累计查询失败的次数
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public List<PendingQuerySource<?>> getSources() {
+        List<PendingQuerySource<?>> sources = new ArrayList<>(states.size());
+        for (SourceState<?> state : states) {
+            sources.add(state.source);
+        }
+        return sources;
+    }
+
+
+    @Override
+    public synchronized void start() {
+        AtomicInteger counter = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, "cPay-query-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "cPay-query-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher = new Thread(this::dispatch, "cPay-query-dispatcher");
+        dispatcher.setDaemon(true);
+        running = true;
+        dispatcher.start();
+        scheduler.scheduleWithFixedDelay(this::sweep, 0, discoveryInterval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (dispatcher != null) {
+            dispatcher.interrupt();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        queue.clear();
+        for (PlatformState platform : platforms.values()) {
+            platform.waiting.clear();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+
+    private static class SourceState<T> {
+
+        private final PendingQuerySource<T> source;
+
+        /**
+         * 已取出的未确认单据，key为游标
+         */
+        private final ConcurrentMap<String, Entry<T>> entries = new ConcurrentHashMap<>();
+
+        /**
+         * 已取出的最大游标
+         */
+        private volatile String lastCursor;
+
+        private SourceState(PendingQuerySource<T> source) {
+            this.source = source;
+        }
+    }
+
+
+    private static class PlatformState {
+
+        /**
+         * 并发查询数
+         */
+        private final Semaphore permits;
+
+        /**
+         * 已到期但达到并发上限的单据
+         */
+        private final Queue<Entry<?>> waiting = new ConcurrentLinkedQueue<>();
+
+        private PlatformState(int concurrency) {
+            this.permits = new Semaphore(concurrency);
+        }
+    }
+
+
+    private static class Entry<T> implements Delayed {
+
+        private final SourceState<T> state;
+
+        private final String key;
+
+        /**
+         * 计算查询间隔和有效期的起点
+         */
+        private final long baseTime;
+
+        private volatile T item;
+
+        private volatile long generation;
+
+        /**
+         * 下次查询时间，只在不在队列中时修改
+         */
+        private volatile long due;
+
+        private volatile int attempts;
+
+        private volatile boolean expired;
+
+        private Entry(SourceState<T> state, String key, T item, long baseTime, long generation) {
+            this.state = state;
+            this.key = key;
+            this.item = item;
+            this.baseTime = baseTime;
+            this.generation = generation;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(due - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(due, ((Entry<?>) o).due);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.developcollect.commonpay.autoconfig.query;
+
+import java.util.List;
+
+/**
+ * 待主动查询的单据来源
+ * 由{@link ActiveQueryEngine}按游标分批取出未确认的订单、退款单或提现单，并发查询支付平台。
+ * 注册为bean即可生效
+ *
+ * @param <T> 单据类型
+ * @author zak
+ * @since 2.2.0
+ */
+public interface PendingQuerySource<T> {
+
+    /**
+     * 来源名称，用于日志和指标，如order、refund、transfer
+     */
+    String getName();
+
+    /**
+     * 按游标升序取出一批未确认的单据
+     *
+     * @param cursor 上一批最后一个单据的游标，第一批为null
+     * @param limit  最多取出的数量
+     * @return 单据，没有更多时返回空列表
+     */
+    List<T> fetch(String cursor, int limit);
+
+    /**
+     * 单据的游标，如自增id或创建时间加单号，需要与{@link #fetch(String, int)}的排序一致，同时作为单据的唯一标识。
+     * 新单据的游标应大于已有单据，增量取出时从上一次的最大游标开始
+     */
+    String cursor(T item);
+
+    /**
+     * 单据的创建时间，用于计算查询间隔和有效期，返回小于等于0时以第一次取出单据的时间代替
+     */
+    default long createTime(T item) {
+        return 0;
+    }
+
+    /**
+     * 单据的分区key，开启集群分区时按该值把单据分配给各节点，通常返回商户订单号(outTradeNo)，默认使用游标
+     */
+    default String partitionKey(T item) {
+        return cursor(item);
+    }
+
+    /**
+     * 单据所属的支付平台，用于限制每个平台的并发查询数
+     *
+     * @see com.developcollect.commonpay.PayPlatform
+     */
+    int payPlatform(T item);
+
+    /**
+     * 查询支付平台并处理查询结果(如广播支付结果)
+     *
+     * @return 单据是否已确认(成功或失败)，未确认的单据在下一轮继续查询
+     */
+    boolean query(T item) throws Exception;
+
+}
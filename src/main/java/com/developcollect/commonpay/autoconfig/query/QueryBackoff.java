@@ -0,0 +1,64 @@
+package com.developcollect.commonpay.autoconfig.query;
+
+/**
+ * 主动查询的退避策略
+ * 单据创建后很快查询第一次，之后每次未确认都把间隔乘以倍数，直到最大间隔；超过有效期后不再查询。
+ * 刚创建的单据查询得勤，长时间未支付的单据查询得少
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class QueryBackoff {
+
+    private final long initialDelay;
+
+    private final double multiplier;
+
+    private final long maxDelay;
+
+    private final long expireAfter;
+
+
+    /**
+     * @param initialDelay 单据创建后第一次查询的延迟，单位：ms
+     * @param multiplier   每次未确认后间隔的倍数，1表示固定间隔
+     * @param maxDelay     最大间隔，单位：ms
+     * @param expireAfter  单据创建后超过该时间不再查询，单位：ms，小于等于0时一直查询
+     */
+    public QueryBackoff(long initialDelay, double multiplier, long maxDelay, long expireAfter) {
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("multiplier must be >= 1");
+        }
+        this.initialDelay = initialDelay;
+        this.multiplier = multiplier;
+        this.maxDelay = maxDelay;
+        this.expireAfter = expireAfter;
+    }
+
+
+    /**
+     * 第一次查询的延迟
+     */
+    public long firstDelay() {
+        return Math.min(initialDelay, maxDelay);
+    }
+
+    /**
+     * 未确认后到下一次查询的延迟
+     *
+     * @param attempts 已查询的次数
+     */
+    public long nextDelay(int attempts) {
+        double delay = initialDelay * Math.pow(multiplier, attempts);
+        return delay >= maxDelay ? maxDelay : (long) delay;
+    }
+
+    /**
+     * 是否已超过有效期
+     *
+     * @param age 单据创建至今的时间，单位：ms
+     */
+    public boolean isExpired(long age) {
+        return expireAfter > 0 && age >= expireAfter;
+    }
+}
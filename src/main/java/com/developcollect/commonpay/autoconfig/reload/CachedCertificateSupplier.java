@@ -0,0 +1,163 @@
+package com.developcollect.commonpay.autoconfig.reload;
+
+import cn.hutool.core.io.IoUtil;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 缓存在内存中的证书提供器
+ * 证书只在第一次使用、证书路径变化和超过刷新间隔时读取，其余时候直接返回内存中的内容，
+ * 退款等需要证书的接口不会每次都读取文件或请求远程地址。
+ * 到期后由后台线程重新读取，调用线程不等待，继续使用旧证书直到读取完成；刷新失败时也继续使用旧证书。
+ * 没有旧证书或证书路径变化时调用线程必须等待读取完成
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Slf4j
+public class CachedCertificateSupplier implements Supplier<InputStream> {
+
+    /**
+     * 所有证书共用的后台刷新线程，空闲时退出
+     */
+    private static final ExecutorService REFRESHER = createRefresher();
+
+    private final Supplier<String> location;
+
+    private final Function<String, InputStream> loader;
+
+    private final long refreshInterval;
+
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    /**
+     * 是否已提交后台刷新
+     */
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+
+    private volatile Entry entry;
+
+
+    /**
+     * @param location        证书路径
+     * @param loader          按路径读取证书
+     * @param refreshInterval 刷新间隔，单位：ms，小于等于0时不刷新
+     */
+    public CachedCertificateSupplier(Supplier<String> location, Function<String, InputStream> loader, long refreshInterval) {
+        this.location = location;
+        this.loader = loader;
+        this.refreshInterval = refreshInterval;
+    }
+
+
+    @Override
+    public InputStream get() {
+        return new ByteArrayInputStream(getBytes());
+    }
+
+    /**
+     * 取得证书内容，返回的数组不能修改
+     */
+    public byte[] getBytes() {
+        String currentLocation = location.get();
+        Entry current = entry;
+        if (current == null || !Objects.equals(current.location, currentLocation)) {
+            // 没有可用的旧证书，必须等待读取完成
+            refreshLock.lock();
+            try {
+                current = entry;
+                if (current == null || !Objects.equals(current.location, currentLocation)) {
+                    current = load(currentLocation);
+                    entry = current;
+                }
+            } finally {
+                refreshLock.unlock();
+            }
+        } else if (refreshInterval > 0
+                && System.currentTimeMillis() - current.loadTime >= refreshInterval
+                && refreshing.compareAndSet(false, true)) {
+            Entry stale = current;
+            try {
+                REFRESHER.execute(() -> refresh(stale));
+            } catch (RejectedExecutionException e) {
+                refreshing.set(false);
+            }
+        }
+        return current.bytes;
+    }
+
+    /**
+     * 在后台线程中重新读取证书
+     */
+    private void refresh(Entry stale) {
+        refreshLock.lock();
+        try {
+            if (entry != stale) {
+                // 已被路径变化或invalidate替换
+                return;
+            }
+            try {
+                entry = load(stale.location);
+            } catch (Exception e) {
+                log.warn("证书[{}]刷新失败，继续使用原证书", stale.location, e);
+                // 推迟到下一个间隔再试
+                entry = new Entry(stale.location, stale.bytes, System.currentTimeMillis());
+            }
+        } finally {
+            refreshLock.unlock();
+            refreshing.set(false);
+        }
+    }
+
+    /**
+     * 丢弃缓存，下次使用时重新读取
+     */
+    public void invalidate() {
+        entry = null;
+    }
+
+    private Entry load(String currentLocation) {
+        try (InputStream in = loader.apply(currentLocation)) {
+            return new Entry(currentLocation, IoUtil.readBytes(in), System.currentTimeMillis());
+        } catch (IOException e) {
+            throw new IllegalStateException("读取证书失败: " + currentLocation, e);
+        }
+    }
+
+
+    private static ExecutorService createRefresher() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "cPay-cert-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+
+    private static class Entry {
+        private final String location;
+        private final byte[] bytes;
+        private final long loadTime;
+
+        private Entry(String location, byte[] bytes, long loadTime) {
+            this.location = location;
+            this.bytes = bytes;
+            this.loadTime = loadTime;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.developcollect.commonpay.autoconfig.reload;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 支付配置重新加载器
+ * 定时检查各{@link ReloadablePayConfigSupplier}的配置来源，变化后在后台线程重新创建配置。
+ * 属性被重新绑定(如Spring Cloud的refresh)或证书内容变化后，无需重启即可生效
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+@Slf4j
+public class PayConfigReloader implements SmartLifecycle {
+
+    private final List<ReloadablePayConfigSupplier<?>> suppliers;
+
+    private final long interval;
+
+    private ScheduledExecutorService scheduler;
+
+    private volatile boolean running;
+
+
+    /**
+     * @param suppliers 需要检查的配置提供器
+     * @param interval  检查间隔，单位：ms
+     */
+    public PayConfigReloader(List<ReloadablePayConfigSupplier<?>> suppliers, long interval) {
+        this.suppliers = suppliers;
+        this.interval = interval;
+    }
+
+
+    /**
+     * 立即检查一次
+     */
+    public void reload() {
+        for (ReloadablePayConfigSupplier<?> supplier : suppliers) {
+            try {
+                if (supplier.reload()) {
+                    log.info("{}已重新加载", supplier.getName());
+                }
+            } catch (Exception e) {
+                // 新配置有误时继续使用旧配置
+                log.warn("{}重新加载失败，继续使用原配置", supplier.getName(), e);
+            }
+        }
+    }
+
+
+    @Override
+    public synchronized void start() {
+        scheduler = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "cPay-config-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // 第一次检查只记录配置来源的指纹
+        scheduler.scheduleWithFixedDelay(this::reload, 0, interval, TimeUnit.MILLISECONDS);
+        running = true;
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+}
@@ -0,0 +1,94 @@
+package com.developcollect.commonpay.autoconfig.reload;
+
+import com.developcollect.commonpay.config.AbstractPayConfig;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * 可重新加载的支付配置提供器
+ * 配置的来源(属性、证书内容等)由指纹表示，指纹变化后重新创建配置并整体替换引用，
+ * 正在使用旧配置的验签等操作不受影响，也不需要加锁
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class ReloadablePayConfigSupplier<T extends AbstractPayConfig> implements Supplier<T> {
+
+    /**
+     * 首次检查时才计算指纹，避免启动时就读取远程证书等
+     */
+    private static final Object UNKNOWN = new Object();
+
+    private final String name;
+
+    private final Supplier<T> factory;
+
+    private final Supplier<?> fingerprint;
+
+    /**
+     * 配置替换后的预热操作，如提前解析公钥
+     */
+    private final Consumer<T> warmUp;
+
+    private volatile Snapshot<T> snapshot;
+
+
+    /**
+     * @param name        名称，用于日志
+     * @param factory     配置创建器
+     * @param fingerprint 配置来源的指纹，指纹相等(equals)时不重新创建配置
+     * @param warmUp      配置替换后的预热操作，可以为null
+     */
+    public ReloadablePayConfigSupplier(String name, Supplier<T> factory, Supplier<?> fingerprint, Consumer<T> warmUp) {
+        this.name = name;
+        this.factory = factory;
+        this.fingerprint = fingerprint;
+        this.warmUp = warmUp;
+        this.snapshot = new Snapshot<>(UNKNOWN, factory.get());
+    }
+
+
+    @Override
+    public T get() {
+        return snapshot.config;
+    }
+
+    /**
+     * 配置来源变化时重新创建配置
+     *
+     * @return 是否重新创建了配置
+     */
+    public synchronized boolean reload() {
+        Object current = fingerprint.get();
+        if (snapshot.fingerprint == UNKNOWN) {
+            snapshot = new Snapshot<>(current, snapshot.config);
+            return false;
+        }
+        if (Objects.equals(current, snapshot.fingerprint)) {
+            return false;
+        }
+        T config = factory.get();
+        snapshot = new Snapshot<>(current, config);
+        if (warmUp != null) {
+            warmUp.accept(config);
+        }
+        return true;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+
+    private static class Snapshot<T> {
+        private final Object fingerprint;
+        private final T config;
+
+        private Snapshot(Object fingerprint, T config) {
+            this.fingerprint = fingerprint;
+            this.config = config;
+        }
+    }
+}
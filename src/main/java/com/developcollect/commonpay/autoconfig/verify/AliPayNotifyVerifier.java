@@ -0,0 +1,147 @@
+package com.developcollect.commonpay.autoconfig.verify;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.core.util.StrUtil;
+import com.developcollect.commonpay.config.AliPayConfig;
+
+import java.io.ByteArrayInputStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 支付宝异步通知验签器
+ * 支付宝公钥或公钥证书只在内容变化时解析一次，之后直接使用缓存的PublicKey验签，
+ * 避免每次通知都进行Base64解码、KeyFactory和X.509证书解析
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class AliPayNotifyVerifier {
+
+    private static final String SIGN_TYPE_RSA = "RSA";
+    private static final String SIGN_TYPE_RSA2 = "RSA2";
+
+    /**
+     * 已解析的公钥，以公钥(证书)原文作为缓存标识
+     */
+    private volatile CachedPublicKey cachedPublicKey;
+
+
+    /**
+     * 验签
+     * 待签名内容的拼接规则与支付宝SDK的rsaCheckV1一致
+     *
+     * @param payConfig 支付宝配置
+     * @param params    通知参数
+     * @return boolean 校验是否通过
+     * @author zak
+     * @since 2.2.0
+     */
+    public boolean verify(AliPayConfig payConfig, Map<String, String> params) throws GeneralSecurityException, UnsupportedEncodingException {
+        String sign = params.get("sign");
+        if (StrUtil.isBlank(sign)) {
+            return false;
+        }
+        String content = getSignCheckContent(params);
+        String charset = payConfig.getCharset();
+        byte[] contentBytes = StrUtil.isEmpty(charset) ? content.getBytes() : content.getBytes(charset);
+        byte[] signBytes = Base64.decode(sign);
+
+        // 池化的Signature在同一线程内复用，update之后必须紧接着verify，verify会将其重置到initVerify后的状态
+        String algorithm = signAlgorithm(payConfig.getSignType());
+        Signature signature = CryptoPool.verifier(algorithm, getPublicKey(payConfig));
+        try {
+            signature.update(contentBytes);
+            return signature.verify(signBytes);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            CryptoPool.discardVerifier(algorithm);
+            throw e;
+        }
+    }
+
+    /**
+     * 取得支付宝公钥，公钥(证书)原文未变化时直接返回缓存
+     */
+    public PublicKey getPublicKey(AliPayConfig payConfig) throws GeneralSecurityException {
+        boolean cert = payConfig.hasCert();
+        String source = cert ? payConfig.getAlipayCertContentSupplier().get() : payConfig.getPublicKey();
+        if (source == null) {
+            throw new GeneralSecurityException("alipay public key or cert content is null");
+        }
+
+        CachedPublicKey cached = this.cachedPublicKey;
+        if (cached != null && cached.source.equals(source)) {
+            return cached.publicKey;
+        }
+
+        PublicKey publicKey = cert ? parseCert(source) : parsePublicKey(source);
+        this.cachedPublicKey = new CachedPublicKey(source, publicKey);
+        return publicKey;
+    }
+
+
+    private PublicKey parsePublicKey(String publicKey) throws GeneralSecurityException {
+        byte[] encoded = Base64.decode(StrUtil.cleanBlank(publicKey));
+        return KeyFactory.getInstance(SIGN_TYPE_RSA).generatePublic(new X509EncodedKeySpec(encoded));
+    }
+
+    /**
+     * 解析支付宝公钥证书，证书链中的第一个证书即为支付宝公钥证书
+     */
+    private PublicKey parseCert(String certContent) throws GeneralSecurityException {
+        ByteArrayInputStream in = new ByteArrayInputStream(certContent.getBytes(StandardCharsets.UTF_8));
+        return CertificateFactory.getInstance("X.509").generateCertificate(in).getPublicKey();
+    }
+
+    private String signAlgorithm(String signType) throws GeneralSecurityException {
+        if (SIGN_TYPE_RSA.equals(signType)) {
+            return "SHA1WithRSA";
+        }
+        if (SIGN_TYPE_RSA2.equals(signType)) {
+            return "SHA256WithRSA";
+        }
+        throw new GeneralSecurityException("Sign Type is Not Support : signType=" + signType);
+    }
+
+    /**
+     * 拼接待验签内容
+     * 与支付宝SDK保持一致：移除sign和sign_type后按key排序，以key=value&key=value拼接
+     */
+    private String getSignCheckContent(Map<String, String> params) {
+        params.remove("sign");
+        params.remove("sign_type");
+
+        List<String> keys = new ArrayList<>(params.keySet());
+        Collections.sort(keys);
+        StringBuilder content = new StringBuilder(256);
+        for (int i = 0; i < keys.size(); i++) {
+            String key = keys.get(i);
+            if (i > 0) {
+                content.append('&');
+            }
+            content.append(key).append('=').append(params.get(key));
+        }
+        return content.toString();
+    }
+
+
+    private static class CachedPublicKey {
+        private final String source;
+        private final PublicKey publicKey;
+
+        private CachedPublicKey(String source, PublicKey publicKey) {
+            this.source = source;
+            this.publicKey = publicKey;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.developcollect.commonpay.autoconfig.verify;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 线程本地的加解密原语池
+ * 每个线程按算法缓存Signature、Mac、MessageDigest、Cipher实例，并记住实例最近一次初始化所用的密钥，
+ * 同一线程重复使用同一密钥时既不需要再查找Provider，也不需要重新初始化
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public final class CryptoPool {
+
+    private static final ThreadLocal<Map<String, Initialized<Signature>>> SIGNATURES = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, Initialized<Mac>>> MACS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, MessageDigest>> DIGESTS = ThreadLocal.withInitial(HashMap::new);
+    private static final ThreadLocal<Map<String, Initialized<Cipher>>> CIPHERS = ThreadLocal.withInitial(HashMap::new);
+
+    private CryptoPool() {
+    }
+
+
+    /**
+     * 取得已用指定公钥初始化的验签用Signature
+     * Signature在verify后会回到initVerify后的状态，所以同一公钥无需重复初始化
+     *
+     * @param algorithm 签名算法，如SHA256WithRSA
+     * @param publicKey 公钥
+     * @return Signature
+     */
+    public static Signature verifier(String algorithm, PublicKey publicKey) throws GeneralSecurityException {
+        Map<String, Initialized<Signature>> signatures = SIGNATURES.get();
+        Initialized<Signature> initialized = signatures.get(algorithm);
+        if (initialized == null) {
+            initialized = new Initialized<>(Signature.getInstance(algorithm));
+            signatures.put(algorithm, initialized);
+        }
+        if (initialized.key != publicKey) {
+            // 初始化失败时不能保留旧的密钥标记
+            initialized.key = null;
+            initialized.primitive.initVerify(publicKey);
+            initialized.key = publicKey;
+        }
+        return initialized.primitive;
+    }
+
+    /**
+     * 取得已用指定密钥初始化的Mac
+     * Mac在doFinal后会自动重置，所以同一密钥无需重复初始化
+     *
+     * @param key 密钥，算法取自密钥本身
+     * @return Mac
+     */
+    public static Mac mac(SecretKeySpec key) throws GeneralSecurityException {
+        String algorithm = key.getAlgorithm();
+        Map<String, Initialized<Mac>> macs = MACS.get();
+        Initialized<Mac> initialized = macs.get(algorithm);
+        if (initialized == null) {
+            initialized = new Initialized<>(Mac.getInstance(algorithm));
+            macs.put(algorithm, initialized);
+        }
+        if (initialized.key != key) {
+            initialized.key = null;
+            initialized.primitive.init(key);
+            initialized.key = key;
+        }
+        return initialized.primitive;
+    }
+
+    /**
+     * 取得已重置的MessageDigest
+     *
+     * @param algorithm 摘要算法，如MD5
+     * @return MessageDigest
+     */
+    public static MessageDigest messageDigest(String algorithm) throws GeneralSecurityException {
+        Map<String, MessageDigest> digests = DIGESTS.get();
+        MessageDigest digest = digests.get(algorithm);
+        if (digest == null) {
+            digest = MessageDigest.getInstance(algorithm);
+            digests.put(algorithm, digest);
+        } else {
+            digest.reset();
+        }
+        return digest;
+    }
+
+    /**
+     * 取得已用指定密钥初始化的Cipher
+     * Cipher在doFinal后会回到init后的状态，所以同一模式、同一密钥无需重复初始化
+     *
+     * @param transformation 转换名称，如AES/ECB/PKCS5Padding
+     * @param mode           模式，如{@link Cipher#DECRYPT_MODE}
+     * @param key            密钥
+     * @return Cipher
+     */
+    public static Cipher cipher(String transformation, int mode, Key key) throws GeneralSecurityException {
+        String cacheKey = transformation + '#' + mode;
+        Map<String, Initialized<Cipher>> ciphers = CIPHERS.get();
+        Initialized<Cipher> initialized = ciphers.get(cacheKey);
+        if (initialized == null) {
+            initialized = new Initialized<>(Cipher.getInstance(transformation));
+            ciphers.put(cacheKey, initialized);
+        }
+        if (initialized.key != key) {
+            initialized.key = null;
+            initialized.primitive.init(mode, key);
+            initialized.key = key;
+        }
+        return initialized.primitive;
+    }
+
+    /**
+     * 丢弃当前线程缓存的验签用Signature
+     * update或verify抛出异常后Signature可能残留未验证的数据，下次使用时重新创建
+     */
+    public static void discardVerifier(String algorithm) {
+        SIGNATURES.get().remove(algorithm);
+    }
+
+    /**
+     * 丢弃当前线程缓存的Cipher
+     * doFinal抛出异常后Cipher的状态不确定，下次使用时重新创建
+     */
+    public static void discardCipher(String transformation, int mode) {
+        CIPHERS.get().remove(transformation + '#' + mode);
+    }
+
+
+    private static class Initialized<T> {
+        private final T primitive;
+        private Object key;
+
+        private Initialized(T primitive) {
+            this.primitive = primitive;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package com.developcollect.commonpay.autoconfig.verify;
+
+import cn.hutool.core.codec.Base64;
+import com.developcollect.commonpay.config.WxPayConfig;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * 微信异步通知验签器
+ * 签名规则与微信SDK的WXPayUtil.isSignatureValid一致，
+ * 但MD5/HMAC-SHA256实例取自{@link CryptoPool}，HMAC密钥按商户key缓存。
+ * 同时负责解密退款通知的req_info，AES密钥同样按商户key缓存
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class WxPayNotifyVerifier {
+
+    private static final String FIELD_SIGN = "sign";
+    private static final String HMAC_SHA256 = "HmacSHA256";
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final char[] LOWER_HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final String REQ_INFO_TRANSFORMATION = "AES/ECB/PKCS5Padding";
+
+    /**
+     * 线程本地的req_info解密缓冲区，按需扩容
+     */
+    private static final ThreadLocal<byte[]> REQ_INFO_BUFFER = ThreadLocal.withInitial(() -> new byte[2048]);
+
+    /**
+     * 已生成的HMAC密钥，以商户key原文作为缓存标识
+     */
+    private volatile CachedSecretKey cachedSecretKey;
+
+    /**
+     * 已生成的req_info解密密钥，以商户key原文作为缓存标识
+     */
+    private volatile CachedSecretKey cachedReqInfoKey;
+
+
+    /**
+     * 验签
+     *
+     * @param payConfig 微信支付配置
+     * @param params    通知参数
+     * @return boolean 校验是否通过
+     * @author zak
+     * @since 2.2.0
+     */
+    public boolean verify(WxPayConfig payConfig, Map<String, String> params) throws GeneralSecurityException {
+        String sign = params.get(FIELD_SIGN);
+        if (sign == null) {
+            return false;
+        }
+        // 在微信的支付SDK中沙箱环境是用的md5签名
+        String actual = payConfig.isDebug()
+                ? md5Sign(params, payConfig.getKey())
+                : hmacSha256Sign(params, payConfig.getKey());
+        return actual.equals(sign);
+    }
+
+    /**
+     * 解密退款通知的req_info
+     * 解密密钥为商户key的MD5值(小写十六进制)，解密结果写入线程本地缓冲区，
+     * 返回的输入流只在当前线程下一次解密之前有效，应立即交给流式解析器读取
+     *
+     * @param payConfig 微信支付配置
+     * @param reqInfo   Base64编码的加密信息
+     * @return 解密后的XML
+     * @author zak
+     * @since 2.2.0
+     */
+    public InputStream decryptReqInfo(WxPayConfig payConfig, String reqInfo) throws GeneralSecurityException {
+        byte[] encrypted = Base64.decode(reqInfo);
+        Cipher cipher = CryptoPool.cipher(REQ_INFO_TRANSFORMATION, Cipher.DECRYPT_MODE, getReqInfoKey(payConfig.getKey()));
+
+        byte[] buffer = REQ_INFO_BUFFER.get();
+        int outputSize = cipher.getOutputSize(encrypted.length);
+        if (buffer.length < outputSize) {
+            buffer = new byte[Math.max(outputSize, buffer.length << 1)];
+            REQ_INFO_BUFFER.set(buffer);
+        }
+
+        int length;
+        try {
+            length = cipher.doFinal(encrypted, 0, encrypted.length, buffer, 0);
+        } catch (GeneralSecurityException e) {
+            CryptoPool.discardCipher(REQ_INFO_TRANSFORMATION, Cipher.DECRYPT_MODE);
+            throw e;
+        }
+        return new ByteArrayInputStream(buffer, 0, length);
+    }
+
+    private SecretKeySpec getReqInfoKey(String key) throws GeneralSecurityException {
+        CachedSecretKey cached = this.cachedReqInfoKey;
+        if (cached != null && cached.source.equals(key)) {
+            return cached.secretKey;
+        }
+        byte[] md5 = CryptoPool.messageDigest("MD5").digest(key.getBytes(StandardCharsets.UTF_8));
+        String md5Key = toHex(md5, LOWER_HEX_DIGITS);
+        SecretKeySpec secretKey = new SecretKeySpec(md5Key.getBytes(StandardCharsets.UTF_8), "AES");
+        this.cachedReqInfoKey = new CachedSecretKey(key, secretKey);
+        return secretKey;
+    }
+
+    private String md5Sign(Map<String, String> params, String key) throws GeneralSecurityException {
+        byte[] content = signContent(params, key).getBytes(StandardCharsets.UTF_8);
+        return toUpperHex(CryptoPool.messageDigest("MD5").digest(content));
+    }
+
+    private String hmacSha256Sign(Map<String, String> params, String key) throws GeneralSecurityException {
+        byte[] content = signContent(params, key).getBytes(StandardCharsets.UTF_8);
+        Mac mac = CryptoPool.mac(getSecretKey(key));
+        return toUpperHex(mac.doFinal(content));
+    }
+
+    private SecretKeySpec getSecretKey(String key) {
+        CachedSecretKey cached = this.cachedSecretKey;
+        if (cached != null && cached.source.equals(key)) {
+            return cached.secretKey;
+        }
+        SecretKeySpec secretKey = new SecretKeySpec(key.getBytes(StandardCharsets.UTF_8), HMAC_SHA256);
+        this.cachedSecretKey = new CachedSecretKey(key, secretKey);
+        return secretKey;
+    }
+
+    /**
+     * 拼接待签名内容
+     * 按key排序，跳过sign和空值，以key=value&拼接，最后追加key=商户key
+     */
+    private String signContent(Map<String, String> params, String key) {
+        String[] keys = params.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        StringBuilder sb = new StringBuilder(512);
+        for (String k : keys) {
+            if (FIELD_SIGN.equals(k)) {
+                continue;
+            }
+            String value = params.get(k);
+            if (value == null) {
+                continue;
+            }
+            value = value.trim();
+            if (value.length() > 0) {
+                sb.append(k).append('=').append(value).append('&');
+            }
+        }
+        return sb.append("key=").append(key).toString();
+    }
+
+    private static String toUpperHex(byte[] bytes) {
+        return toHex(bytes, HEX_DIGITS);
+    }
+
+    private static String toHex(byte[] bytes, char[] digits) {
+        char[] chars = new char[bytes.length << 1];
+        for (int i = 0, j = 0; i < bytes.length; i++) {
+            chars[j++] = digits[(bytes[i] >>> 4) & 0x0F];
+            chars[j++] = digits[bytes[i] & 0x0F];
+        }
+        return new String(chars);
+    }
+
+
+    private static class CachedSecretKey {
+        private final String source;
+        private final SecretKeySpec secretKey;
+
+        private CachedSecretKey(String source, SecretKeySpec secretKey) {
+            this.source = source;
+            this.secretKey = secretKey;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.developcollect.commonpay.autoconfig.artifact;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 过期支付资源清理器测试
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class ArtifactJanitorTest {
+
+    private static final long MAX_AGE = 60 * 60 * 1000L;
+
+    private File root;
+
+    private ArtifactJanitor janitor;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("cpay-artifact").toFile();
+        // 与自动配置一致，只清理支付平台文件夹
+        janitor = new ArtifactJanitor(Arrays.asList(path("alipay"), path("wxpay")), MAX_AGE, 60000, 2);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+
+    @Test
+    public void deletesExpiredFilesInPlatformDirectories() throws IOException {
+        write("alipay/T1.png", 3, true);
+        write("alipay/12/22/T2.png", 4, true);
+        write("wxpay/ab/cd/wap_T3.html", 5, true);
+        write("alipay/34/56/T4.png", 6, false);
+
+        janitor.sweep();
+
+        assertFalse(Files.exists(path("alipay/T1.png")));
+        assertFalse(Files.exists(path("alipay/12/22/T2.png")));
+        assertFalse(Files.exists(path("wxpay/ab/cd/wap_T3.html")));
+        assertTrue(Files.exists(path("alipay/34/56/T4.png")));
+        assertEquals(3, janitor.getReclaimedFiles());
+        assertEquals(12, janitor.getReclaimedBytes());
+    }
+
+    @Test
+    public void leavesOtherDirectoriesUnderRootAlone() throws IOException {
+        // 异步通知日志默认也在资源根目录下，长时间未写入也不能删除
+        write("journal/notify.journal", 10, true);
+        write("notify.lock", 0, true);
+        write("alipay/T1.png", 3, true);
+
+        janitor.sweep();
+
+        assertTrue(Files.exists(path("journal/notify.journal")));
+        assertTrue(Files.exists(path("notify.lock")));
+        assertFalse(Files.exists(path("alipay/T1.png")));
+        assertEquals(1, janitor.getReclaimedFiles());
+    }
+
+    @Test
+    public void skipsMissingDirectories() {
+        janitor.sweep();
+        assertEquals(0, janitor.getReclaimedFiles());
+    }
+
+
+    private Path path(String path) {
+        return root.toPath().resolve(path);
+    }
+
+    private void write(String path, int size, boolean expired) throws IOException {
+        Path file = path(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, new byte[size]);
+        if (expired) {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() - MAX_AGE - 60000));
+        }
+    }
+}
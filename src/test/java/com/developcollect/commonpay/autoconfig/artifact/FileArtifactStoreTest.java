@@ -0,0 +1,113 @@
+package com.developcollect.commonpay.autoconfig.artifact;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 本地文件支付资源存储测试
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class FileArtifactStoreTest {
+
+    private File root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("cpay-artifact").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(root.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+
+    @Test
+    public void shardsResourcesOfOneOrderIntoSameDirectory() {
+        FileArtifactStore store = new FileArtifactStore(root, 2);
+        assertEquals("12/22/T123.png", store.relativePath("T123.png"));
+        assertEquals("12/22/T123.qr", store.relativePath("T123.qr"));
+        assertEquals("12/22/wap_T123.html", store.relativePath("wap_T123.html"));
+        // 路径只与订单号有关，重启后不变
+        assertEquals(store.relativePath("T123.png"), new FileArtifactStore(root, 2).relativePath("T123.png"));
+        assertEquals("12/22/fd/T123.png", new FileArtifactStore(root, 3).relativePath("T123.png"));
+        assertEquals("T123.png", new FileArtifactStore(root).relativePath("T123.png"));
+    }
+
+    @Test
+    public void storesResourcesInShardDirectories() {
+        FileArtifactStore store = new FileArtifactStore(root, 2);
+        store.put("alipay", "T123.png", new byte[]{1});
+
+        assertTrue(new File(root, "alipay/12/22/T123.png").isFile());
+        assertArrayEquals(new byte[]{1}, store.get("alipay", "T123.png"));
+        assertNull(store.get("wxpay", "T123.png"));
+
+        store.delete("alipay", "T123.png");
+        assertNull(store.get("alipay", "T123.png"));
+        assertFalse(new File(root, "alipay/12/22/T123.png").exists());
+    }
+
+    @Test
+    public void readsAndDeletesLegacyFiles() throws IOException {
+        write("alipay/T1.png", "legacy");
+        FileArtifactStore store = new FileArtifactStore(root, 2);
+        assertTrue(store.mayHaveLegacyFiles());
+
+        assertArrayEquals("legacy".getBytes(StandardCharsets.UTF_8), store.get("alipay", "T1.png"));
+        assertEquals(new File(root, "alipay/T1.png"), store.locate("alipay", "T1.png"));
+
+        // 分级路径下的文件优先
+        store.put("alipay", "T1.png", new byte[]{1});
+        assertArrayEquals(new byte[]{1}, store.get("alipay", "T1.png"));
+
+        store.delete("alipay", "T1.png");
+        assertNull(store.get("alipay", "T1.png"));
+        assertFalse(new File(root, "alipay/T1.png").exists());
+    }
+
+    @Test
+    public void ignoresNonPlatformDirectoriesWhenCheckingLegacyFiles() throws IOException {
+        // 异步通知日志默认也在资源根目录下
+        write("journal/notify.journal", "N\t1\tALI_PAY\t");
+        write("notify.lock", "");
+        new FileArtifactStore(root, 2).put("alipay", "T1.png", new byte[]{1});
+
+        assertFalse(new FileArtifactStore(root, 2).mayHaveLegacyFiles());
+    }
+
+    @Test
+    public void detectsLegacyFilesInPlatformDirectories() throws IOException {
+        write("journal/notify.journal", "N\t1\tALI_PAY\t");
+        write("wxpay/T1.png", "png");
+
+        assertTrue(new FileArtifactStore(root, 2).mayHaveLegacyFiles());
+        assertFalse(new FileArtifactStore(root, 0).mayHaveLegacyFiles());
+    }
+
+
+    private void write(String path, String content) throws IOException {
+        Path file = root.toPath().resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    }
+}
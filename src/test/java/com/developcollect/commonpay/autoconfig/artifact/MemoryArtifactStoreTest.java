@@ -0,0 +1,89 @@
+package com.developcollect.commonpay.autoconfig.artifact;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 内存支付资源存储测试
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class MemoryArtifactStoreTest {
+
+    @Test
+    public void evictsLeastRecentlyUsedWhenOverMaxBytes() {
+        MemoryArtifactStore store = new MemoryArtifactStore(30, 60000);
+        store.put("alipay", "T1.png", new byte[10]);
+        store.put("alipay", "T2.png", new byte[10]);
+        store.put("wxpay", "T3.png", new byte[10]);
+        // 访问后T1不再是最久未访问的
+        store.get("alipay", "T1.png");
+
+        store.put("wxpay", "T4.png", new byte[15]);
+        assertNull(store.get("alipay", "T2.png"));
+        assertNull(store.get("wxpay", "T3.png"));
+        assertEquals(10, store.get("alipay", "T1.png").length);
+        assertEquals(15, store.get("wxpay", "T4.png").length);
+        assertEquals(25, store.getTotalBytes());
+    }
+
+    @Test
+    public void replacesExistingContent() {
+        MemoryArtifactStore store = new MemoryArtifactStore(100, 60000);
+        store.put("alipay", "T1.png", new byte[10]);
+        store.put("alipay", "T1.png", new byte[]{1, 2});
+
+        assertArrayEquals(new byte[]{1, 2}, store.get("alipay", "T1.png"));
+        assertEquals(2, store.getTotalBytes());
+    }
+
+    @Test
+    public void separatesPlatforms() {
+        MemoryArtifactStore store = new MemoryArtifactStore(100, 60000);
+        store.put("alipay", "T1.png", new byte[]{1});
+        store.put("wxpay", "T1.png", new byte[]{2});
+
+        store.delete("alipay", "T1.png");
+        assertNull(store.get("alipay", "T1.png"));
+        assertArrayEquals(new byte[]{2}, store.get("wxpay", "T1.png"));
+        assertEquals(1, store.getTotalBytes());
+    }
+
+    @Test
+    public void refusesContentLargerThanMaxBytes() {
+        MemoryArtifactStore store = new MemoryArtifactStore(10, 60000);
+        store.put("alipay", "T1.png", new byte[5]);
+        store.put("alipay", "T2.png", new byte[11]);
+
+        assertNull(store.get("alipay", "T2.png"));
+        // 其他资源不会因此被淘汰
+        assertEquals(5, store.get("alipay", "T1.png").length);
+        assertEquals(5, store.getTotalBytes());
+    }
+
+    @Test
+    public void dropsPreviousContentWhenReplacementRefused() {
+        MemoryArtifactStore store = new MemoryArtifactStore(10, 60000);
+        store.put("alipay", "T1.png", new byte[5]);
+        store.put("alipay", "T1.png", new byte[11]);
+
+        // 不能继续返回旧的二维码
+        assertNull(store.get("alipay", "T1.png"));
+        assertEquals(0, store.getTotalBytes());
+    }
+
+    @Test
+    public void expiresAfterTtl() throws Exception {
+        MemoryArtifactStore store = new MemoryArtifactStore(100, 50);
+        store.put("alipay", "T1.png", new byte[10]);
+        assertEquals(10, store.get("alipay", "T1.png").length);
+
+        Thread.sleep(80);
+        assertNull(store.get("alipay", "T1.png"));
+        assertEquals(0, store.getTotalBytes());
+    }
+}
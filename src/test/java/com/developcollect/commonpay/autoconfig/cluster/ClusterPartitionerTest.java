@@ -0,0 +1,163 @@
+package com.developcollect.commonpay.autoconfig.cluster;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 集群分区测试
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class ClusterPartitionerTest {
+
+    private static final int KEYS = 1000;
+
+    @Test
+    public void partitionsKeysAcrossNodes() {
+        LocalClusterMembership membership = new LocalClusterMembership();
+        ClusterPartitioner a = new ClusterPartitioner(membership, "a", 1000, 5000, 64);
+        ClusterPartitioner b = new ClusterPartitioner(membership, "b", 1000, 5000, 64);
+        a.refresh();
+        b.refresh();
+        a.refresh();
+
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), a.getMembers());
+        assertEquals(a.getMembers(), b.getMembers());
+        int local = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "T" + i;
+            // 每个key恰好由一个节点处理
+            assertTrue(key, a.isLocal(key) ^ b.isLocal(key));
+            if (a.isLocal(key)) {
+                local++;
+            }
+        }
+        assertTrue("local " + local, local > 0 && local < KEYS);
+    }
+
+    @Test
+    public void handlesAllKeysBeforeFirstRefresh() {
+        ClusterPartitioner partitioner = new ClusterPartitioner(new LocalClusterMembership(), "a", 1000, 5000, 64);
+        for (int i = 0; i < KEYS; i++) {
+            assertTrue(partitioner.isLocal("T" + i));
+        }
+    }
+
+    @Test
+    public void takesOverKeysOfLeavingNode() {
+        LocalClusterMembership membership = new LocalClusterMembership();
+        ClusterPartitioner a = new ClusterPartitioner(membership, "a", 1000, 5000, 64);
+        ClusterPartitioner b = new ClusterPartitioner(membership, "b", 1000, 5000, 64);
+        AtomicInteger changes = new AtomicInteger();
+        a.addListener(changes::incrementAndGet);
+        a.refresh();
+        b.refresh();
+        a.refresh();
+        assertEquals(2, changes.get());
+
+        b.stop();
+        a.refresh();
+        assertEquals(3, changes.get());
+        assertEquals(Collections.singleton("a"), a.getMembers());
+        for (int i = 0; i < KEYS; i++) {
+            assertTrue(a.isLocal("T" + i));
+        }
+
+        // 成员未变化时不通知
+        a.refresh();
+        assertEquals(3, changes.get());
+    }
+
+    @Test
+    public void removesItselfWhenLeaseExpires() throws Exception {
+        FlakyMembership membership = new FlakyMembership();
+        ClusterPartitioner a = new ClusterPartitioner(membership, "a", 20, 100, 64);
+        ClusterPartitioner b = new ClusterPartitioner(membership, "b", 20, 100, 64);
+        a.refresh();
+        b.refresh();
+
+        // 续约失败但租约未过期，仍处理原来的分区
+        membership.failing.add("a");
+        a.refresh();
+        assertTrue(a.getMembers().contains("a"));
+
+        // 租约过期后其他节点已接管，本节点不再处理任何key
+        Thread.sleep(120);
+        b.refresh();
+        a.refresh();
+        assertEquals(Collections.singleton("b"), a.getMembers());
+        for (int i = 0; i < KEYS; i++) {
+            assertFalse(a.isLocal("T" + i));
+            assertTrue(b.isLocal("T" + i));
+        }
+
+        // 恢复续约后重新加入
+        membership.failing.clear();
+        a.refresh();
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), a.getMembers());
+    }
+
+    @Test
+    public void keepsPartitionWhenMembersUnavailable() {
+        FlakyMembership membership = new FlakyMembership();
+        ClusterPartitioner a = new ClusterPartitioner(membership, "a", 1000, 5000, 64);
+        ClusterPartitioner b = new ClusterPartitioner(membership, "b", 1000, 5000, 64);
+        a.refresh();
+        b.refresh();
+        a.refresh();
+
+        membership.membersUnavailable = true;
+        b.stop();
+        a.refresh();
+        assertEquals(new HashSet<>(Arrays.asList("a", "b")), a.getMembers());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsLeaseShorterThanHeartbeat() {
+        new ClusterPartitioner(new LocalClusterMembership(), "a", 1000, 1000, 64);
+    }
+
+
+    /**
+     * 可模拟指定节点续约失败的集群成员
+     */
+    private static class FlakyMembership implements ClusterMembership {
+
+        private final LocalClusterMembership delegate = new LocalClusterMembership();
+
+        private final Set<String> failing = new HashSet<>();
+
+        private volatile boolean membersUnavailable;
+
+        @Override
+        public void heartbeat(String nodeId, long ttl) throws Exception {
+            if (failing.contains(nodeId)) {
+                throw new IllegalStateException("store unavailable");
+            }
+            delegate.heartbeat(nodeId, ttl);
+        }
+
+        @Override
+        public void leave(String nodeId) {
+            delegate.leave(nodeId);
+        }
+
+        @Override
+        public Set<String> getMembers() {
+            if (membersUnavailable) {
+                throw new IllegalStateException("store unavailable");
+            }
+            return delegate.getMembers();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.developcollect.commonpay.autoconfig.cluster;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 一致性哈希环测试
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 10000;
+
+    @Test
+    public void joiningNodeOnlyTakesKeys() {
+        ConsistentHashRing before = new ConsistentHashRing(Arrays.asList("a", "b", "c"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"), 128);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "T" + i;
+            String from = before.locate(key);
+            String to = after.locate(key);
+            if (!from.equals(to)) {
+                // 只会移到新加入的节点
+                assertEquals(key, "d", to);
+                moved++;
+            }
+        }
+        // 约四分之一的key移到新节点
+        assertTrue("moved " + moved, moved > KEYS / 8 && moved < KEYS / 2);
+    }
+
+    @Test
+    public void leavingNodeOnlyGivesAwayItsKeys() {
+        ConsistentHashRing before = new ConsistentHashRing(Arrays.asList("a", "b", "c"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(Arrays.asList("a", "c"), 128);
+
+        for (int i = 0; i < KEYS; i++) {
+            String key = "T" + i;
+            String from = before.locate(key);
+            if (!"b".equals(from)) {
+                assertEquals(key, from, after.locate(key));
+            }
+        }
+    }
+
+    @Test
+    public void doesNotDependOnNodeOrder() {
+        ConsistentHashRing ring1 = new ConsistentHashRing(Arrays.asList("a", "b", "c"), 64);
+        ConsistentHashRing ring2 = new ConsistentHashRing(Arrays.asList("c", "a", "b"), 64);
+        for (int i = 0; i < KEYS; i++) {
+            assertEquals(ring1.locate("T" + i), ring2.locate("T" + i));
+        }
+    }
+
+    @Test
+    public void spreadsKeysAcrossNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(Arrays.asList("a", "b", "c", "d"), 128);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.locate("T" + i), 1, Integer::sum);
+        }
+        assertEquals(4, counts.size());
+        for (int count : counts.values()) {
+            assertTrue("count " + count, count > KEYS / 8 && count < KEYS / 2);
+        }
+    }
+
+    @Test
+    public void emptyRingLocatesNothing() {
+        ConsistentHashRing ring = new ConsistentHashRing(Collections.emptyList(), 128);
+        assertTrue(ring.isEmpty());
+        assertNull(ring.locate("T1"));
+    }
+}
@@ -0,0 +1,97 @@
+package com.developcollect.commonpay.autoconfig.controller;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 扁平XML读取器测试
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class FlatXmlReaderTest {
+
+    @Test
+    public void readsFlatXml() throws Exception {
+        String xml = "<xml><return_code><![CDATA[SUCCESS]]></return_code><total_fee>1</total_fee><attach></attach></xml>";
+        Map<String, String> params = FlatXmlReader.read(stream(xml), "xml");
+        assertEquals(3, params.size());
+        assertEquals("SUCCESS", params.get("return_code"));
+        assertEquals("1", params.get("total_fee"));
+        assertEquals("", params.get("attach"));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnexpectedRootTag() throws Exception {
+        FlatXmlReader.read(stream("<root><a>1</a></root>"), "xml");
+    }
+
+    @Test
+    public void rejectsDoctype() throws Exception {
+        assertRejected("<!DOCTYPE xml><xml><return_code>SUCCESS</return_code></xml>");
+    }
+
+    @Test
+    public void rejectsExternalEntity() throws Exception {
+        File secret = File.createTempFile("cpay-xxe", ".txt");
+        try {
+            Files.write(secret.toPath(), "TOP-SECRET".getBytes(StandardCharsets.UTF_8));
+            String xml = "<?xml version=\"1.0\"?>"
+                    + "<!DOCTYPE xml [<!ENTITY xxe SYSTEM \"" + secret.toURI() + "\">]>"
+                    + "<xml><return_code>&xxe;</return_code></xml>";
+            assertRejected(xml);
+        } finally {
+            secret.delete();
+        }
+    }
+
+    @Test
+    public void rejectsExternalParameterEntity() throws Exception {
+        String xml = "<?xml version=\"1.0\"?>"
+                + "<!DOCTYPE xml [<!ENTITY % remote SYSTEM \"http://127.0.0.1:1/evil.dtd\"> %remote;]>"
+                + "<xml><return_code>SUCCESS</return_code></xml>";
+        assertRejected(xml);
+    }
+
+    @Test
+    public void rejectsEntityExpansion() throws Exception {
+        String xml = "<?xml version=\"1.0\"?>"
+                + "<!DOCTYPE xml [<!ENTITY a \"aaaaaaaaaa\"><!ENTITY b \"&a;&a;&a;&a;&a;&a;&a;&a;&a;&a;\">]>"
+                + "<xml><return_code>&b;</return_code></xml>";
+        assertRejected(xml);
+    }
+
+
+    /**
+     * 字节流和字符流两个入口都需要拒绝
+     */
+    private void assertRejected(String xml) {
+        try {
+            Map<String, String> params = FlatXmlReader.read(stream(xml), "xml");
+            fail("accepted: " + params);
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage() != null);
+        }
+        try {
+            Map<String, String> params = FlatXmlReader.read(new StringReader(xml), "xml");
+            fail("accepted: " + params);
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage() != null);
+        }
+    }
+
+    private static ByteArrayInputStream stream(String xml) {
+        return new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8));
+    }
+}
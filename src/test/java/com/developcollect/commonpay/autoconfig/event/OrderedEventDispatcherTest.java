@@ -0,0 +1,102 @@
+package com.developcollect.commonpay.autoconfig.event;
+
+import com.developcollect.commonpay.autoconfig.merchant.MerchantContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按订单有序的事件分发器测试
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class OrderedEventDispatcherTest {
+
+    private OrderedEventDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        dispatcher = new OrderedEventDispatcher(EventDispatchMode.POOL, 2, 16, 1000, 1000);
+        dispatcher.start();
+    }
+
+    @After
+    public void tearDown() {
+        dispatcher.stop();
+    }
+
+
+    @Test
+    public void runsListenersUnderSubmittingMerchant() {
+        AtomicReference<String> merchant = new AtomicReference<>();
+        AtomicReference<String> thread = new AtomicReference<>();
+        boolean dispatched = MerchantContext.call("m1", () -> dispatcher.dispatch("T1", () -> {
+            merchant.set(MerchantContext.current());
+            thread.set(Thread.currentThread().getName());
+        }));
+
+        assertTrue(dispatched);
+        assertEquals("m1", merchant.get());
+        assertTrue(thread.get().startsWith("cPay-event-"));
+        assertNull(MerchantContext.current());
+    }
+
+    @Test
+    public void doesNotLeakMerchantToLaterEvents() {
+        MerchantContext.run("m1", () -> dispatcher.dispatch("T1", () -> {
+        }));
+        AtomicReference<String> merchant = new AtomicReference<>("unset");
+        assertTrue(dispatcher.dispatch("T1", () -> merchant.set(MerchantContext.current())));
+
+        assertNull(merchant.get());
+    }
+
+    @Test
+    public void runsEventsOfOneOrderInOrder() throws InterruptedException {
+        List<Integer> executed = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> submitters = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            int seq = i;
+            Thread submitter = new Thread(() -> dispatcher.dispatch("T1", () -> executed.add(seq)));
+            submitters.add(submitter);
+            submitter.start();
+            // 保证提交顺序
+            Thread.sleep(20);
+        }
+        for (Thread submitter : submitters) {
+            submitter.join();
+        }
+
+        assertEquals(5, executed.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, (int) executed.get(i));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rethrowsListenerException() {
+        dispatcher.dispatch("T1", () -> {
+            throw new IllegalArgumentException("boom");
+        });
+    }
+
+    @Test
+    public void runsEventsInlineAfterStop() {
+        dispatcher.stop();
+        // 停止后在提交线程上直接执行
+        AtomicReference<String> thread = new AtomicReference<>();
+        assertTrue(dispatcher.dispatch("T1", () -> thread.set(Thread.currentThread().getName())));
+        assertFalse(thread.get().startsWith("cPay-event-"));
+    }
+}
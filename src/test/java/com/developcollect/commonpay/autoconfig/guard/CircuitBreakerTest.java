@@ -0,0 +1,100 @@
+package com.developcollect.commonpay.autoconfig.guard;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 熔断器测试
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class CircuitBreakerTest {
+
+    @Test
+    public void opensAfterConsecutiveFailures() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 60000);
+        fail(breaker, 2);
+        assertFalse(breaker.isOpen());
+        assertTrue(breaker.tryAcquire());
+
+        fail(breaker, 1);
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void successResetsFailureCount() {
+        CircuitBreaker breaker = new CircuitBreaker(3, 60000);
+        fail(breaker, 2);
+        assertTrue(breaker.tryAcquire());
+        breaker.onSuccess();
+        fail(breaker, 2);
+        assertFalse(breaker.isOpen());
+    }
+
+    @Test
+    public void allowsSingleTrialAfterOpenDuration() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        fail(breaker, 1);
+        assertFalse(breaker.tryAcquire());
+
+        Thread.sleep(60);
+        assertTrue(breaker.tryAcquire());
+        // 试探调用未结束前不放行其他调用
+        assertFalse(breaker.tryAcquire());
+        assertTrue(breaker.isOpen());
+    }
+
+    @Test
+    public void closesWhenTrialSucceeds() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        fail(breaker, 1);
+        Thread.sleep(60);
+        assertTrue(breaker.tryAcquire());
+
+        breaker.onSuccess();
+        assertFalse(breaker.isOpen());
+        assertTrue(breaker.tryAcquire());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void reopensWhenTrialFails() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(5, 50);
+        fail(breaker, 5);
+        Thread.sleep(60);
+        assertTrue(breaker.tryAcquire());
+
+        // 试探失败即重新打开，不需要再次达到阈值
+        breaker.onFailure();
+        assertTrue(breaker.isOpen());
+        assertFalse(breaker.tryAcquire());
+
+        Thread.sleep(60);
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void releaseLetsAnotherTrialThrough() throws Exception {
+        CircuitBreaker breaker = new CircuitBreaker(1, 50);
+        fail(breaker, 1);
+        Thread.sleep(60);
+        assertTrue(breaker.tryAcquire());
+
+        // 试探调用未实际发出
+        breaker.release();
+        assertTrue(breaker.isOpen());
+        assertTrue(breaker.tryAcquire());
+    }
+
+
+    private static void fail(CircuitBreaker breaker, int times) {
+        for (int i = 0; i < times; i++) {
+            breaker.tryAcquire();
+            breaker.onFailure();
+        }
+    }
+}
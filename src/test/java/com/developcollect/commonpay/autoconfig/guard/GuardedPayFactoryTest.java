@@ -0,0 +1,113 @@
+package com.developcollect.commonpay.autoconfig.guard;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 带调用保护的Pay工厂测试
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class GuardedPayFactoryTest {
+
+    @Test
+    public void guardsPayCreatedByCreatePay() throws Exception {
+        PlatformCallGuard guard = guard(1);
+        PayFactory factory = GuardedPayFactory.wrap(PayFactory.class, platform -> new FailingPay(), guard);
+        Pay pay = factory.createPay(1);
+
+        // 第一次失败打开熔断，第二次调用不会发出
+        try {
+            pay.query("T1");
+            fail();
+        } catch (IOException expected) {
+        }
+        try {
+            pay.query("T1");
+            fail();
+        } catch (CallRejectedException e) {
+            assertTrue(e.isCircuitOpen());
+        }
+        // 本地方法不经过熔断
+        assertEquals("<form/>", pay.payForm("T1"));
+        assertEquals(1, guard.getCircuitRejectedCount());
+    }
+
+    @Test
+    public void leavesOtherFactoryMethodsAlone() {
+        Pay pay = new FailingPay();
+        PayFactory factory = GuardedPayFactory.wrap(PayFactory.class, new PayFactory() {
+            @Override
+            public Pay createPay(int payPlatform) {
+                return pay;
+            }
+
+            @Override
+            public Pay defaultPay(int payPlatform) {
+                return pay;
+            }
+        }, guard(10));
+
+        assertSame(pay, factory.defaultPay(1));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsFactoryWithoutCreatePay() {
+        GuardedPayFactory.wrap(Runnable.class, () -> {
+        }, guard(10));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsConcretePayType() {
+        GuardedPayFactory.wrap(ConcretePayFactory.class, platform -> new FailingPay(), guard(10));
+    }
+
+
+    private static PlatformCallGuard guard(int failureThreshold) {
+        return new PlatformCallGuard(Collections.emptyMap(), 100, 100, 0, failureThreshold, 60000,
+                Collections.singletonList("*Form"), Collections.emptyList());
+    }
+
+
+    public interface Pay {
+
+        String query(String outTradeNo) throws IOException;
+
+        String payForm(String outTradeNo);
+    }
+
+    public interface PayFactory {
+
+        Pay createPay(int payPlatform);
+
+        default Pay defaultPay(int payPlatform) {
+            return null;
+        }
+    }
+
+    public interface ConcretePayFactory {
+
+        FailingPay createPay(int payPlatform);
+    }
+
+    public static class FailingPay implements Pay {
+
+        @Override
+        public String query(String outTradeNo) throws IOException {
+            throw new IOException("connect timed out");
+        }
+
+        @Override
+        public String payForm(String outTradeNo) {
+            return "<form/>";
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.developcollect.commonpay.autoconfig.guard;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.Callable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 支付平台接口调用保护测试
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class PlatformCallGuardTest {
+
+    private static final int ALI_PAY = 1;
+
+    private static final int WX_PAY = 2;
+
+    @Test
+    public void opensCircuitOnIoExceptions() throws Exception {
+        PlatformCallGuard guard = guard(1000, 10, 0, 2);
+        callFailing(guard, "m1", new SocketTimeoutException("Read timed out"));
+        callFailing(guard, "m1", new IllegalStateException("请求失败", new IOException("Connection reset")));
+        assertEquals(1, guard.getOpenCircuitCount());
+
+        try {
+            guard.call(ALI_PAY, "m1", () -> "ok");
+            fail();
+        } catch (CallRejectedException e) {
+            assertTrue(e.isCircuitOpen());
+        }
+        assertEquals(1, guard.getCircuitRejectedCount());
+    }
+
+    @Test
+    public void opensCircuitOnThrottleCodes() throws Exception {
+        PlatformCallGuard guard = guard(1000, 10, 0, 2);
+        callFailing(guard, "m1", new RuntimeException("调用失败", new RuntimeException("sub_code=ACQ.SYSTEM_ERROR,aop.ACQ.TRADE_LIMITED")));
+        callFailing(guard, "m1", new RuntimeException("FREQUENCY_LIMITED"));
+        assertEquals(1, guard.getOpenCircuitCount());
+    }
+
+    @Test
+    public void doesNotCountBusinessExceptions() throws Exception {
+        PlatformCallGuard guard = guard(1000, 10, 0, 2);
+        callFailing(guard, "m1", new SocketTimeoutException("Read timed out"));
+        // 业务异常说明支付平台正常响应，清空连续失败数
+        callFailing(guard, "m1", new IllegalArgumentException("ORDERPAID"));
+        callFailing(guard, "m1", new SocketTimeoutException("Read timed out"));
+        callFailing(guard, "m1", new IllegalStateException("订单不存在"));
+        callFailing(guard, "m1", new IllegalStateException(null, null));
+        assertEquals(0, guard.getOpenCircuitCount());
+        assertEquals("ok", guard.call(ALI_PAY, "m1", () -> "ok"));
+    }
+
+    @Test
+    public void survivesCyclicCauses() throws Exception {
+        PlatformCallGuard guard = guard(1000, 10, 0, 1);
+        Cyclic e = new Cyclic();
+        callFailing(guard, "m1", e);
+        assertEquals(0, guard.getOpenCircuitCount());
+    }
+
+    @Test
+    public void isolatesPlatformsAndMerchants() throws Exception {
+        PlatformCallGuard guard = guard(1000, 10, 0, 1);
+        callFailing(guard, "m1", new IOException("Connection reset"));
+
+        assertEquals("ok", guard.call(ALI_PAY, "m2", () -> "ok"));
+        assertEquals("ok", guard.call(ALI_PAY, null, () -> "ok"));
+        assertEquals("ok", guard.call(WX_PAY, "m1", () -> "ok"));
+        assertEquals(1, guard.getOpenCircuitCount());
+    }
+
+    @Test
+    public void rejectsBeyondRateLimitWithoutCalling() throws Exception {
+        PlatformCallGuard guard = guard(1, 1, 0, 1);
+        assertEquals("ok", guard.call(ALI_PAY, "m1", () -> "ok"));
+        try {
+            guard.call(ALI_PAY, "m1", () -> {
+                throw new AssertionError("call should not be sent");
+            });
+            fail();
+        } catch (CallRejectedException e) {
+            assertFalse(e.isCircuitOpen());
+        }
+        assertEquals(1, guard.getRateLimitedCount());
+        assertEquals(0, guard.getOpenCircuitCount());
+        // 其他商户不受影响
+        assertEquals("ok", guard.call(ALI_PAY, "m2", () -> "ok"));
+    }
+
+    @Test
+    public void queuesWithinMaxWait() throws Exception {
+        PlatformCallGuard guard = guard(20, 1, 1000, 1);
+        guard.call(ALI_PAY, "m1", () -> "ok");
+        long start = System.currentTimeMillis();
+        assertEquals("ok", guard.call(ALI_PAY, "m1", () -> "ok"));
+        assertTrue(System.currentTimeMillis() - start >= 30);
+        assertEquals(1, guard.getQueuedCount());
+        assertEquals(0, guard.getRateLimitedCount());
+    }
+
+    @Test
+    public void skipsLocalMethods() {
+        PlatformCallGuard guard = guard(1000, 10, 0, 1);
+        assertFalse(guard.isGuarded("pcPayForm"));
+        assertFalse(guard.isGuarded("wapPayForm"));
+        assertTrue(guard.isGuarded("payQuery"));
+        assertTrue(guard.isGuarded("refund"));
+    }
+
+
+    private static PlatformCallGuard guard(double qps, int burst, long maxWait, int failureThreshold) {
+        return new PlatformCallGuard(Collections.singletonMap(ALI_PAY, qps), 1000, burst, maxWait, failureThreshold, 60000,
+                Collections.singletonList("*PayForm"), Arrays.asList("ACQ.TRADE_LIMITED", "FREQUENCY_LIMITED"));
+    }
+
+    private static void callFailing(PlatformCallGuard guard, String merchantId, Exception e) throws Exception {
+        Callable<Object> call = () -> {
+            throw e;
+        };
+        try {
+            guard.call(ALI_PAY, merchantId, call);
+            fail();
+        } catch (Exception thrown) {
+            assertSame(e, thrown);
+        }
+    }
+
+    private static class Cyclic extends RuntimeException {
+
+        @Override
+        public synchronized Throwable getCause() {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.developcollect.commonpay.autoconfig.guard;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 令牌桶测试
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class TokenBucketTest {
+
+    @Test
+    public void allowsBurstWithoutWaiting() throws Exception {
+        TokenBucket bucket = new TokenBucket(1, 3);
+        assertEquals(0, bucket.acquire(0));
+        assertEquals(0, bucket.acquire(0));
+        assertEquals(0, bucket.acquire(0));
+        // 突发用完后不再多放行一次
+        assertEquals(-1, bucket.acquire(0));
+    }
+
+    @Test
+    public void waitsForNextPermit() throws Exception {
+        TokenBucket bucket = new TokenBucket(20, 1);
+        assertEquals(0, bucket.acquire(0));
+
+        long start = System.nanoTime();
+        long waited = bucket.acquire(1000);
+        long elapsed = System.nanoTime() - start;
+        // 每50ms生成一个令牌
+        assertTrue("waited " + waited, waited > TimeUnit.MILLISECONDS.toNanos(30) && waited <= TimeUnit.MILLISECONDS.toNanos(50));
+        assertTrue("elapsed " + elapsed, elapsed >= waited);
+    }
+
+    @Test
+    public void queuedCallersWaitInTurn() throws Exception {
+        TokenBucket bucket = new TokenBucket(20, 1);
+        bucket.acquire(0);
+        long start = System.nanoTime();
+        bucket.acquire(1000);
+        bucket.acquire(1000);
+        long elapsed = System.nanoTime() - start;
+        assertTrue("elapsed " + elapsed, elapsed >= TimeUnit.MILLISECONDS.toNanos(90));
+    }
+
+    @Test
+    public void rejectsWithoutConsumingWhenWaitTooLong() throws Exception {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        assertEquals(0, bucket.acquire(0));
+
+        // 下一个令牌约100ms后可用
+        assertEquals(-1, bucket.acquire(10));
+        assertEquals(-1, bucket.acquire(10));
+        // 被拒绝的调用没有预约令牌，等待时间不会累加
+        long waited = bucket.acquire(1000);
+        assertTrue("waited " + waited, waited > 0 && waited <= TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void refillsUpToBurstWhileIdle() throws Exception {
+        TokenBucket bucket = new TokenBucket(100, 2);
+        bucket.acquire(0);
+        bucket.acquire(0);
+
+        Thread.sleep(100);
+        // 空闲期间最多积攒2个令牌
+        assertEquals(0, bucket.acquire(0));
+        assertEquals(0, bucket.acquire(0));
+        assertEquals(-1, bucket.acquire(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonPositiveRate() {
+        new TokenBucket(0, 1);
+    }
+}
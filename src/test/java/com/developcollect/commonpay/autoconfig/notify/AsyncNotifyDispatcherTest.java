@@ -0,0 +1,164 @@
+package com.developcollect.commonpay.autoconfig.notify;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Stream;
+
+import static com.developcollect.commonpay.autoconfig.notify.NotifyJournalTest.params;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 异步通知分发器测试
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class AsyncNotifyDispatcherTest {
+
+    private File directory;
+
+    private AsyncNotifyDispatcher dispatcher;
+
+    private NotifyDeduplicator deduplicator;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("cpay-dispatcher").toFile();
+        deduplicator = new NotifyDeduplicator(new LocalNotifyDedupStore(100), null, 60000, 60000);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+
+    @Test
+    public void redeliversUnfinishedNotifiesAfterRestart() throws Exception {
+        // 上次运行时写入日志但未处理完成
+        NotifyJournal journal = new NotifyJournal(directory, true, 1 << 20);
+        journal.open();
+        journal.append(NotifyType.ALI_PAY, params("T1"));
+        journal.ack(journal.append(NotifyType.ALI_PAY, params("T2")).getId());
+        journal.append(NotifyType.WX_PAY, params("T3"));
+        journal.close();
+
+        List<String> handled = Collections.synchronizedList(new ArrayList<>());
+        dispatcher = dispatcher(5);
+        dispatcher.registerHandler(NotifyType.ALI_PAY, params -> handled.add(params.get("out_trade_no")));
+        dispatcher.registerHandler(NotifyType.WX_PAY, params -> handled.add(params.get("out_trade_no")));
+        dispatcher.start();
+
+        await(() -> handled.size() == 2);
+        assertTrue(handled.contains("T1"));
+        assertTrue(handled.contains("T3"));
+        dispatcher.stop();
+        dispatcher = null;
+
+        NotifyJournal reopened = new NotifyJournal(directory, true, 1 << 20);
+        assertTrue(reopened.open().isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    public void retriesUntilHandled() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        dispatcher = dispatcher(5);
+        dispatcher.registerHandler(NotifyType.ALI_PAY, params -> {
+            if (calls.incrementAndGet() < 3) {
+                throw new IllegalStateException("broadcast failed");
+            }
+            done.countDown();
+            return true;
+        });
+        dispatcher.start();
+
+        Map<String, String> params = params("T1");
+        assertEquals(NotifyDeduplicator.Claim.CLAIMED, deduplicator.claim(NotifyType.ALI_PAY, params));
+        assertTrue(dispatcher.submit(NotifyType.ALI_PAY, params));
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(3, calls.get());
+        // 处理成功后才记录为已处理
+        await(() -> deduplicator.claim(NotifyType.ALI_PAY, params) == NotifyDeduplicator.Claim.DUPLICATE);
+    }
+
+    @Test
+    public void deadLettersAfterMaxAttemptsAndReleasesClaim() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        dispatcher = dispatcher(3);
+        dispatcher.registerHandler(NotifyType.WX_PAY, params -> {
+            calls.incrementAndGet();
+            return false;
+        });
+        dispatcher.start();
+
+        Map<String, String> params = params("T1");
+        params.put("transaction_id", "4200T1");
+        assertEquals(NotifyDeduplicator.Claim.CLAIMED, deduplicator.claim(NotifyType.WX_PAY, params));
+        assertTrue(dispatcher.submit(NotifyType.WX_PAY, params));
+
+        File deadLetter = new File(directory, "notify.dead");
+        await(deadLetter::isFile);
+        await(() -> deduplicator.claim(NotifyType.WX_PAY, params) == NotifyDeduplicator.Claim.CLAIMED);
+        assertEquals(3, calls.get());
+        List<String> lines = Files.readAllLines(deadLetter.toPath(), StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).contains("out_trade_no=T1"));
+
+        // 死信不再重试，也不会在重启后重新投递
+        Thread.sleep(100);
+        assertEquals(3, calls.get());
+        dispatcher.stop();
+        dispatcher = null;
+        NotifyJournal reopened = new NotifyJournal(directory, true, 1 << 20);
+        assertTrue(reopened.open().isEmpty());
+        reopened.close();
+    }
+
+    @Test
+    public void rejectsSubmitBeforeStart() {
+        dispatcher = dispatcher(3);
+        assertFalse(dispatcher.submit(NotifyType.ALI_PAY, params("T1")));
+    }
+
+
+    private AsyncNotifyDispatcher dispatcher(int maxAttempts) {
+        NotifyJournal journal = new NotifyJournal(directory, true, 1 << 20);
+        return new AsyncNotifyDispatcher(journal, 2, 16, 10, 20, maxAttempts, deduplicator);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("condition not met in 5s");
+            }
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.developcollect.commonpay.autoconfig.notify;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 本地已处理通知存储测试
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class LocalNotifyDedupStoreTest {
+
+    @Test
+    public void evictsEldestEntries() {
+        LocalNotifyDedupStore store = new LocalNotifyDedupStore(2);
+        store.save("k1", 60000);
+        store.save("k2", 60000);
+        assertTrue(store.claim("k3", 60000));
+
+        assertEquals(2, store.size());
+        assertFalse(store.isProcessed("k1"));
+        assertTrue(store.claim("k1", 60000));
+        assertFalse(store.isProcessed("k2"));
+    }
+
+    @Test
+    public void resavedEntryMovesToEnd() {
+        LocalNotifyDedupStore store = new LocalNotifyDedupStore(2);
+        store.save("k1", 60000);
+        store.save("k2", 60000);
+        store.save("k1", 60000);
+        store.save("k3", 60000);
+
+        assertTrue(store.isProcessed("k1"));
+        assertFalse(store.isProcessed("k2"));
+        assertTrue(store.isProcessed("k3"));
+    }
+
+    @Test
+    public void expiresEntries() throws InterruptedException {
+        LocalNotifyDedupStore store = new LocalNotifyDedupStore(10);
+        store.save("k1", 20);
+        assertTrue(store.isProcessed("k1"));
+        Thread.sleep(40);
+        assertFalse(store.isProcessed("k1"));
+        assertTrue(store.claim("k1", 60000));
+    }
+
+    @Test
+    public void claimFailsWhileProcessingOrProcessed() {
+        LocalNotifyDedupStore store = new LocalNotifyDedupStore(10);
+        assertTrue(store.claim("k1", 60000));
+        assertFalse(store.claim("k1", 60000));
+        assertFalse(store.isProcessed("k1"));
+
+        store.save("k1", 60000);
+        assertFalse(store.claim("k1", 60000));
+        assertTrue(store.isProcessed("k1"));
+    }
+
+    @Test
+    public void releaseOnlyRemovesClaims() {
+        LocalNotifyDedupStore store = new LocalNotifyDedupStore(10);
+        store.claim("k1", 60000);
+        store.release("k1");
+        assertEquals(0, store.size());
+
+        store.save("k2", 60000);
+        store.release("k2");
+        assertTrue(store.isProcessed("k2"));
+    }
+}
@@ -0,0 +1,223 @@
+package com.developcollect.commonpay.autoconfig.notify;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.developcollect.commonpay.autoconfig.notify.NotifyDeduplicator.Claim.CLAIMED;
+import static com.developcollect.commonpay.autoconfig.notify.NotifyDeduplicator.Claim.DUPLICATE;
+import static com.developcollect.commonpay.autoconfig.notify.NotifyDeduplicator.Claim.PROCESSING;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 重复通知过滤器测试
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class NotifyDeduplicatorTest {
+
+    @Test
+    public void claimsProcessesAndAnswersDuplicates() {
+        NotifyDeduplicator deduplicator = deduplicator(null);
+        Map<String, String> params = aliPay("T1", "TRADE_SUCCESS");
+
+        assertEquals(CLAIMED, deduplicator.claim(NotifyType.ALI_PAY, params));
+        // 处理中再次推送
+        assertEquals(PROCESSING, deduplicator.claim(NotifyType.ALI_PAY, params));
+        deduplicator.markProcessed(NotifyType.ALI_PAY, params);
+        assertEquals(DUPLICATE, deduplicator.claim(NotifyType.ALI_PAY, params));
+
+        assertEquals(1, deduplicator.getMissCount());
+        assertEquals(2, deduplicator.getHitCount());
+    }
+
+    @Test
+    public void releasesFailedNotify() {
+        NotifyDeduplicator deduplicator = deduplicator(null);
+        Map<String, String> params = aliPay("T1", "TRADE_SUCCESS");
+
+        assertEquals(CLAIMED, deduplicator.claim(NotifyType.ALI_PAY, params));
+        deduplicator.release(NotifyType.ALI_PAY, params);
+        assertEquals(CLAIMED, deduplicator.claim(NotifyType.ALI_PAY, params));
+    }
+
+    @Test
+    public void releaseDoesNotForgetProcessedNotify() {
+        NotifyDeduplicator deduplicator = deduplicator(null);
+        Map<String, String> params = aliPay("T1", "TRADE_SUCCESS");
+
+        deduplicator.claim(NotifyType.ALI_PAY, params);
+        deduplicator.markProcessed(NotifyType.ALI_PAY, params);
+        deduplicator.release(NotifyType.ALI_PAY, params);
+        assertEquals(DUPLICATE, deduplicator.claim(NotifyType.ALI_PAY, params));
+    }
+
+    @Test
+    public void reclaimsAfterClaimExpires() throws InterruptedException {
+        NotifyDeduplicator deduplicator = new NotifyDeduplicator(new LocalNotifyDedupStore(100), null, 60000, 20);
+        Map<String, String> params = aliPay("T1", "TRADE_SUCCESS");
+
+        assertEquals(CLAIMED, deduplicator.claim(NotifyType.ALI_PAY, params));
+        Thread.sleep(40);
+        // 处理中途退出的节点超过占用时间后可以重新处理
+        assertEquals(CLAIMED, deduplicator.claim(NotifyType.ALI_PAY, params));
+    }
+
+    @Test
+    public void alwaysClaimsNotifyWithoutKey() {
+        NotifyDeduplicator deduplicator = deduplicator(null);
+        Map<String, String> params = new HashMap<>();
+        params.put("trade_no", "2020T1");
+
+        assertEquals(CLAIMED, deduplicator.claim(NotifyType.ALI_PAY, params));
+        assertEquals(CLAIMED, deduplicator.claim(NotifyType.ALI_PAY, params));
+        assertEquals(0, deduplicator.getLocalSize());
+    }
+
+    @Test
+    public void answersDuplicateProcessedOnAnotherNode() {
+        SharedStore shared = new SharedStore();
+        Map<String, String> params = wxPay("T1");
+        NotifyDeduplicator node1 = deduplicator(shared);
+        NotifyDeduplicator node2 = deduplicator(shared);
+
+        assertEquals(CLAIMED, node1.claim(NotifyType.WX_PAY, params));
+        assertEquals(PROCESSING, node2.claim(NotifyType.WX_PAY, params));
+        // 另一节点正在处理时不在本地占用
+        assertEquals(0, node2.getLocalSize());
+
+        node1.markProcessed(NotifyType.WX_PAY, params);
+        assertEquals(DUPLICATE, node2.claim(NotifyType.WX_PAY, params));
+        // 之后直接由本地存储应答
+        assertEquals(1, node2.getLocalSize());
+    }
+
+    @Test
+    public void fallsBackToLocalStoreWhenSharedStoreFails() {
+        SharedStore shared = new SharedStore();
+        shared.failing = true;
+        NotifyDeduplicator deduplicator = deduplicator(shared);
+        Map<String, String> params = wxPay("T1");
+
+        assertEquals(CLAIMED, deduplicator.claim(NotifyType.WX_PAY, params));
+        deduplicator.markProcessed(NotifyType.WX_PAY, params);
+        assertEquals(DUPLICATE, deduplicator.claim(NotifyType.WX_PAY, params));
+    }
+
+
+    @Test
+    public void aliPayKeyIncludesTradeStatus() {
+        String waiting = NotifyDeduplicator.key(NotifyType.ALI_PAY, aliPay("T1", "WAIT_BUYER_PAY"));
+        String success = NotifyDeduplicator.key(NotifyType.ALI_PAY, aliPay("T1", "TRADE_SUCCESS"));
+
+        assertEquals("ALI_PAY:T1:2020T1:TRADE_SUCCESS", success);
+        assertNotEquals(waiting, success);
+    }
+
+    @Test
+    public void wxPayKeyUsesTransactionId() {
+        assertEquals("WX_PAY:T1:4200T1", NotifyDeduplicator.key(NotifyType.WX_PAY, wxPay("T1")));
+    }
+
+    @Test
+    public void wxRefundKeyIncludesRefundNoAndStatus() {
+        Map<String, String> processing = wxRefund("T1", "R1", "PROCESSING");
+        Map<String, String> success = wxRefund("T1", "R1", "SUCCESS");
+        Map<String, String> otherRefund = wxRefund("T1", "R2", "SUCCESS");
+
+        assertEquals("WX_REFUND:T1:4200T1:R1:SUCCESS", NotifyDeduplicator.key(NotifyType.WX_REFUND, success));
+        assertNotEquals(NotifyDeduplicator.key(NotifyType.WX_REFUND, processing), NotifyDeduplicator.key(NotifyType.WX_REFUND, success));
+        assertNotEquals(NotifyDeduplicator.key(NotifyType.WX_REFUND, success), NotifyDeduplicator.key(NotifyType.WX_REFUND, otherRefund));
+
+        success.remove("out_refund_no");
+        assertNull(NotifyDeduplicator.key(NotifyType.WX_REFUND, success));
+    }
+
+    @Test
+    public void keysDifferByNotifyType() {
+        Map<String, String> params = wxRefund("T1", "R1", "SUCCESS");
+        assertNotEquals(NotifyDeduplicator.key(NotifyType.WX_PAY, params), NotifyDeduplicator.key(NotifyType.WX_REFUND, params));
+        assertNull(NotifyDeduplicator.key(NotifyType.WX_PAY, new HashMap<>()));
+    }
+
+    @Test
+    public void ignoresMerchantParam() {
+        Map<String, String> params = wxPay("T1");
+        String key = NotifyDeduplicator.key(NotifyType.WX_PAY, params);
+        params.put("_cpay_merchant_id", "m1");
+        assertEquals(key, NotifyDeduplicator.key(NotifyType.WX_PAY, params));
+    }
+
+
+    private static NotifyDeduplicator deduplicator(NotifyDedupStore sharedStore) {
+        return new NotifyDeduplicator(new LocalNotifyDedupStore(100), sharedStore, 60000, 60000);
+    }
+
+    private static Map<String, String> aliPay(String outTradeNo, String tradeStatus) {
+        Map<String, String> params = new HashMap<>();
+        params.put("out_trade_no", outTradeNo);
+        params.put("trade_no", "2020" + outTradeNo);
+        params.put("trade_status", tradeStatus);
+        return params;
+    }
+
+    private static Map<String, String> wxPay(String outTradeNo) {
+        Map<String, String> params = new HashMap<>();
+        params.put("out_trade_no", outTradeNo);
+        params.put("transaction_id", "4200" + outTradeNo);
+        return params;
+    }
+
+    private static Map<String, String> wxRefund(String outTradeNo, String outRefundNo, String refundStatus) {
+        Map<String, String> params = wxPay(outTradeNo);
+        params.put("out_refund_no", outRefundNo);
+        params.put("refund_status", refundStatus);
+        return params;
+    }
+
+
+    /**
+     * 模拟多节点共享的存储
+     */
+    private static class SharedStore implements NotifyDedupStore {
+
+        private final Map<String, Boolean> entries = new ConcurrentHashMap<>();
+
+        private boolean failing;
+
+        @Override
+        public boolean claim(String key, long ttl) {
+            check();
+            return entries.putIfAbsent(key, Boolean.FALSE) == null;
+        }
+
+        @Override
+        public boolean isProcessed(String key) {
+            check();
+            return Boolean.TRUE.equals(entries.get(key));
+        }
+
+        @Override
+        public void save(String key, long ttl) {
+            check();
+            entries.put(key, Boolean.TRUE);
+        }
+
+        @Override
+        public void release(String key) {
+            check();
+            entries.remove(key, Boolean.FALSE);
+        }
+
+        private void check() {
+            if (failing) {
+                throw new IllegalStateException("shared store unavailable");
+            }
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.developcollect.commonpay.autoconfig.notify;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 异步通知日志测试
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class NotifyJournalTest {
+
+    private File directory;
+
+    private NotifyJournal journal;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("cpay-journal").toFile();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+        try (Stream<Path> paths = Files.walk(directory.toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+
+    @Test
+    public void replaysUnackedRecordsAfterRestart() throws IOException {
+        journal = open(1 << 20);
+        NotifyRecord first = journal.append(NotifyType.ALI_PAY, params("T1"));
+        NotifyRecord second = journal.append(NotifyType.WX_REFUND, params("T2"));
+        journal.append(NotifyType.WX_PAY, params("T3"));
+        journal.ack(first.getId());
+        journal.close();
+
+        journal = new NotifyJournal(directory, true, 1 << 20);
+        List<NotifyRecord> replay = journal.open();
+
+        assertEquals(2, replay.size());
+        assertEquals(second.getId(), replay.get(0).getId());
+        assertEquals(NotifyType.WX_REFUND, replay.get(0).getType());
+        assertEquals(params("T2"), replay.get(0).getParams());
+        assertEquals("T3", replay.get(1).getParams().get("out_trade_no"));
+        // 重启后的id不与日志中已有的重复
+        assertTrue(journal.append(NotifyType.ALI_PAY, params("T4")).getId() > replay.get(1).getId());
+    }
+
+    @Test
+    public void encodesSpecialCharacters() throws IOException {
+        journal = open(1 << 20);
+        Map<String, String> params = params("T1");
+        params.put("body", "a=b&c\td\n中文");
+        journal.append(NotifyType.ALI_PAY, params);
+        journal.close();
+
+        journal = new NotifyJournal(directory, true, 1 << 20);
+        assertEquals(params, journal.open().get(0).getParams());
+    }
+
+    @Test
+    public void skipsTruncatedLastLine() throws IOException {
+        journal = open(1 << 20);
+        journal.append(NotifyType.ALI_PAY, params("T1"));
+        journal.close();
+        Files.write(journalFile(), "N\t2\tALI_P".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        journal = new NotifyJournal(directory, true, 1 << 20);
+        assertEquals(1, journal.open().size());
+    }
+
+    @Test
+    public void compactsToPendingRecordsOnAck() throws IOException {
+        journal = open(256);
+        NotifyRecord pending = journal.append(NotifyType.ALI_PAY, params("P1"));
+        for (int i = 0; i < 20; i++) {
+            journal.ack(journal.append(NotifyType.ALI_PAY, params("T" + i)).getId());
+        }
+
+        List<String> lines = Files.readAllLines(journalFile(), StandardCharsets.UTF_8);
+        assertTrue("journal was not compacted: " + lines.size(), lines.size() < 10);
+        assertTrue(lines.get(0).startsWith("N\t" + pending.getId() + "\t"));
+        journal.close();
+
+        journal = new NotifyJournal(directory, true, 256);
+        List<NotifyRecord> replay = journal.open();
+        assertEquals(1, replay.size());
+        assertEquals("P1", replay.get(0).getParams().get("out_trade_no"));
+    }
+
+    @Test
+    public void keepsAppendingAfterFailedCompaction() throws IOException {
+        journal = open(0);
+        // 临时文件被目录占用，重写失败
+        File tmp = new File(directory, "notify.journal.tmp");
+        assertTrue(tmp.mkdir());
+        NotifyRecord record = journal.append(NotifyType.ALI_PAY, params("T1"));
+        try {
+            journal.ack(record.getId());
+            fail();
+        } catch (IOException expected) {
+        }
+
+        NotifyRecord next = journal.append(NotifyType.ALI_PAY, params("T2"));
+        journal.close();
+        assertTrue(tmp.delete());
+
+        journal = new NotifyJournal(directory, true, 1 << 20);
+        List<NotifyRecord> replay = journal.open();
+        assertEquals(1, replay.size());
+        assertEquals(next.getId(), replay.get(0).getId());
+    }
+
+    @Test
+    public void movesDeadLetterOutOfJournal() throws IOException {
+        journal = open(1 << 20);
+        NotifyRecord record = journal.append(NotifyType.WX_PAY, params("T1"));
+        journal.deadLetter(record);
+        journal.close();
+
+        List<String> dead = Files.readAllLines(new File(directory, "notify.dead").toPath(), StandardCharsets.UTF_8);
+        assertEquals(1, dead.size());
+        assertTrue(dead.get(0).startsWith("N\t" + record.getId() + "\tWX_PAY\t"));
+        assertTrue(dead.get(0).contains("out_trade_no=T1"));
+
+        journal = new NotifyJournal(directory, true, 1 << 20);
+        assertTrue(journal.open().isEmpty());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void keepsReadOnlyCopyOfParams() throws IOException {
+        journal = open(1 << 20);
+        Map<String, String> params = params("T1");
+        NotifyRecord record = journal.append(NotifyType.ALI_PAY, params);
+        params.put("out_trade_no", "T2");
+
+        assertEquals("T1", record.getParams().get("out_trade_no"));
+        record.getParams().put("_cpay_merchant_id", "m1");
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsAppendBeforeOpen() throws IOException {
+        new NotifyJournal(directory, true, 1 << 20).append(NotifyType.ALI_PAY, Collections.emptyMap());
+    }
+
+    @Test
+    public void createsMissingDirectory() throws IOException {
+        File nested = new File(directory, "a/b");
+        journal = new NotifyJournal(nested, false, 1 << 20);
+        assertTrue(journal.open().isEmpty());
+        assertFalse(journal.append(NotifyType.ALI_PAY, params("T1")).getParams().isEmpty());
+        assertTrue(new File(nested, "notify.journal").isFile());
+    }
+
+
+    private NotifyJournal open(long compactThreshold) throws IOException {
+        NotifyJournal journal = new NotifyJournal(directory, true, compactThreshold);
+        assertTrue(journal.open().isEmpty());
+        return journal;
+    }
+
+    private Path journalFile() {
+        return new File(directory, "notify.journal").toPath();
+    }
+
+    static Map<String, String> params(String outTradeNo) {
+        Map<String, String> params = new HashMap<>();
+        params.put("out_trade_no", outTradeNo);
+        params.put("trade_no", "2020" + outTradeNo);
+        params.put("trade_status", "TRADE_SUCCESS");
+        return params;
+    }
+}
@@ -0,0 +1,224 @@
+package com.developcollect.commonpay.autoconfig.query;
+
+import com.developcollect.commonpay.autoconfig.guard.CallRejectedException;
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 主动查询引擎测试
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class ActiveQueryEngineTest {
+
+    private static final int SLOW_PLATFORM = 1;
+
+    private static final int FAST_PLATFORM = 2;
+
+    private ActiveQueryEngine engine;
+
+    @After
+    public void tearDown() {
+        if (engine != null) {
+            engine.stop();
+        }
+    }
+
+
+    @Test
+    public void busyPlatformDoesNotBlockOthers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger maxRunning = new AtomicInteger();
+        Source source = new Source(item -> {
+            if (item.startsWith("s")) {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+            return true;
+        });
+        source.add("s", 5);
+        source.add("t", 20);
+        Map<Integer, Integer> concurrency = new HashMap<>();
+        concurrency.put(SLOW_PLATFORM, 1);
+        engine = engine(source, new QueryBackoff(0, 1, 1000, 0), concurrency);
+        engine.start();
+
+        // 慢平台只有一个查询在执行，快平台的单据全部查询完成
+        await(() -> source.queried("t") == 20);
+        assertEquals(1, source.queried("s"));
+        assertEquals(4, engine.getScheduledCount());
+
+        // 慢平台的查询完成后依次发出等待队列中的单据
+        release.countDown();
+        await(() -> source.queried("s") == 5);
+        assertEquals(1, maxRunning.get());
+        await(() -> engine.getConfirmedCount() == 25);
+        assertEquals(0, engine.getScheduledCount());
+        assertEquals(0, engine.getBacklog("test"));
+    }
+
+    @Test
+    public void requeriesUnconfirmedItemsWithBackoff() throws Exception {
+        Source source = new Source(item -> false);
+        source.add("t", 1);
+        engine = engine(source, new QueryBackoff(10, 2, 80, 0), Collections.emptyMap());
+        engine.start();
+
+        // 间隔为10、20、40、80ms，约300ms内查询5到6次
+        Thread.sleep(300);
+        int queried = source.queried("t");
+        assertTrue("queried " + queried, queried >= 4 && queried <= 7);
+        assertEquals(1, engine.getBacklog("test"));
+    }
+
+    @Test
+    public void stopsQueryingExpiredItems() throws Exception {
+        Source source = new Source(item -> false);
+        source.add("t", 1);
+        engine = engine(source, new QueryBackoff(10, 1, 10, 100), Collections.emptyMap());
+        engine.start();
+
+        Thread.sleep(250);
+        int queried = source.queried("t");
+        Thread.sleep(100);
+        assertEquals(queried, source.queried("t"));
+        assertEquals(0, engine.getBacklog("test"));
+        assertEquals(0, engine.getScheduledCount());
+    }
+
+    @Test
+    public void retriesRejectedCallsWithoutCountingAttempts() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        Source source = new Source(item -> {
+            if (calls.incrementAndGet() <= 3) {
+                throw new CallRejectedException("rate limited", false);
+            }
+            return true;
+        });
+        source.add("t", 1);
+        engine = engine(source, new QueryBackoff(10, 2, 1000, 0), Collections.emptyMap());
+        engine.start();
+
+        await(() -> engine.getConfirmedCount() == 1);
+        assertEquals(4, calls.get());
+        // 被拒绝的调用未发出，不计入查询次数
+        assertEquals(1, engine.getQueriedCount());
+        assertEquals(0, engine.getFailedCount());
+    }
+
+    @Test
+    public void dropsItemsConfirmedElsewhereOnFullSweep() throws Exception {
+        Source source = new Source(item -> false);
+        source.add("t", 3);
+        engine = engine(source, new QueryBackoff(60000, 1, 60000, 0), Collections.emptyMap());
+        engine.start();
+        await(() -> engine.getBacklog("test") == 3);
+
+        // 通过异步通知确认后不再出现在来源中
+        source.items.remove("t01");
+        engine.sweep();
+        assertEquals(2, engine.getBacklog("test"));
+    }
+
+
+    private static ActiveQueryEngine engine(Source source, QueryBackoff backoff, Map<Integer, Integer> platformConcurrency) {
+        return new ActiveQueryEngine(Collections.singletonList(source), 100, 8, 0, 60000, backoff, platformConcurrency, 8);
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("condition not met in 5s");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+
+    /**
+     * 单据为字符串，s开头的属于慢平台，其他属于快平台
+     */
+    private static class Source implements PendingQuerySource<String> {
+
+        private final Set<String> items = Collections.newSetFromMap(new ConcurrentHashMap<>());
+
+        private final Map<String, AtomicInteger> queried = new ConcurrentHashMap<>();
+
+        private final Query query;
+
+        private Source(Query query) {
+            this.query = query;
+        }
+
+        private void add(String prefix, int count) {
+            for (int i = 0; i < count; i++) {
+                items.add(String.format("%s%02d", prefix, i));
+            }
+        }
+
+        private int queried(String prefix) {
+            AtomicInteger count = queried.get(prefix);
+            return count == null ? 0 : count.get();
+        }
+
+        @Override
+        public String getName() {
+            return "test";
+        }
+
+        @Override
+        public List<String> fetch(String cursor, int limit) {
+            List<String> batch = new ArrayList<>(items);
+            Collections.sort(batch);
+            batch.removeIf(item -> cursor != null && item.compareTo(cursor) <= 0);
+            return batch.size() > limit ? batch.subList(0, limit) : batch;
+        }
+
+        @Override
+        public String cursor(String item) {
+            return item;
+        }
+
+        @Override
+        public int payPlatform(String item) {
+            return item.startsWith("s") ? SLOW_PLATFORM : FAST_PLATFORM;
+        }
+
+        @Override
+        public boolean query(String item) throws Exception {
+            queried.computeIfAbsent(item.substring(0, 1), k -> new AtomicInteger()).incrementAndGet();
+            boolean confirmed = query.query(item);
+            if (confirmed) {
+                items.remove(item);
+            }
+            return confirmed;
+        }
+    }
+
+    private interface Query {
+        boolean query(String item) throws Exception;
+    }
+}
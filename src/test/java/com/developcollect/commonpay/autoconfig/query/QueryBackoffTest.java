@@ -0,0 +1,59 @@
+package com.developcollect.commonpay.autoconfig.query;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 主动查询退避策略测试
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class QueryBackoffTest {
+
+    @Test
+    public void growsDelayUpToMax() {
+        QueryBackoff backoff = new QueryBackoff(1000, 2, 10000, 0);
+
+        assertEquals(1000, backoff.firstDelay());
+        assertEquals(2000, backoff.nextDelay(1));
+        assertEquals(4000, backoff.nextDelay(2));
+        assertEquals(8000, backoff.nextDelay(3));
+        assertEquals(10000, backoff.nextDelay(4));
+        // 次数很大时不溢出
+        assertEquals(10000, backoff.nextDelay(10000));
+    }
+
+    @Test
+    public void keepsFixedDelayWithMultiplierOne() {
+        QueryBackoff backoff = new QueryBackoff(5000, 1, 60000, 0);
+        assertEquals(5000, backoff.nextDelay(1));
+        assertEquals(5000, backoff.nextDelay(100));
+    }
+
+    @Test
+    public void capsFirstDelayAtMax() {
+        assertEquals(3000, new QueryBackoff(5000, 2, 3000, 0).firstDelay());
+    }
+
+    @Test
+    public void expiresAfterConfiguredAge() {
+        QueryBackoff backoff = new QueryBackoff(1000, 2, 10000, 60000);
+        assertFalse(backoff.isExpired(59999));
+        assertTrue(backoff.isExpired(60000));
+    }
+
+    @Test
+    public void neverExpiresWithoutExpireAfter() {
+        assertFalse(new QueryBackoff(1000, 2, 10000, 0).isExpired(Long.MAX_VALUE));
+        assertFalse(new QueryBackoff(1000, 2, 10000, -1).isExpired(Long.MAX_VALUE));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsShrinkingMultiplier() {
+        new QueryBackoff(1000, 0.5, 10000, 0);
+    }
+}
@@ -0,0 +1,304 @@
+package com.developcollect.commonpay.autoconfig.verify;
+
+import cn.hutool.core.codec.Base64;
+import com.developcollect.commonpay.config.AliPayConfig;
+import com.developcollect.commonpay.pay.alipay.utils.AlipaySignature;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 支付宝异步通知验签器测试
+ * 验签结果需要与支付宝SDK的rsaCheckV1、rsaCertContentCheckV1一致
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class AliPayNotifyVerifierTest {
+
+    private static KeyPair keyPair;
+
+    private static String publicKey;
+
+    private static final String PASSWORD = "changeit";
+
+    private static final String CERT_ALIAS = "alipay";
+
+    /**
+     * 更换后的支付宝公钥证书
+     */
+    private static final String RENEWED_CERT_ALIAS = "alipay-renewed";
+
+    private static KeyStore certKeyStore;
+
+    private static String certContent;
+
+    private static String renewedCertContent;
+
+    private final AliPayNotifyVerifier verifier = new AliPayNotifyVerifier();
+
+
+    @BeforeClass
+    public static void generateKeyPair() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+        publicKey = Base64.encode(keyPair.getPublic().getEncoded());
+        certKeyStore = generateCertificates(CERT_ALIAS, RENEWED_CERT_ALIAS);
+        certContent = pem(CERT_ALIAS);
+        renewedCertContent = pem(RENEWED_CERT_ALIAS);
+    }
+
+
+    @Test
+    public void validRsa2MatchesSdk() throws Exception {
+        Map<String, String> params = notifyParams("SHA256WithRSA", "RSA2");
+        assertSameAsSdk(params, "RSA2", true);
+    }
+
+    @Test
+    public void validRsaMatchesSdk() throws Exception {
+        Map<String, String> params = notifyParams("SHA1WithRSA", "RSA");
+        assertSameAsSdk(params, "RSA", true);
+    }
+
+    @Test
+    public void tamperedPayloadMatchesSdk() throws Exception {
+        Map<String, String> params = notifyParams("SHA256WithRSA", "RSA2");
+        params.put("total_amount", "100.00");
+        assertSameAsSdk(params, "RSA2", false);
+    }
+
+    @Test
+    public void tamperedSignMatchesSdk() throws Exception {
+        Map<String, String> params = notifyParams("SHA256WithRSA", "RSA2");
+        byte[] sign = Base64.decode(params.get("sign"));
+        sign[0] ^= 1;
+        params.put("sign", Base64.encode(sign));
+        assertSameAsSdk(params, "RSA2", false);
+    }
+
+    @Test
+    public void malformedSignDoesNotPoisonPooledSignature() throws Exception {
+        AliPayConfig payConfig = payConfig("RSA2");
+        Map<String, String> malformed = notifyParams("SHA256WithRSA", "RSA2");
+        malformed.put("sign", Base64.encode(new byte[]{1, 2, 3}));
+        try {
+            assertFalse(verifier.verify(payConfig, malformed));
+        } catch (Exception e) {
+            // 签名长度不对时部分JDK抛出SignatureException
+        }
+        assertTrue(verifier.verify(payConfig, notifyParams("SHA256WithRSA", "RSA2")));
+    }
+
+    @Test
+    public void missingSignFails() throws Exception {
+        Map<String, String> params = notifyParams("SHA256WithRSA", "RSA2");
+        params.remove("sign");
+        assertFalse(verifier.verify(payConfig("RSA2"), params));
+    }
+
+    @Test
+    public void unsupportedSignTypeFails() throws Exception {
+        try {
+            verifier.verify(payConfig("MD5"), notifyParams("SHA256WithRSA", "RSA2"));
+            fail();
+        } catch (GeneralSecurityException e) {
+            // expected
+        }
+    }
+
+
+    @Test
+    public void validCertMatchesSdk() throws Exception {
+        Map<String, String> params = notifyParams(privateKey(CERT_ALIAS), "SHA256WithRSA", "RSA2");
+        assertSameAsCertSdk(params, certContent, true);
+    }
+
+    @Test
+    public void tamperedCertPayloadMatchesSdk() throws Exception {
+        Map<String, String> params = notifyParams(privateKey(CERT_ALIAS), "SHA256WithRSA", "RSA2");
+        params.put("total_amount", "100.00");
+        assertSameAsCertSdk(params, certContent, false);
+    }
+
+    @Test
+    public void otherCertMatchesSdk() throws Exception {
+        Map<String, String> params = notifyParams(privateKey(RENEWED_CERT_ALIAS), "SHA256WithRSA", "RSA2");
+        assertSameAsCertSdk(params, certContent, false);
+    }
+
+    @Test
+    public void parsesPublicKeyFromCert() throws Exception {
+        PublicKey parsed = verifier.getPublicKey(certPayConfig(() -> certContent));
+        assertEquals(certKeyStore.getCertificate(CERT_ALIAS).getPublicKey(), parsed);
+    }
+
+    @Test
+    public void reusesParsedKeyWhileCertUnchanged() throws Exception {
+        AliPayConfig payConfig = certPayConfig(() -> certContent);
+        assertSame(verifier.getPublicKey(payConfig), verifier.getPublicKey(payConfig));
+        // 证书内容相同但不是同一个字符串对象时也使用缓存
+        assertSame(verifier.getPublicKey(payConfig), verifier.getPublicKey(certPayConfig(() -> new String(certContent))));
+    }
+
+    @Test
+    public void refreshesCachedKeyWhenCertChanges() throws Exception {
+        AtomicReference<String> current = new AtomicReference<>(certContent);
+        AliPayConfig payConfig = certPayConfig(current::get);
+        PublicKey before = verifier.getPublicKey(payConfig);
+        assertTrue(verifier.verify(payConfig, notifyParams(privateKey(CERT_ALIAS), "SHA256WithRSA", "RSA2")));
+
+        // 支付宝公钥证书更换后，新证书签名的通知能通过验签，旧证书签名的不能通过
+        current.set(renewedCertContent);
+        PublicKey after = verifier.getPublicKey(payConfig);
+        assertNotEquals(before, after);
+        assertEquals(certKeyStore.getCertificate(RENEWED_CERT_ALIAS).getPublicKey(), after);
+        assertTrue(verifier.verify(payConfig, notifyParams(privateKey(RENEWED_CERT_ALIAS), "SHA256WithRSA", "RSA2")));
+        assertFalse(verifier.verify(payConfig, notifyParams(privateKey(CERT_ALIAS), "SHA256WithRSA", "RSA2")));
+    }
+
+    @Test
+    public void missingCertContentFails() throws Exception {
+        try {
+            verifier.getPublicKey(certPayConfig(() -> null));
+            fail();
+        } catch (GeneralSecurityException e) {
+            // expected
+        }
+    }
+
+
+    private void assertSameAsCertSdk(Map<String, String> params, String certContent, boolean expected) throws Exception {
+        boolean sdk = AlipaySignature.rsaCertContentCheckV1(new HashMap<>(params), certContent, "UTF-8", "RSA2");
+        boolean actual = verifier.verify(certPayConfig(() -> certContent), new HashMap<>(params));
+        assertEquals(expected, sdk);
+        assertEquals(sdk, actual);
+    }
+
+    private void assertSameAsSdk(Map<String, String> params, String signType, boolean expected) throws Exception {
+        // 两边都会移除sign和sign_type，各自使用副本
+        boolean sdk = AlipaySignature.rsaCheckV1(new HashMap<>(params), publicKey, "UTF-8", signType);
+        boolean actual = verifier.verify(payConfig(signType), new HashMap<>(params));
+        assertEquals(expected, sdk);
+        assertEquals(sdk, actual);
+    }
+
+    private AliPayConfig payConfig(String signType) {
+        AliPayConfig payConfig = new AliPayConfig();
+        payConfig
+                .setPublicKey(publicKey)
+                .setCharset("UTF-8")
+                .setSignType(signType);
+        return payConfig;
+    }
+
+    private AliPayConfig certPayConfig(Supplier<String> certContent) {
+        AliPayConfig payConfig = new AliPayConfig();
+        payConfig
+                .setAppCertContentSupplier(certContent)
+                .setAlipayCertContentSupplier(certContent)
+                .setAlipayRootCertContentSupplier(certContent)
+                .setCharset("UTF-8")
+                .setSignType("RSA2");
+        return payConfig;
+    }
+
+    private static String pem(String alias) throws Exception {
+        return "-----BEGIN CERTIFICATE-----\n"
+                + Base64.encode(certKeyStore.getCertificate(alias).getEncoded())
+                + "\n-----END CERTIFICATE-----\n";
+    }
+
+    private static PrivateKey privateKey(String alias) throws Exception {
+        return (PrivateKey) certKeyStore.getKey(alias, PASSWORD.toCharArray());
+    }
+
+    /**
+     * 使用keytool生成自签名的支付宝公钥证书和对应的私钥
+     */
+    private static KeyStore generateCertificates(String... aliases) throws Exception {
+        File file = File.createTempFile("cpay-alipay", ".p12");
+        file.delete();
+        try {
+            for (String alias : aliases) {
+                Process keytool = new ProcessBuilder(
+                        new File(System.getProperty("java.home"), "bin/keytool").getPath(),
+                        "-genkeypair", "-alias", alias, "-keyalg", "RSA", "-keysize", "2048", "-validity", "1",
+                        "-dname", "CN=Alipay Test", "-storetype", "PKCS12", "-keystore", file.getPath(),
+                        "-storepass", PASSWORD, "-keypass", PASSWORD
+                ).inheritIO().start();
+                if (keytool.waitFor() != 0) {
+                    throw new IllegalStateException("keytool failed");
+                }
+            }
+            KeyStore keyStore = KeyStore.getInstance("PKCS12");
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                keyStore.load(in, PASSWORD.toCharArray());
+            }
+            return keyStore;
+        } finally {
+            file.delete();
+        }
+    }
+
+    private Map<String, String> notifyParams(String algorithm, String signType) throws Exception {
+        return notifyParams(keyPair.getPrivate(), algorithm, signType);
+    }
+
+    private Map<String, String> notifyParams(PrivateKey privateKey, String algorithm, String signType) throws Exception {
+        Map<String, String> params = new LinkedHashMap<>();
+        params.put("gmt_create", "2020-08-01 10:00:00");
+        params.put("charset", "UTF-8");
+        params.put("subject", "测试商品");
+        params.put("notify_type", "trade_status_sync");
+        params.put("trade_status", "TRADE_SUCCESS");
+        params.put("app_id", "2016101000652345");
+        params.put("out_trade_no", "T20200801000001");
+        params.put("total_amount", "0.01");
+        params.put("trade_no", "2020080122001446881000012345");
+        params.put("fund_bill_list", "[{\"amount\":\"0.01\",\"fundChannel\":\"ALIPAYACCOUNT\"}]");
+
+        List<String> keys = new ArrayList<>(params.keySet());
+        Collections.sort(keys);
+        StringBuilder content = new StringBuilder();
+        for (String key : keys) {
+            if (content.length() > 0) {
+                content.append('&');
+            }
+            content.append(key).append('=').append(params.get(key));
+        }
+        Signature signature = Signature.getInstance(algorithm);
+        signature.initSign(privateKey);
+        signature.update(content.toString().getBytes(StandardCharsets.UTF_8));
+        params.put("sign", Base64.encode(signature.sign()));
+        params.put("sign_type", signType);
+        return params;
+    }
+}
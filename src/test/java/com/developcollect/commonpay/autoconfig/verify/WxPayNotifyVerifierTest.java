@@ -0,0 +1,210 @@
+package com.developcollect.commonpay.autoconfig.verify;
+
+import cn.hutool.core.codec.Base64;
+import cn.hutool.crypto.SecureUtil;
+import com.developcollect.commonpay.config.WxPayConfig;
+import com.developcollect.commonpay.pay.wxpay.sdk.WXPayConstants;
+import com.developcollect.commonpay.pay.wxpay.sdk.WXPayUtil;
+import org.junit.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+/**
+ * 微信异步通知验签器测试
+ * 验签结果需要与微信SDK的WXPayUtil.isSignatureValid一致，req_info的解密结果需要与原先使用的hutool AES解密一致
+ *
+ * @author zak
+ * @since 2.2.0
+ */
+public class WxPayNotifyVerifierTest {
+
+    private static final String KEY = "8934e7d15453e97507ef794cf7b0519d";
+
+    private static final String OTHER_KEY = "192006250b4c09247ec02edce69f6a2d";
+
+    private final WxPayNotifyVerifier verifier = new WxPayNotifyVerifier();
+
+
+    @Test
+    public void validHmacSha256MatchesSdk() throws Exception {
+        Map<String, String> params = notifyParams(WXPayConstants.SignType.HMACSHA256);
+        assertSameAsSdk(params, false, true);
+    }
+
+    @Test
+    public void validMd5MatchesSdk() throws Exception {
+        Map<String, String> params = notifyParams(WXPayConstants.SignType.MD5);
+        assertSameAsSdk(params, true, true);
+    }
+
+    @Test
+    public void tamperedPayloadMatchesSdk() throws Exception {
+        Map<String, String> params = notifyParams(WXPayConstants.SignType.HMACSHA256);
+        params.put("total_fee", "10000");
+        assertSameAsSdk(params, false, false);
+    }
+
+    @Test
+    public void tamperedSignMatchesSdk() throws Exception {
+        Map<String, String> params = notifyParams(WXPayConstants.SignType.HMACSHA256);
+        String sign = params.get("sign");
+        params.put("sign", (sign.charAt(0) == 'A' ? 'B' : 'A') + sign.substring(1));
+        assertSameAsSdk(params, false, false);
+    }
+
+    @Test
+    public void blankValuesAreSkippedLikeSdk() throws Exception {
+        Map<String, String> params = notifyParams(WXPayConstants.SignType.HMACSHA256);
+        // 空白值不参与签名，签名之后加入的空白字段不影响验签
+        params.put("device_info", " ");
+        assertSameAsSdk(params, false, true);
+    }
+
+    @Test
+    public void wrongSignTypeMatchesSdk() throws Exception {
+        // 生产环境使用HMAC-SHA256验签，MD5签名的通知不能通过
+        Map<String, String> params = notifyParams(WXPayConstants.SignType.MD5);
+        assertSameAsSdk(params, false, false);
+    }
+
+    @Test
+    public void missingSignFails() throws Exception {
+        Map<String, String> params = notifyParams(WXPayConstants.SignType.HMACSHA256);
+        params.remove("sign");
+        assertFalse(verifier.verify(payConfig(false), params));
+    }
+
+
+    @Test
+    public void decryptsReqInfoLikeSdk() throws Exception {
+        String xml = refundXml("T20200801000001", "");
+        String reqInfo = encryptReqInfo(xml, KEY);
+
+        String sdk = SecureUtil.aes(SecureUtil.md5(KEY).toLowerCase().getBytes()).decryptStr(Base64.decode(reqInfo));
+        String actual = read(verifier.decryptReqInfo(payConfig(false), reqInfo));
+        assertEquals(xml, sdk);
+        assertEquals(sdk, actual);
+    }
+
+    @Test
+    public void decryptsReqInfoLargerThanBuffer() throws Exception {
+        StringBuilder padding = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            padding.append("<refund_account>REFUND_SOURCE_RECHARGE_FUNDS</refund_account>");
+        }
+        String large = refundXml("T20200801000002", padding.toString());
+        String small = refundXml("T20200801000003", "");
+
+        assertEquals(large, read(verifier.decryptReqInfo(payConfig(false), encryptReqInfo(large, KEY))));
+        // 扩容后的缓冲区中残留的内容不会带到下一次解密结果中
+        assertEquals(small, read(verifier.decryptReqInfo(payConfig(false), encryptReqInfo(small, KEY))));
+    }
+
+    @Test
+    public void usesNewKeyWhenMerchantKeyChanges() throws Exception {
+        String xml = refundXml("T20200801000004", "");
+        assertEquals(xml, read(verifier.decryptReqInfo(payConfig(false), encryptReqInfo(xml, KEY))));
+
+        WxPayConfig otherConfig = new WxPayConfig();
+        otherConfig.setKey(OTHER_KEY);
+        assertEquals(xml, read(verifier.decryptReqInfo(otherConfig, encryptReqInfo(xml, OTHER_KEY))));
+        assertEquals(xml, read(verifier.decryptReqInfo(payConfig(false), encryptReqInfo(xml, KEY))));
+    }
+
+    @Test
+    public void wrongKeyDoesNotPoisonPooledCipher() throws Exception {
+        String xml = refundXml("T20200801000005", "");
+        try {
+            verifier.decryptReqInfo(payConfig(false), encryptReqInfo(xml, OTHER_KEY));
+            fail();
+        } catch (GeneralSecurityException e) {
+            // expected
+        }
+        assertEquals(xml, read(verifier.decryptReqInfo(payConfig(false), encryptReqInfo(xml, KEY))));
+    }
+
+
+    private static String refundXml(String outTradeNo, String extra) {
+        return "<root>"
+                + "<out_refund_no>R" + outTradeNo + "</out_refund_no>"
+                + "<out_trade_no>" + outTradeNo + "</out_trade_no>"
+                + "<refund_account>REFUND_SOURCE_RECHARGE_FUNDS</refund_account>"
+                + "<refund_fee>1</refund_fee>"
+                + "<refund_id>50000408942018111907145868882</refund_id>"
+                + "<refund_recv_accout>支付用户零钱</refund_recv_accout>"
+                + "<refund_status>SUCCESS</refund_status>"
+                + "<success_time>2020-08-01 10:00:05</success_time>"
+                + "<total_fee>1</total_fee>"
+                + "<transaction_id>1004400740201409030005092168</transaction_id>"
+                + extra
+                + "</root>";
+    }
+
+    /**
+     * 按微信的规则加密：以商户key的MD5值(小写十六进制)为密钥，AES-256-ECB加密后Base64编码
+     */
+    private static String encryptReqInfo(String xml, String key) throws Exception {
+        byte[] aesKey = SecureUtil.md5(key).toLowerCase().getBytes(StandardCharsets.UTF_8);
+        Cipher cipher = Cipher.getInstance("AES/ECB/PKCS5Padding");
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(aesKey, "AES"));
+        return Base64.encode(cipher.doFinal(xml.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private void assertSameAsSdk(Map<String, String> params, boolean debug, boolean expected) throws Exception {
+        WXPayConstants.SignType signType = debug ? WXPayConstants.SignType.MD5 : WXPayConstants.SignType.HMACSHA256;
+        boolean sdk = WXPayUtil.isSignatureValid(new HashMap<>(params), KEY, signType);
+        boolean actual = verifier.verify(payConfig(debug), new HashMap<>(params));
+        assertEquals(expected, sdk);
+        assertEquals(sdk, actual);
+    }
+
+    private WxPayConfig payConfig(boolean debug) {
+        WxPayConfig payConfig = new WxPayConfig();
+        payConfig
+                .setKey(KEY)
+                .setDebug(debug);
+        return payConfig;
+    }
+
+    private Map<String, String> notifyParams(WXPayConstants.SignType signType) throws Exception {
+        Map<String, String> params = new HashMap<>();
+        params.put("appid", "wx2421b1c4370ec43b");
+        params.put("attach", "支付测试");
+        params.put("bank_type", "CFT");
+        params.put("fee_type", "CNY");
+        params.put("mch_id", "10000100");
+        params.put("nonce_str", "5d2b6c2a8db53831f7eda20af46e531c");
+        params.put("openid", "oUpF8uMEb4qRXf22hE3X68TekukE");
+        params.put("out_trade_no", "T20200801000001");
+        params.put("result_code", "SUCCESS");
+        params.put("return_code", "SUCCESS");
+        params.put("time_end", "20200801100005");
+        params.put("total_fee", "1");
+        params.put("trade_type", "NATIVE");
+        params.put("transaction_id", "1004400740201409030005092168");
+        params.put("sign", WXPayUtil.generateSignature(params, KEY, signType));
+        return params;
+    }
+}